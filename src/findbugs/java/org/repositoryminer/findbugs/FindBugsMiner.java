@@ -13,6 +13,8 @@ import org.repositoryminer.findbugs.configuration.Effort;
 import org.repositoryminer.findbugs.configuration.Priority;
 import org.repositoryminer.findbugs.model.ReportedBug;
 import org.repositoryminer.findbugs.persistence.FindBugsDocumentHandler;
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.exceptions.VisMinerAPIException;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Reference;
 import org.repositoryminer.model.Repository;
@@ -23,7 +25,9 @@ import org.repositoryminer.persistence.handler.WorkingDirectoryDocumentHandler;
 import org.repositoryminer.scm.ISCM;
 import org.repositoryminer.scm.ReferenceType;
 import org.repositoryminer.scm.SCMFactory;
-import org.repositoryminer.utility.FileUtils;
+import org.repositoryminer.scm.workspace.IWorkspace;
+import org.repositoryminer.scm.workspace.WorkspaceFactory;
+import org.repositoryminer.scm.workspace.WorkspaceType;
 import org.repositoryminer.utility.StringUtils;
 
 import com.mongodb.client.model.Projections;
@@ -60,6 +64,7 @@ public class FindBugsMiner {
 	private Repository repository;
 	private ISCM scm;
 	private String tmpRepository;
+	private IWorkspace workspace;
 	private FindBugsExecutor findBugsExecutor;
 
 	private FindBugsDocumentHandler findBugsPersist;
@@ -69,6 +74,7 @@ public class FindBugsMiner {
 
 	private Priority priority = Priority.NORMAL;
 	private Effort effort = Effort.DEFAULT;
+	private WorkspaceType workspaceType = WorkspaceType.SHARED_CLONE;
 
 	public FindBugsMiner(Repository repository) {
 		this.repository = repository;
@@ -94,7 +100,13 @@ public class FindBugsMiner {
 	}
 
 	public void configure() throws IOException {
-		tmpRepository = FileUtils.copyFolderToTmp(repository.getPath(), repository.getId());
+		// the analysis needs checkouts, so the workspace can not be read-only
+		workspace = WorkspaceFactory.getWorkspace(repository.getScm(), workspaceType);
+		if (workspace.isReadOnly()) {
+			throw new VisMinerAPIException(ErrorMessage.READ_ONLY_WORKSPACE.toString());
+		}
+
+		tmpRepository = workspace.create(repository.getPath(), repository.getId());
 		findBugsExecutor = new FindBugsExecutor(tmpRepository);
 
 		findBugsPersist = new FindBugsDocumentHandler();
@@ -120,9 +132,13 @@ public class FindBugsMiner {
 		}
 	}
 
+	public void setWorkspaceType(WorkspaceType workspaceType) {
+		this.workspaceType = workspaceType;
+	}
+
 	public void dispose() throws IOException {
 		scm.close();
-		FileUtils.deleteFolder(tmpRepository);
+		workspace.dispose();
 	}
 
 	public void setEffort(Effort effort) {
@@ -172,18 +188,9 @@ public class FindBugsMiner {
 		findBugsPersist.insertMany(documents);
 	}
 
-	@SuppressWarnings("unchecked")
 	// create a list with the files names in a checkout
 	private List<String> createFilesList(String commitId) {
-		List<Document> filesDoc = (List<Document>) wdPersist.findById(commitId, Projections.include("files.file"))
-				.get("files");
-		List<String> files = new ArrayList<String>(filesDoc.size());
-
-		for (Document file : filesDoc) {
-			files.add(file.getString("file"));
-		}
-		
-		return files;
+		return new ArrayList<String>(wdPersist.findFiles(commitId).keySet());
 	}
 	
 	private void configureFindBugs() {
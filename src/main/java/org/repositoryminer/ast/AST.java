@@ -6,6 +6,8 @@ public class AST {
 	private String sourceCode;
 	private Language language;
 	private String project;
+	// built on demand, shared by the metrics of all the types of the file
+	private SourceLines sourceLines;
 	
 	public Document getDocument() {
 		return document;
@@ -21,6 +23,17 @@ public class AST {
 	
 	public void setSourceCode(String sourceCode) {
 		this.sourceCode = sourceCode;
+		sourceLines = null;
+	}
+
+	/**
+	 * @return the lines of the source code, scanned once.
+	 */
+	public SourceLines getSourceLines() {
+		if (sourceLines == null) {
+			sourceLines = new SourceLines(sourceCode);
+		}
+		return sourceLines;
 	}
 	
 	public Language getLanguage() {
@@ -18,7 +18,7 @@ public class FieldDeclaration {
 		this.paramTypes = paramTypes;
 	}
 
-	private List<String> modifiers;
+	private int modifiers;
 	
 	private boolean primitiveType;
 	private boolean arrayType;
@@ -65,11 +65,14 @@ public class FieldDeclaration {
 		this.type = type;
 	}
 
-	public List<String> getModifiers() {
+	/**
+	 * @return the modifiers as a bit mask of {@link Modifier} flags.
+	 */
+	public int getModifiers() {
 		return modifiers;
 	}
 
-	public void setModifiers(List<String> modifiers) {
+	public void setModifiers(int modifiers) {
 		this.modifiers = modifiers;
 	}
 
@@ -0,0 +1,216 @@
+package org.repositoryminer.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.repositoryminer.ast.Statement.NodeType;
+
+/**
+ * The statements of a method, kept as parallel primitive arrays instead of one
+ * object per statement. Each statement has a node type, a nesting level, a
+ * number of conditions and two more values whose meaning depends on the node
+ * type:
+ * <ul>
+ * <li>field accesses and method invocations: the owner is the type that
+ * declares the member and the symbol is the field name or the method
+ * signature, both in the {@link SymbolTable} of the snapshot;</li>
+ * <li>variable declarations: the symbol is the type and the name of the
+ * variable and the start is the position of its declaration, which tells
+ * apart the variables with the same type and name;</li>
+ * <li>the other statements: the start and the length of their expression in
+ * the source code, if they have one.</li>
+ * </ul>
+ * The conditions are known by the parser: the boolean operators of a decision
+ * plus one, or the number of exceptions caught by a catch clause.
+ * <p>
+ * The metrics read the arrays by index, so they do not allocate anything per
+ * statement. The expressions are only built when someone asks for them, see
+ * {@link #getExpression(int)} and {@link #getStatements()}.
+ */
+public class MethodBody {
+
+	private static final NodeType[] NODE_TYPES = NodeType.values();
+
+	private SymbolTable symbolTable;
+	private String source;
+	private int size;
+	private byte[] nodeTypes;
+	private short[] nestings;
+	private short[] conditions;
+	// owner or start, symbol or length
+	private int[] first;
+	private int[] second;
+
+	/**
+	 * @param source
+	 *            the source code the expressions are taken from.
+	 */
+	public MethodBody(SymbolTable symbolTable, String source) {
+		this.symbolTable = symbolTable;
+		this.source = source;
+		nodeTypes = new byte[8];
+		nestings = new short[8];
+		conditions = new short[8];
+		first = new int[8];
+		second = new int[8];
+	}
+
+	/**
+	 * Appends a field access or a method invocation.
+	 *
+	 * @param owner
+	 *            the id of the type that declares the member.
+	 * @param symbol
+	 *            the id of the field name or of the method signature.
+	 */
+	public void addMember(NodeType nodeType, int nesting, int owner, int symbol) {
+		add(nodeType, nesting, 0, owner, symbol);
+	}
+
+	/**
+	 * Appends a variable declaration.
+	 *
+	 * @param symbol
+	 *            the id of the type and the name of the variable.
+	 * @param start
+	 *            the position of the declaration in the source code.
+	 */
+	public void addDeclaration(NodeType nodeType, int nesting, int symbol, int start) {
+		add(nodeType, nesting, 0, start, symbol);
+	}
+
+	/**
+	 * Appends a statement whose expression stays in the source code.
+	 *
+	 * @param conditions
+	 *            the number of conditions, zero if it is not a decision.
+	 * @param start
+	 *            the position of the expression in the source code, -1 if
+	 *            there is none.
+	 * @param length
+	 *            the length of the expression.
+	 */
+	public void addExpression(NodeType nodeType, int nesting, int conditions, int start, int length) {
+		add(nodeType, nesting, conditions, start, length);
+	}
+
+	private void add(NodeType nodeType, int nesting, int condition, int firstValue, int secondValue) {
+		if (size == nodeTypes.length) {
+			int capacity = size * 2;
+			nodeTypes = Arrays.copyOf(nodeTypes, capacity);
+			nestings = Arrays.copyOf(nestings, capacity);
+			conditions = Arrays.copyOf(conditions, capacity);
+			first = Arrays.copyOf(first, capacity);
+			second = Arrays.copyOf(second, capacity);
+		}
+
+		nodeTypes[size] = (byte) nodeType.ordinal();
+		nestings[size] = (short) nesting;
+		conditions[size] = (short) Math.min(condition, Short.MAX_VALUE);
+		first[size] = firstValue;
+		second[size] = secondValue;
+		size++;
+	}
+
+	/**
+	 * Releases the room left for statements that will not be added.
+	 */
+	public void trim() {
+		if (size < nodeTypes.length) {
+			nodeTypes = Arrays.copyOf(nodeTypes, size);
+			nestings = Arrays.copyOf(nestings, size);
+			conditions = Arrays.copyOf(conditions, size);
+			first = Arrays.copyOf(first, size);
+			second = Arrays.copyOf(second, size);
+		}
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public NodeType getNodeType(int index) {
+		return NODE_TYPES[nodeTypes[index]];
+	}
+
+	public int getNesting(int index) {
+		return nestings[index];
+	}
+
+	/**
+	 * @return the boolean operators of a decision plus one, the number of
+	 *         exceptions of a catch clause or zero for the other statements.
+	 */
+	public int getConditions(int index) {
+		return conditions[index];
+	}
+
+	/**
+	 * @return the type that declares the member accessed or invoked, or
+	 *         {@link SymbolTable#NONE}.
+	 */
+	public int getOwner(int index) {
+		return isMember(index) ? first[index] : SymbolTable.NONE;
+	}
+
+	/**
+	 * @return the position of the variable declared, or -1.
+	 */
+	public int getStart(int index) {
+		return isSymbol(index) ? first[index] : -1;
+	}
+
+	/**
+	 * @return the member accessed or invoked, the variable declared, or
+	 *         {@link SymbolTable#NONE}.
+	 */
+	public int getSymbol(int index) {
+		return isMember(index) || isSymbol(index) ? second[index] : SymbolTable.NONE;
+	}
+
+	/**
+	 * @return the expression of the statement: the owner and the member
+	 *         separated by a dot, the symbol, the source code of the
+	 *         expression, or null if it has none.
+	 */
+	public String getExpression(int index) {
+		if (isMember(index)) {
+			return symbolTable.getName(first[index]) + "." + symbolTable.getName(second[index]);
+		} else if (isSymbol(index)) {
+			return symbolTable.getName(second[index]);
+		} else if (first[index] < 0 || source == null) {
+			return null;
+		}
+		return source.substring(first[index], first[index] + second[index]);
+	}
+
+	/**
+	 * @return new statement objects with the same contents of the body.
+	 */
+	public List<Statement> getStatements() {
+		List<Statement> statements = new ArrayList<Statement>(size);
+		for (int i = 0; i < size; i++) {
+			Statement stmt = new Statement();
+			stmt.setNodeType(getNodeType(i));
+			stmt.setNesting(getNesting(i));
+			stmt.setExpression(getExpression(i));
+			statements.add(stmt);
+		}
+		return statements;
+	}
+
+	private boolean isMember(int index) {
+		NodeType nodeType = getNodeType(index);
+		return nodeType == NodeType.FIELD_ACCESS || nodeType == NodeType.METHOD_INVOCATION;
+	}
+
+	private boolean isSymbol(int index) {
+		return getNodeType(index) == NodeType.VARIABLE_DECLARATION;
+	}
+
+}
@@ -6,9 +6,9 @@ import java.util.List;
 public class MethodDeclaration {
 
 	private String name;
-	private List<String> modifiers;
+	private int modifiers;
 	private String returnType;
-	private List<Statement> statements;
+	private MethodBody body;
 	private List<ParameterDeclaration> parameters;
 	private int startPositionInSourceCode;
 	private int endPositionInSourceCode;
@@ -92,12 +92,15 @@ public class MethodDeclaration {
 		this.returnType = returnType;
 	}
 
-	public List<Statement> getStatements() {
-		return statements;
+	/**
+	 * @return the statements of the method, or null if it has no body.
+	 */
+	public MethodBody getBody() {
+		return body;
 	}
 
-	public void setStatements(List<Statement> statements) {
-		this.statements = statements;
+	public void setBody(MethodBody body) {
+		this.body = body;
 	}
 
 	public List<ParameterDeclaration> getParameters() {
@@ -132,11 +135,14 @@ public class MethodDeclaration {
 		this.thrownsExceptions = thrownsExceptions;
 	}
 
-	public List<String> getModifiers() {
+	/**
+	 * @return the modifiers as a bit mask of {@link Modifier} flags.
+	 */
+	public int getModifiers() {
 		return modifiers;
 	}
 
-	public void setModifiers(List<String> modifiers) {
+	public void setModifiers(int modifiers) {
 		this.modifiers = modifiers;
 	}
 
@@ -0,0 +1,88 @@
+package org.repositoryminer.ast;
+
+/**
+ * The modifiers of a declaration, kept as a bit mask. The values are the same
+ * used by the JVM access flags and by the JDT, so the flags reported by the
+ * parser are used as they are.
+ */
+public final class Modifier {
+
+	public static final int NONE = 0;
+	public static final int PUBLIC = 0x0001;
+	public static final int PRIVATE = 0x0002;
+	public static final int PROTECTED = 0x0004;
+	public static final int STATIC = 0x0008;
+	public static final int FINAL = 0x0010;
+	public static final int SYNCHRONIZED = 0x0020;
+	public static final int VOLATILE = 0x0040;
+	public static final int TRANSIENT = 0x0080;
+	public static final int NATIVE = 0x0100;
+	public static final int ABSTRACT = 0x0400;
+	public static final int STRICTFP = 0x0800;
+	public static final int DEFAULT = 0x10000;
+
+	private static final int[] FLAGS = { PUBLIC, PROTECTED, PRIVATE, ABSTRACT, STATIC, FINAL, TRANSIENT, VOLATILE,
+			SYNCHRONIZED, NATIVE, STRICTFP, DEFAULT };
+	private static final String[] KEYWORDS = { "public", "protected", "private", "abstract", "static", "final",
+			"transient", "volatile", "synchronized", "native", "strictfp", "default" };
+
+	private Modifier() {
+	}
+
+	public static boolean isPublic(int modifiers) {
+		return (modifiers & PUBLIC) != 0;
+	}
+
+	public static boolean isPrivate(int modifiers) {
+		return (modifiers & PRIVATE) != 0;
+	}
+
+	public static boolean isProtected(int modifiers) {
+		return (modifiers & PROTECTED) != 0;
+	}
+
+	public static boolean isStatic(int modifiers) {
+		return (modifiers & STATIC) != 0;
+	}
+
+	public static boolean isFinal(int modifiers) {
+		return (modifiers & FINAL) != 0;
+	}
+
+	public static boolean isAbstract(int modifiers) {
+		return (modifiers & ABSTRACT) != 0;
+	}
+
+	/**
+	 * @param keyword
+	 *            a modifier keyword, e.g. "public".
+	 * @return the flag of the keyword or {@link #NONE} if it is not a
+	 *         modifier.
+	 */
+	public static int valueOf(String keyword) {
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			if (KEYWORDS[i].equals(keyword)) {
+				return FLAGS[i];
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @return the keywords of the modifiers in the usual order, separated by
+	 *         spaces.
+	 */
+	public static String toString(int modifiers) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < FLAGS.length; i++) {
+			if ((modifiers & FLAGS[i]) != 0) {
+				if (builder.length() > 0) {
+					builder.append(' ');
+				}
+				builder.append(KEYWORDS[i]);
+			}
+		}
+		return builder.toString();
+	}
+
+}
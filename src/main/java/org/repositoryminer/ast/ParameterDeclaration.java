@@ -20,7 +20,7 @@ public class ParameterDeclaration {
 		this.paramTypes = paramTypes;
 	}
 
-	private List<String> modifiers;
+	private int modifiers;
 	
 	private boolean primitiveType;
 	private boolean arrayType;
@@ -35,11 +35,14 @@ public class ParameterDeclaration {
 		this.arrayTypeName = arrayTypeName;
 	}
 
-	public List<String> getModifiers() {
+	/**
+	 * @return the modifiers as a bit mask of {@link Modifier} flags.
+	 */
+	public int getModifiers() {
 		return modifiers;
 	}
 
-	public void setModifiers(List<String> modifiers) {
+	public void setModifiers(int modifiers) {
 		this.modifiers = modifiers;
 	}
 
@@ -0,0 +1,191 @@
+package org.repositoryminer.ast;
+
+import java.util.Arrays;
+
+/**
+ * The lines of a source code, found in a single scan. Keeps the offset where
+ * each line starts and how many lines are blank, comment or code, so the
+ * lines of any part of the source, e.g. a method, are counted by its offsets
+ * without copying it.
+ * <p>
+ * Lines are separated by "\r\n", "\n" or "\r". A line is code if it has
+ * anything besides comments and white spaces, comment if it has a comment or
+ * is inside a block comment, otherwise it is blank. The comments are the ones
+ * of Java, "//" and "/* ... *&#47;", and are not looked for inside string and
+ * character literals.
+ */
+public class SourceLines {
+
+	private static final byte BLANK = 0;
+	private static final byte COMMENT = 1;
+	private static final byte CODE = 2;
+
+	private final int lineCount;
+	private final int[] lineStarts;
+	// the blank and comment lines before each line, plus one entry for the
+	// whole source
+	private final int[] blankLines;
+	private final int[] commentLines;
+
+	public SourceLines(String source) {
+		if (source == null || source.isEmpty()) {
+			lineCount = 0;
+			lineStarts = new int[0];
+			blankLines = new int[1];
+			commentLines = new int[1];
+			return;
+		}
+
+		int[] starts = new int[64];
+		byte[] kinds = new byte[64];
+		int lines = 1;
+		byte kind = BLANK;
+		boolean blockComment = false;
+		boolean lineComment = false;
+		char quote = 0;
+
+		for (int i = 0; i < source.length(); i++) {
+			char c = source.charAt(i);
+
+			if (c == '\n' || c == '\r') {
+				if (c == '\r' && i + 1 < source.length() && source.charAt(i + 1) == '\n') {
+					i++;
+				}
+
+				if (lines == starts.length) {
+					starts = Arrays.copyOf(starts, lines * 2);
+					kinds = Arrays.copyOf(kinds, lines * 2);
+				}
+				kinds[lines - 1] = kind;
+				starts[lines++] = i + 1;
+
+				kind = blockComment ? COMMENT : BLANK;
+				lineComment = false;
+				// literals do not span lines
+				quote = 0;
+			} else if (blockComment) {
+				if (c == '*' && i + 1 < source.length() && source.charAt(i + 1) == '/') {
+					blockComment = false;
+					i++;
+				}
+			} else if (lineComment || Character.isWhitespace(c)) {
+				continue;
+			} else if (quote != 0) {
+				if (c == '\\') {
+					i = skipEscape(source, i);
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '/') {
+				lineComment = true;
+				kind = kind == CODE ? CODE : COMMENT;
+				i++;
+			} else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '*') {
+				blockComment = true;
+				kind = kind == CODE ? CODE : COMMENT;
+				i++;
+			} else {
+				if (c == '"' || c == '\'') {
+					quote = c;
+				}
+				kind = CODE;
+			}
+		}
+		kinds[lines - 1] = kind;
+
+		lineCount = lines;
+		lineStarts = Arrays.copyOf(starts, lines);
+		blankLines = new int[lines + 1];
+		commentLines = new int[lines + 1];
+		for (int line = 0; line < lines; line++) {
+			blankLines[line + 1] = blankLines[line] + (kinds[line] == BLANK ? 1 : 0);
+			commentLines[line + 1] = commentLines[line] + (kinds[line] == COMMENT ? 1 : 0);
+		}
+	}
+
+	// Skips the escaped character, unless it is a line break
+	private static int skipEscape(String source, int index) {
+		if (index + 1 < source.length() && source.charAt(index + 1) != '\n' && source.charAt(index + 1) != '\r') {
+			return index + 1;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the number of physical lines, zero for an empty source.
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of physical lines of the source between the offsets,
+	 *         as if that part were a source of its own.
+	 */
+	public int getLineCount(int start, int end) {
+		if (end <= start) {
+			return 0;
+		}
+		return getLine(end) - getLine(start) + 1;
+	}
+
+	/**
+	 * @return the line, starting from zero, where the offset is.
+	 */
+	public int getLine(int offset) {
+		int line = Arrays.binarySearch(lineStarts, offset);
+		return line >= 0 ? line : -line - 2;
+	}
+
+	/**
+	 * @return the offset where the line starts.
+	 */
+	public int getLineStart(int line) {
+		return lineStarts[line];
+	}
+
+	public int getBlankLines() {
+		return blankLines[lineCount];
+	}
+
+	public int getCommentLines() {
+		return commentLines[lineCount];
+	}
+
+	public int getCodeLines() {
+		return lineCount - getBlankLines() - getCommentLines();
+	}
+
+	/**
+	 * @return the blank lines among the lines touched by the offsets.
+	 */
+	public int getBlankLines(int start, int end) {
+		return count(blankLines, start, end);
+	}
+
+	/**
+	 * @return the comment lines among the lines touched by the offsets.
+	 */
+	public int getCommentLines(int start, int end) {
+		return count(commentLines, start, end);
+	}
+
+	/**
+	 * @return the code lines among the lines touched by the offsets.
+	 */
+	public int getCodeLines(int start, int end) {
+		if (end <= start) {
+			return 0;
+		}
+		int lines = getLine(end - 1) - getLine(start) + 1;
+		return lines - getBlankLines(start, end) - getCommentLines(start, end);
+	}
+
+	private int count(int[] before, int start, int end) {
+		if (end <= start) {
+			return 0;
+		}
+		return before[getLine(end - 1) + 1] - before[getLine(start)];
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.repositoryminer.ast;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the names found while a snapshot is parsed, e.g. types, fields and
+ * methods, giving each one a dense int id. The ASTs of the snapshot refer to
+ * the names by their ids, so a name repeated by thousands of statements is
+ * stored once.
+ * <p>
+ * The table is shared by all the files of a snapshot, which may be parsed by
+ * many threads at the same time. Looking up a known name does not lock.
+ */
+public class SymbolTable {
+
+	/** The id of a missing name. */
+	public static final int NONE = -1;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] names = new String[1024];
+	private int size;
+
+	/**
+	 * @return the id of the name, which is added to the table if it is not
+	 *         there yet, or {@link #NONE} if the name is null.
+	 */
+	public int getId(String name) {
+		if (name == null) {
+			return NONE;
+		}
+
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+			id = ids.get(name);
+			if (id == null) {
+				if (size == names.length) {
+					names = Arrays.copyOf(names, size * 2);
+				}
+				names[size] = name;
+				id = size++;
+				// published after the name is stored, so whoever sees the id
+				// sees the name
+				ids.put(name, id);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * @return the id of the name, or {@link #NONE} if it is not in the table.
+	 */
+	public int find(String name) {
+		Integer id = name != null ? ids.get(name) : null;
+		return id != null ? id : NONE;
+	}
+
+	/**
+	 * @return the name of the id or null if the id is {@link #NONE}.
+	 */
+	public String getName(int id) {
+		return id == NONE ? null : names[id];
+	}
+
+	/**
+	 * @return the instance of the name kept by the table, so equal names
+	 *         share the same string.
+	 */
+	public String intern(String name) {
+		return getName(getId(name));
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+}
@@ -5,6 +5,7 @@ public enum CodeMetricId {
 
 	ATFD, CYCLO, LVAR, MAXNESTING, MLOC, NOM, 
 	NOA, NOAV, PAR, LOC, TCC, WMC, AMW, DIT, NProtM, 
-	BOvR, BUR, WOC, NOPA, NOAM, EC, AC;
+	BOvR, BUR, WOC, NOPA, NOAM, EC, AC, LCC, LCOM1, 
+	LCOM2, LCOM3, LCOM4, RFC, CBO, FANIN, FANOUT;
 
 }
\ No newline at end of file
@@ -1,18 +1,17 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class AMW implements IDirectCodeMetric {
 
-	private WMC wmcMetric = new WMC();
-	
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		int wmc = wmcMetric.calculate(type.getMethods());
-		int nom = type.getMethods().size();
+	public Document calculate(MetricContext context) {
+		int wmc = WMC.getValue(context);
+		int nom = context.getType().getMethods().size();
 		return new Document("metric", CodeMetricId.AMW.toString()).append("value", calculate(wmc, nom));
 	}
 
@@ -28,4 +27,9 @@ public class AMW implements IDirectCodeMetric {
 		return CodeMetricId.AMW;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.WMC);
+	}
+
 }
\ No newline at end of file
@@ -1,16 +1,11 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
-import org.repositoryminer.ast.Statement;
-import org.repositoryminer.ast.Statement.NodeType;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -21,63 +16,42 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class ATFD implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.ATFD;
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
-		return new Document("metric", CodeMetricId.ATFD.toString())
-				.append("accumulated", calculate(type, type.getMethods(), true)).append("methods", methodsDoc);
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
 	}
 
-	public int calculate(AbstractClassDeclaration type, List<MethodDeclaration> methods, boolean calculateByMethod) {
-		int atfdClass = 0;
-
-		for (MethodDeclaration mDeclaration : methods) {
-			int atfdMethod = countForeignAccessedFields(type, mDeclaration);
-
-			atfdClass += atfdMethod;
-			if (calculateByMethod) {
-				methodsDoc.add(new Document("method", mDeclaration.getName()).append("value", atfdMethod));
-			}
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			methodsDoc.add(new Document("method", method.getName()).append("value", getValue(method, context)));
 		}
 
-		return atfdClass;
+		return new Document("metric", CodeMetricId.ATFD.toString()).append("accumulated", getValue(context))
+				.append("methods", methodsDoc);
 	}
 
-	private int countForeignAccessedFields(AbstractClassDeclaration currType, MethodDeclaration method) {
-		Set<String> accessedFields = new HashSet<String>();
-
-		for (Statement stmt : method.getStatements()) {
-			String exp, type;
-
-			if (stmt.getNodeType() == NodeType.FIELD_ACCESS || stmt.getNodeType() == NodeType.METHOD_INVOCATION) {
-				exp = stmt.getExpression();
-				type = exp.substring(0, exp.lastIndexOf("."));
-			} else {
-				continue;
-			}
-
-			if (stmt.getNodeType().equals(NodeType.FIELD_ACCESS)) {
-				if (!currType.getName().equals(type))
-					accessedFields.add(exp.toLowerCase());
-			} else if (stmt.getNodeType().equals(NodeType.METHOD_INVOCATION)) {
-				String methodInv = exp.substring(exp.lastIndexOf(".") + 1);
-				if (!currType.getName().equals(type)) {
-					if ((methodInv.startsWith("get") || methodInv.startsWith("set")) && methodInv.length() > 3) {
-						accessedFields.add((type + "." + methodInv.substring(3)).toLowerCase());
-					} else if (methodInv.startsWith("is") && methodInv.length() > 2)
-						accessedFields.add((type + "." + methodInv.substring(2)).toLowerCase());
-				}
+	/**
+	 * @return the ATFD of the whole type, the sum of the values of its methods.
+	 */
+	public static int getValue(MetricContext context) {
+		return context.getValue(CodeMetricId.ATFD, () -> {
+			int atfdClass = 0;
+			for (MethodDeclaration method : context.getType().getMethods()) {
+				atfdClass += getValue(method, context);
 			}
-		}
+			return atfdClass;
+		});
+	}
 
-		return accessedFields.size();
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getFeatures(method).getForeignFields().size();
 	}
 
 }
\ No newline at end of file
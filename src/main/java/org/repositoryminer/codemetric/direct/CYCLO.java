@@ -1,14 +1,11 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
-import org.repositoryminer.ast.Statement;
-import org.repositoryminer.ast.Statement.NodeType;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -42,114 +39,41 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class CYCLO implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc  = new ArrayList<Document>();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.CYCLO;
 	}
 
-	/**
-	 * @see MethodBasedMetricTemplate#calculate(AbstractClassDeclaration, List,
-	 *      AST, Document)
-	 */
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
-		calculate(type.getMethods());
-		return new Document("metric", CodeMetricId.CYCLO.toString()).append("methods", methodsDoc);
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
 	}
 
 	/**
-	 * Iterates through all methods to calculate their complexity
-	 * <p>
-	 * Although CC is method-oriented, an accumulated value of the metric is
-	 * provided
-	 * 
-	 * @param methods
-	 *            list of methods from which the CC metric must be extracted
+	 * Iterates through all methods of the type to calculate their complexity
 	 */
-	public void calculate(List<MethodDeclaration> methods) {
-		for (MethodDeclaration method : methods) {
-			methodsDoc.add(new Document("method", method.getName()).append("value", calculate(method)));
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			methodsDoc.add(new Document("method", method.getName()).append("value", getValue(method, context)));
 		}
+		return new Document("metric", CodeMetricId.CYCLO.toString()).append("methods", methodsDoc);
 	}
 
 	/**
-	 * The actual calculation of CC
+	 * The decision points are counted by {@link MethodFeatures}. Important to
+	 * note that, even if no statement is found it must return 1.
 	 * <p>
-	 * Conditional statements are analyzed to calculate the complexity of the
-	 * method. Important to note that, even if no statement is found it must
-	 * return 1.
+	 * A complex conditional expression is broken down, for instance, 'if (x ==
+	 * 1) && (y == 2) {}' is divided into two conditional tests: (x == 1), (y ==
+	 * 2). In this case, the expression will end up adding 2 to value of CC
+	 * metric.
 	 * 
-	 * @param method
-	 *            instance of {@link org.repositoryminer.ast.MethodDeclaration}
-	 *            which the CC metric must be extracted from
 	 * @return the CC value of the method
 	 */
-	public int calculate(MethodDeclaration method) {
-		if (method.getStatements() == null) {
-			return 1;
-		}
-
-		int cc = 1;
-		for (Statement statement : method.getStatements()) {
-			switch (statement.getNodeType()) {
-			case SWITCH_CASE:
-				cc++;
-				break;
-
-			case IF:
-			case FOR:
-			case DO_WHILE:
-			case WHILE:
-			case CATCH:
-			case CONDITIONAL_EXPRESSION:
-				cc += calculateExpression(statement.getExpression(), statement.getNodeType());
-				break;
-
-			default:
-				break;
-			}
-		}
-
-		return cc;
-	}
-
-	/**
-	 * Breaks down a complex conditional expression
-	 * <p>
-	 * For instance, 'if (x == 1) && (y == 2) {}' is divided into two
-	 * conditional tests: (x == 1), (y == 2). In this case, the expression will
-	 * end up adding 2 to value of CC metric
-	 * 
-	 * @param expression
-	 *            the complex conditional expression to split
-	 * @param type
-	 *            the conditional statement that the complex expression belongs
-	 *            to
-	 * @return the value of CC metric obtained from the expression
-	 */
-	private int calculateExpression(String expression, NodeType type) {
-		int cc = 1;
-		char[] chars = expression.toCharArray();
-
-		if (type != NodeType.CATCH) {
-			for (int i = 0; i < chars.length - 1; i++) {
-				char next = chars[i];
-				if ((next == '&' || next == '|') && (next == chars[i + 1])) {
-					cc++;
-				}
-			}
-		} else {
-			for (int i = 0; i < chars.length - 1; i++) {
-				if (chars[i] == '|') {
-					cc++;
-				}
-			}
-		}
-
-		return cc;
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getFeatures(method).getCyclomaticComplexity();
 	}
 
 }
\ No newline at end of file
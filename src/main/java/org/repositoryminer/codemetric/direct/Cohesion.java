@@ -0,0 +1,184 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.repositoryminer.ast.FieldDeclaration;
+import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.Modifier;
+import org.repositoryminer.codemetric.direct.MethodFeatures.Member;
+
+/**
+ * Calculates the cohesion metrics of a type at once. Each field of the type
+ * gets an id and the fields accessed by each method are kept in a bit set, so
+ * two methods are connected when their sets intersect, which is checked word by
+ * word.
+ * <p>
+ * Only concrete methods which are not constructors are taken into account, the
+ * same way TCC always did.
+ * <ul>
+ * <li>TCC: the relative number of pairs of methods directly connected.</li>
+ * <li>LCC: the relative number of pairs of methods directly or indirectly
+ * connected.</li>
+ * <li>LCOM1: the number of pairs of methods not connected.</li>
+ * <li>LCOM2: the pairs not connected minus the pairs connected, or zero.</li>
+ * <li>LCOM3: the number of groups of methods connected by the fields they
+ * access.</li>
+ * <li>LCOM4: as LCOM3, but methods calling each other are connected too.</li>
+ * </ul>
+ */
+public class Cohesion {
+
+	private float tcc;
+	private float lcc;
+	private int lcom1;
+	private int lcom2;
+	private int lcom3;
+	private int lcom4;
+
+	/**
+	 * @return the cohesion of the type, calculated once per context.
+	 */
+	public static Cohesion getValue(MetricContext context) {
+		return context.getValue(Cohesion.class, () -> new Cohesion(context));
+	}
+
+	private Cohesion(MetricContext context) {
+		List<MethodDeclaration> methods = filterMethods(context.getType().getMethods());
+		int n = methods.size();
+
+		Map<String, Integer> fieldIds = new HashMap<String, Integer>();
+		for (FieldDeclaration field : context.getType().getFields()) {
+			if (!fieldIds.containsKey(field.getName())) {
+				fieldIds.put(field.getName(), fieldIds.size());
+			}
+		}
+
+		Map<String, Integer> methodIds = new HashMap<String, Integer>();
+		BitSet[] accessedFields = new BitSet[n];
+		for (int i = 0; i < n; i++) {
+			methodIds.put(methods.get(i).getName(), i);
+			accessedFields[i] = new BitSet(fieldIds.size());
+			for (String field : context.getFeatures(methods.get(i)).getOwnFields()) {
+				Integer id = fieldIds.get(field);
+				if (id == null) {
+					id = fieldIds.size();
+					fieldIds.put(field, id);
+				}
+				accessedFields[i].set(id);
+			}
+		}
+
+		// groups of methods connected by fields, and by fields or calls
+		int[] fieldGroups = newGroups(n);
+		int[] fieldOrCallGroups = newGroups(n);
+
+		int npc = (n * (n - 1)) / 2; // number of possible connected methods
+		int ndc = 0; // number of directly connected methods
+
+		for (int i = 0; i < n; i++) {
+			if (accessedFields[i].isEmpty()) {
+				continue;
+			}
+			for (int j = i + 1; j < n; j++) {
+				if (accessedFields[i].intersects(accessedFields[j])) {
+					ndc++;
+					join(fieldGroups, i, j);
+					join(fieldOrCallGroups, i, j);
+				}
+			}
+		}
+
+		String typeName = context.getType().getName();
+		for (int i = 0; i < n; i++) {
+			for (Member invokedMethod : context.getFeatures(methods.get(i)).getInvokedMethods()) {
+				Integer j = typeName.equals(invokedMethod.getType()) ? methodIds.get(invokedMethod.getName()) : null;
+				if (j != null) {
+					join(fieldOrCallGroups, i, j);
+				}
+			}
+		}
+
+		// pairs connected directly or indirectly are in the same group
+		int[] groupSizes = new int[n];
+		for (int i = 0; i < n; i++) {
+			groupSizes[find(fieldGroups, i)]++;
+		}
+
+		int nic = 0;
+		for (int i = 0; i < n; i++) {
+			nic += (groupSizes[i] * (groupSizes[i] - 1)) / 2;
+			if (groupSizes[i] > 0) {
+				lcom3++;
+			}
+			if (find(fieldOrCallGroups, i) == i) {
+				lcom4++;
+			}
+		}
+
+		if (npc > 0) {
+			tcc = (float) ndc / npc;
+			lcc = (float) nic / npc;
+		}
+
+		lcom1 = npc - ndc;
+		lcom2 = Math.max(lcom1 - ndc, 0);
+	}
+
+	private List<MethodDeclaration> filterMethods(List<MethodDeclaration> methods) {
+		List<MethodDeclaration> methodList = new ArrayList<MethodDeclaration>();
+		for (MethodDeclaration m : methods) {
+			if (!(Modifier.isAbstract(m.getModifiers()) || m.isConstructor()))
+				methodList.add(m);
+		}
+		return methodList;
+	}
+
+	private int[] newGroups(int n) {
+		int[] groups = new int[n];
+		for (int i = 0; i < n; i++) {
+			groups[i] = i;
+		}
+		return groups;
+	}
+
+	private int find(int[] groups, int i) {
+		while (groups[i] != i) {
+			groups[i] = groups[groups[i]];
+			i = groups[i];
+		}
+		return i;
+	}
+
+	private void join(int[] groups, int i, int j) {
+		groups[find(groups, i)] = find(groups, j);
+	}
+
+	public float getTCC() {
+		return tcc;
+	}
+
+	public float getLCC() {
+		return lcc;
+	}
+
+	public int getLCOM1() {
+		return lcom1;
+	}
+
+	public int getLCOM2() {
+		return lcom2;
+	}
+
+	public int getLCOM3() {
+		return lcom3;
+	}
+
+	public int getLCOM4() {
+		return lcom4;
+	}
+
+}
@@ -1,12 +1,12 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
 import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.ClassArchetype;
 import org.repositoryminer.ast.ClassDeclaration;
@@ -16,16 +16,12 @@ import org.repositoryminer.codemetric.CodeMetricId;
 
 public class EC implements IDirectCodeMetric {
 
-	private Map<String, Integer> typeECMap = new HashMap<>();
-	
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		typeECMap.clear();
+	public Document calculate(MetricContext context) {
+		AbstractClassDeclaration type = context.getType();
 		Document doc = new Document("metric", getId().toString());
 		if(type.getArchetype() == ClassArchetype.CLASS_OR_INTERFACE){
-			calculateSuperEC(type);
-			calculateFieldEC(type);
-			calculateMethodEC(type);
+			Map<String, Integer> typeECMap = calculate(type);
 			
 			List<Document> classesDocument = new ArrayList<>();
 			typeECMap.entrySet().stream().forEach( entry -> classesDocument.add(new Document("class",entry.getKey()).append("value", entry.getValue())));
@@ -37,70 +33,68 @@ public class EC implements IDirectCodeMetric {
 	}
 
 	
-	private void calculateSuperEC(AbstractClassDeclaration type) {
+	private void calculateSuperEC(AbstractClassDeclaration type, Map<String, Integer> typeECMap) {
 		ClassDeclaration clazz = (ClassDeclaration)type;
 		SuperClassDeclaration sclazz = clazz.getSuperClass();
 		if(sclazz != null){
-			increaseECCount(sclazz.getName());
+			increaseECCount(typeECMap, sclazz.getName());
 			if(sclazz.isGeneric())
-				sclazz.getParameters().forEach( parameter -> increaseECCount(parameter));
+				sclazz.getParameters().forEach( parameter -> increaseECCount(typeECMap, parameter));
 		}
-		clazz.getInterfaces().forEach( inter -> increaseECCount(inter.getName()));
+		clazz.getInterfaces().forEach( inter -> increaseECCount(typeECMap, inter.getName()));
 	}
 
 
 	public Map<String, Integer> calculate (AbstractClassDeclaration type){
-		typeECMap.clear();
-		calculateSuperEC(type);
-		calculateFieldEC(type);
-		calculateMethodEC(type);
-		Map<String, Integer> calculo = new HashMap<>(typeECMap);
-		typeECMap.clear();
-		return calculo;
+		Map<String, Integer> typeECMap = new HashMap<>();
+		calculateSuperEC(type, typeECMap);
+		calculateFieldEC(type, typeECMap);
+		calculateMethodEC(type, typeECMap);
+		return typeECMap;
 	}
 	
-	private void calculateFieldEC(AbstractClassDeclaration type) {		
+	private void calculateFieldEC(AbstractClassDeclaration type, Map<String, Integer> typeECMap) {		
 		type.getFields().stream().forEach(field ->  {
 			if(field.isGeneric() || field.isPrimitiveType()){
 				return;
 			}
 			if(field.isArrayType())				
-				increaseECCount(field.getArrayTypeName());
+				increaseECCount(typeECMap, field.getArrayTypeName());
 			else if(field.isParametrizedType())
-				field.getParamTypes().forEach(param -> increaseECCount(param));
+				field.getParamTypes().forEach(param -> increaseECCount(typeECMap, param));
 			else
-				increaseECCount(field.getType());
+				increaseECCount(typeECMap, field.getType());
 				
 		});
 	}
 	
-	private void increaseECCount(String key){
+	private void increaseECCount(Map<String, Integer> typeECMap, String key){
 		if(key == null)
 			return;
 		typeECMap.put(key, typeECMap.getOrDefault(key, 0) + 1);		
 	}
 
-	private void calculateMethodEC(AbstractClassDeclaration type) {
+	private void calculateMethodEC(AbstractClassDeclaration type, Map<String, Integer> typeECMap) {
 		for(MethodDeclaration md: type.getMethods()){
 			md.getParameters().stream().forEach( param -> {
 				if(param.isPrimitiveType() || param.isGeneric())
 					return;
 				if(param.isArrayType())
-					increaseECCount(param.getArrayTypeName());
+					increaseECCount(typeECMap, param.getArrayTypeName());
 				else if (param.isParametrizedType()) {
-					param.getParamTypes().forEach(parameter -> increaseECCount(parameter));
+					param.getParamTypes().forEach(parameter -> increaseECCount(typeECMap, parameter));
 				}
-				increaseECCount(param.getType());
+				increaseECCount(typeECMap, param.getType());
 			});
 			if(!md.isReturnGeneric() && !md.isReturnPrimitive() && !md.isConstructor()){
 				if(md.isReturnArray())
-					increaseECCount(md.getReturnArrayType());
+					increaseECCount(typeECMap, md.getReturnArrayType());
 				else if(md.isReturnParametrized())
-					md.getReturnParameters().forEach(parameter -> increaseECCount(parameter));
+					md.getReturnParameters().forEach(parameter -> increaseECCount(typeECMap, parameter));
 				else
-					increaseECCount(md.getReturnType());
+					increaseECCount(typeECMap, md.getReturnType());
 			}
-			md.getThrownsExceptions().stream().forEach( thr -> increaseECCount(thr));
+			md.getThrownsExceptions().stream().forEach( thr -> increaseECCount(typeECMap, thr));
 		}
 	}
 
@@ -108,4 +102,9 @@ public class EC implements IDirectCodeMetric {
 	public CodeMetricId getId() {
 		return CodeMetricId.EC;
 	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
 }
\ No newline at end of file
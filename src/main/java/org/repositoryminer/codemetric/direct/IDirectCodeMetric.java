@@ -1,8 +1,8 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -12,7 +12,7 @@ import org.repositoryminer.codemetric.CodeMetricId;
  * not amount much into methods (to better justify its existence), it helps out
  * other classes in encapsulating generic collections of metrics, as in, for
  * instance,
- * {@link org.repositoryminer.mining.local.DirectCodeAnalysisProcessor#processCommitMetrics}.
+ * {@link org.repositoryminer.mining.local.DirectCodeAnalysisProcessor}.
  * <p>
  * We also aim for any future necessary evolution of the class to contain
  * further processing beyond the calculation of the metrics.
@@ -20,27 +20,36 @@ import org.repositoryminer.codemetric.CodeMetricId;
  * It is up to the implementations of this interface to properly decide how to
  * persist the data extracted from a given AST (
  * {@link org.repositoryminer.ast.AST}). After the metric's value is obtained it
- * can be pushed to the instance of org.bson.Document injected into
- * {@link #calculate(AbstractClassDeclaration, AST, Document)}.
+ * can be pushed to the instance of org.bson.Document returned by
+ * {@link #calculate(MetricContext)}.
+ * <p>
+ * The values of other metrics must be requested through the
+ * {@link MetricContext}, so they are calculated only once per type.
+ * <p>
+ * Implementations must be reentrant: the results are returned, never kept in
+ * fields, so the same instance can be used by many threads at the same time.
  */
 public interface IDirectCodeMetric {
 
 	/**
 	 * Activates the calculation of the metric
 	 * 
-	 * @param type
-	 *            the abstract representation of a type (
-	 *            {@link org.repositoryminer.ast.AbstractClassDeclaration}).
-	 * @param ast
-	 *            an instance of an abstract syntactic tree (
-	 *            {@link org.repositoryminer.ast.AST})
+	 * @param context
+	 *            the context of the type being measured, with the type, the
+	 *            AST and the values already calculated.
 	 * @return the document with the data to persist in database
 	 */
-	public Document calculate(AbstractClassDeclaration type, AST ast);
+	public Document calculate(MetricContext context);
 
 	/**
 	 * @return The metric ID
 	 */
 	public CodeMetricId getId();
 
+	/**
+	 * @return the metrics whose values are requested in the calculation, they
+	 *         are calculated before this one when configured together.
+	 */
+	public List<CodeMetricId> getRequiredMetrics();
+
 }
\ No newline at end of file
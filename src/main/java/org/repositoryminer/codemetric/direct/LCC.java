@@ -0,0 +1,37 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Loose Class Cohesion</h1>
+ * <p>
+ * The relative number of method pairs of a class that are directly or indirectly
+ * connected, i.e. that access in common at least one attribute of the measured
+ * class or are linked through other methods that do.
+ */
+public class LCC implements IDirectCodeMetric {
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.LCC;
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.LCC.toString()).append("value", getValue(context));
+	}
+
+	public static float getValue(MetricContext context) {
+		return Cohesion.getValue(context).getLCC();
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Lack of Cohesion in Methods 1</h1>
+ * <p>
+ * The number of method pairs of a class that do not access in common any
+ * attribute of the measured class.
+ */
+public class LCOM1 implements IDirectCodeMetric {
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.LCOM1;
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.LCOM1.toString()).append("value", getValue(context));
+	}
+
+	public static int getValue(MetricContext context) {
+		return Cohesion.getValue(context).getLCOM1();
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Lack of Cohesion in Methods 2</h1>
+ * <p>
+ * The number of method pairs that do not access in common any attribute minus
+ * the number of pairs that do, or zero if the difference is negative.
+ */
+public class LCOM2 implements IDirectCodeMetric {
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.LCOM2;
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.LCOM2.toString()).append("value", getValue(context));
+	}
+
+	public static int getValue(MetricContext context) {
+		return Cohesion.getValue(context).getLCOM2();
+	}
+
+}
\ No newline at end of file
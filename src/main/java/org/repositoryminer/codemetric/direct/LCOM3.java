@@ -0,0 +1,36 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Lack of Cohesion in Methods 3</h1>
+ * <p>
+ * The number of groups of methods of a class, two methods are in the same group
+ * when they access in common at least one attribute of the measured class.
+ */
+public class LCOM3 implements IDirectCodeMetric {
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.LCOM3;
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.LCOM3.toString()).append("value", getValue(context));
+	}
+
+	public static int getValue(MetricContext context) {
+		return Cohesion.getValue(context).getLCOM3();
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Lack of Cohesion in Methods 4</h1>
+ * <p>
+ * As LCOM3, but two methods are also in the same group when one of them invokes
+ * the other.
+ */
+public class LCOM4 implements IDirectCodeMetric {
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.LCOM4;
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.LCOM4.toString()).append("value", getValue(context));
+	}
+
+	public static int getValue(MetricContext context) {
+		return Cohesion.getValue(context).getLCOM4();
+	}
+
+}
\ No newline at end of file
@@ -1,43 +1,38 @@
 package org.repositoryminer.codemetric.direct;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.ast.SourceLines;
 import org.repositoryminer.codemetric.CodeMetricId;
 
+/**
+ * <h1>Lines of Code</h1>
+ * <p>
+ * LOC is defined as the number of physical lines of the file, read from its
+ * {@link SourceLines}.
+ */
 public class LOC implements IDirectCodeMetric {
 
-	private Pattern pattern;
-	
-	public LOC() {
-		pattern = Pattern.compile("(\r\n)|(\n)|(\r)");
-	}
-	
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.LOC;
 	}
 	
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		int sloc = calculate(ast.getSourceCode());
+	public Document calculate(MetricContext context) {
+		int sloc = context.getAST().getSourceLines().getLineCount();
 		return new Document("metric", CodeMetricId.LOC.toString()).append("value", sloc);
 	}
 
-	public int calculate(String source) {
-		if (source == null || source.length() == 0)
-			return 0;
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
 
-		int lines = 1;
-		Matcher matcher = pattern.matcher(source);
-		
-		while (matcher.find())
-			lines++;
-		
-		return lines;
+	public int calculate(String source) {
+		return new SourceLines(source).getLineCount();
 	}
 
-}
\ No newline at end of file
+}
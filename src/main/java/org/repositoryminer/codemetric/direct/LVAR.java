@@ -1,14 +1,11 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
-import org.repositoryminer.ast.Statement;
-import org.repositoryminer.ast.Statement.NodeType;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -18,20 +15,23 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class LVAR implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-	
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.LVAR;
 	}
 	
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+	
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
 		int accumulated = 0;
 		
-		for(MethodDeclaration method : type.getMethods()){
-			int lvar = calculate(method);
+		for(MethodDeclaration method : context.getType().getMethods()){
+			int lvar = getValue(method, context);
 			accumulated += lvar;
 			methodsDoc.add(new Document("method", method.getName()).append("value", lvar));
 		}
@@ -39,14 +39,8 @@ public class LVAR implements IDirectCodeMetric {
 		return new Document("metric", CodeMetricId.LVAR.toString()).append("accumulated", accumulated).append("methods", methodsDoc);
 	}
 	
-	public int calculate(MethodDeclaration method){
-		List<String> lvar = new ArrayList<String>();
-		for(Statement statement : method.getStatements()){
-			if(statement.getNodeType() == NodeType.VARIABLE_DECLARATION && !lvar.contains(statement.getExpression())) {
-				lvar.add(statement.getExpression());
-			}
-		}
-		return lvar.size();
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getFeatures(method).getLocalVariables();
 	}
 
 }
\ No newline at end of file
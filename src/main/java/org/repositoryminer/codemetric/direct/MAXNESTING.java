@@ -1,13 +1,11 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
-import org.repositoryminer.ast.Statement;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -18,28 +16,27 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class MAXNESTING implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.MAXNESTING;
 	}
 	
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
-		for (MethodDeclaration method : type.getMethods()) {
-			methodsDoc.add(new Document("method", method.getName()).append("value", calculate(method)));
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+	
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			methodsDoc.add(new Document("method", method.getName()).append("value", getValue(method, context)));
 		}
 		return new Document("metric", CodeMetricId.MAXNESTING.toString()).append("methods", methodsDoc);
 	}
 
-	public int calculate(MethodDeclaration method) {
-		int max = 0;
-		for (Statement stmt : method.getStatements()) {
-			max = Math.max(max, stmt.getNesting());
-		}
-		return max;
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getFeatures(method).getMaxNesting();
 	}
 	
 }
\ No newline at end of file
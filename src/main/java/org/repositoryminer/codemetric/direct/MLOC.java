@@ -1,11 +1,11 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
 import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
@@ -17,21 +17,23 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class MLOC implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-	private LOC locMetric = new LOC();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.MLOC;
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
 		int accumulated = 0;
 
-		for (MethodDeclaration method : type.getMethods()) {
-			int mloc = calculate(method, ast);
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			int mloc = getValue(method, context);
 			accumulated += mloc;
 			methodsDoc.add(new Document("method", method.getName()).append("value", mloc));
 		}
@@ -40,10 +42,13 @@ public class MLOC implements IDirectCodeMetric {
 				methodsDoc);
 	}
 
-	public int calculate(MethodDeclaration method, AST ast) {
-		String methodSourceCode = ast.getSourceCode().substring(method.getStartPositionInSourceCode(),
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getValue(CodeMetricId.MLOC, method, () -> calculate(method, context.getAST()));
+	}
+
+	public static int calculate(MethodDeclaration method, AST ast) {
+		return ast.getSourceLines().getLineCount(method.getStartPositionInSourceCode(),
 				method.getEndPositionInSourceCode());
-		return locMetric.calculate(methodSourceCode);
 	}
 
 }
\ No newline at end of file
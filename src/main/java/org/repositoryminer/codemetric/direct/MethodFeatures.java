@@ -0,0 +1,246 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.ast.FieldDeclaration;
+import org.repositoryminer.ast.MethodBody;
+import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.SymbolTable;
+
+/**
+ * The features of a method used by the metrics, extracted in a single pass over
+ * its statements. The members are compared by their symbol ids, so the
+ * statements are read without building any string, no matter how many metrics
+ * use them.
+ * <p>
+ * Within a {@link MetricContext} the features are extracted once per method,
+ * see {@link MetricContext#getFeatures(MethodDeclaration)}.
+ */
+public class MethodFeatures {
+
+	/**
+	 * A field or method referenced by a method, with the type that declares
+	 * it. The name of a method includes its parameter types. Both are symbols
+	 * of the snapshot, so members of different snapshots must not be mixed.
+	 */
+	public static class Member {
+
+		private SymbolTable symbolTable;
+		private int type;
+		private int name;
+
+		public Member(SymbolTable symbolTable, int type, int name) {
+			this.symbolTable = symbolTable;
+			this.type = type;
+			this.name = name;
+		}
+
+		public String getType() {
+			return symbolTable.getName(type);
+		}
+
+		public String getName() {
+			return symbolTable.getName(name);
+		}
+
+		public SymbolTable getSymbolTable() {
+			return symbolTable;
+		}
+
+		public int getTypeId() {
+			return type;
+		}
+
+		public int getNameId() {
+			return name;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Member)) {
+				return false;
+			}
+			Member other = (Member) obj;
+			return type == other.type && name == other.name;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type + name;
+		}
+
+	}
+
+	private Set<Member> accessedFields = new LinkedHashSet<Member>();
+	private Set<Member> invokedMethods = new LinkedHashSet<Member>();
+	private Set<String> ownFields = new HashSet<String>();
+	private Set<String> foreignFields = new HashSet<String>();
+	private int localVariables;
+	private int decisionPoints;
+	private int maxNesting;
+
+	/**
+	 * @param type
+	 *            the type that declares the method, used to tell its own
+	 *            fields from the foreign ones.
+	 * @param method
+	 *            the method.
+	 */
+	public MethodFeatures(AbstractClassDeclaration type, MethodDeclaration method) {
+		MethodBody body = method.getBody();
+		if (body == null) {
+			return;
+		}
+
+		SymbolTable symbols = body.getSymbolTable();
+		int typeId = symbols.getId(type.getName());
+
+		Set<String> typeFields = new HashSet<String>();
+		for (FieldDeclaration field : type.getFields()) {
+			typeFields.add(field.getName());
+		}
+
+		for (int i = 0; i < body.size(); i++) {
+			maxNesting = Math.max(maxNesting, body.getNesting(i));
+
+			switch (body.getNodeType(i)) {
+			case FIELD_ACCESS:
+				processFieldAccess(typeId, new Member(symbols, body.getOwner(i), body.getSymbol(i)));
+				break;
+
+			case METHOD_INVOCATION:
+				processMethodInvocation(typeId, typeFields, new Member(symbols, body.getOwner(i), body.getSymbol(i)));
+				break;
+
+			case VARIABLE_DECLARATION:
+				localVariables++;
+				break;
+
+			case SWITCH_CASE:
+				decisionPoints++;
+				break;
+
+			case IF:
+			case FOR:
+			case DO_WHILE:
+			case WHILE:
+			case CONDITIONAL_EXPRESSION:
+			case CATCH:
+				decisionPoints += body.getConditions(i);
+				break;
+
+			default:
+				break;
+			}
+		}
+	}
+
+	private void processFieldAccess(int typeId, Member field) {
+		if (!accessedFields.add(field)) {
+			return;
+		}
+
+		if (typeId == field.type) {
+			ownFields.add(field.getName());
+		} else {
+			foreignFields.add((field.getType() + "." + field.getName()).toLowerCase());
+		}
+	}
+
+	private void processMethodInvocation(int typeId, Set<String> typeFields, Member method) {
+		if (!invokedMethods.add(method)) {
+			return;
+		}
+
+		String field = getAccessedField(method.getName());
+		if (field == null) {
+			return;
+		}
+
+		if (typeId == method.type) {
+			String decapitalized = Character.toLowerCase(field.charAt(0)) + field.substring(1);
+			if (typeFields.contains(field)) {
+				ownFields.add(field);
+			}
+			if (typeFields.contains(decapitalized)) {
+				ownFields.add(decapitalized);
+			}
+		} else {
+			foreignFields.add((method.getType() + "." + field).toLowerCase());
+		}
+	}
+
+	// The field behind an accessor (get, set or is) without the prefix
+	private String getAccessedField(String signature) {
+		int paren = signature.indexOf('(');
+		int end = paren == -1 ? signature.length() : paren;
+		int begin;
+
+		if (signature.startsWith("get") || signature.startsWith("set")) {
+			begin = 3;
+		} else if (signature.startsWith("is")) {
+			begin = 2;
+		} else {
+			return null;
+		}
+
+		return end > begin ? signature.substring(begin, end) : null;
+	}
+
+	/**
+	 * @return the fields accessed directly, with their declaring types.
+	 */
+	public Set<Member> getAccessedFields() {
+		return Collections.unmodifiableSet(accessedFields);
+	}
+
+	/**
+	 * @return the methods invoked, with their declaring types.
+	 */
+	public Set<Member> getInvokedMethods() {
+		return Collections.unmodifiableSet(invokedMethods);
+	}
+
+	/**
+	 * @return the names of the fields of the type accessed directly or by its
+	 *         accessors.
+	 */
+	public Set<String> getOwnFields() {
+		return Collections.unmodifiableSet(ownFields);
+	}
+
+	/**
+	 * @return the fields of other types accessed directly or by their
+	 *         accessors, as lower case qualified names.
+	 */
+	public Set<String> getForeignFields() {
+		return Collections.unmodifiableSet(foreignFields);
+	}
+
+	/**
+	 * @return the number of local variables declared, each one apart from the
+	 *         others with the same type and name.
+	 */
+	public int getLocalVariables() {
+		return localVariables;
+	}
+
+	/**
+	 * @return the number of decision points plus one.
+	 */
+	public int getCyclomaticComplexity() {
+		return decisionPoints + 1;
+	}
+
+	public int getMaxNesting() {
+		return maxNesting;
+	}
+
+}
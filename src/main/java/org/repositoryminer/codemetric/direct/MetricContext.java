@@ -0,0 +1,94 @@
+package org.repositoryminer.codemetric.direct;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.repositoryminer.ast.AST;
+import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.ast.MethodDeclaration;
+
+/**
+ * Keeps the values calculated for a type while its metrics and code smells are
+ * processed, so a value needed by many of them is calculated only once. Metrics
+ * and code smells request the values of each other through the context, e.g.
+ * {@link WMC#getValue(MetricContext)}, instead of instantiating the metrics they
+ * depend on.
+ * <p>
+ * A context is bound to a single type and must not be shared between threads.
+ */
+public class MetricContext {
+
+	private AbstractClassDeclaration type;
+	private AST ast;
+
+	private Map<Object, Object> typeValues = new HashMap<Object, Object>();
+	private Map<Object, Map<MethodDeclaration, Object>> methodValues = new HashMap<Object, Map<MethodDeclaration, Object>>();
+
+	public MetricContext(AbstractClassDeclaration type, AST ast) {
+		this.type = type;
+		this.ast = ast;
+	}
+
+	/**
+	 * @param key
+	 *            identifies the value, usually the metric id.
+	 * @param calculation
+	 *            calculates the value, called only if it was not calculated
+	 *            before.
+	 * @return the value for the type.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getValue(Object key, Supplier<T> calculation) {
+		// not computeIfAbsent, the calculation may request other values
+		Object value = typeValues.get(key);
+		if (value == null) {
+			value = calculation.get();
+			typeValues.put(key, value);
+		}
+		return (T) value;
+	}
+
+	/**
+	 * @param key
+	 *            identifies the value, usually the metric id.
+	 * @param method
+	 *            a method of the type.
+	 * @param calculation
+	 *            calculates the value, called only if it was not calculated
+	 *            before.
+	 * @return the value for the method.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getValue(Object key, MethodDeclaration method, Supplier<T> calculation) {
+		Map<MethodDeclaration, Object> values = methodValues.get(key);
+		if (values == null) {
+			values = new IdentityHashMap<MethodDeclaration, Object>();
+			methodValues.put(key, values);
+		}
+
+		Object value = values.get(method);
+		if (value == null) {
+			value = calculation.get();
+			values.put(method, value);
+		}
+		return (T) value;
+	}
+
+	/**
+	 * @return the features of a method of the type, extracted once.
+	 */
+	public MethodFeatures getFeatures(MethodDeclaration method) {
+		return getValue(MethodFeatures.class, method, () -> new MethodFeatures(type, method));
+	}
+
+	public AbstractClassDeclaration getType() {
+		return type;
+	}
+
+	public AST getAST() {
+		return ast;
+	}
+
+}
@@ -1,33 +1,37 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.FieldDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class NOAM implements IDirectCodeMetric {
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		return new Document("metric", CodeMetricId.NOAM.toString()).append("value",
-				calculate(type.getMethods(), type.getFields()));
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.NOAM.toString()).append("value", getValue(context));
 	}
 
-	public int calculate(List<MethodDeclaration> methods, List<FieldDeclaration> fields) {
+	public static int getValue(MetricContext context) {
+		return context.getValue(CodeMetricId.NOAM,
+				() -> calculate(context.getType().getMethods(), context.getType().getFields()));
+	}
+
+	public static int calculate(List<MethodDeclaration> methods, List<FieldDeclaration> fields) {
 		int accessorMehtods = 0;
 		for (MethodDeclaration method : methods) {
-			if (method.getModifiers().contains("public") && isAcessor(method.getName(), fields)) {
+			if (Modifier.isPublic(method.getModifiers()) && isAcessor(method.getName(), fields)) {
 				accessorMehtods++;
 			}
 		}
 		return accessorMehtods;
 	}
 	
-	public boolean isAcessor(String signature, List<FieldDeclaration> fields) {
+	public static boolean isAcessor(String signature, List<FieldDeclaration> fields) {
 		String field;
 
 		if (signature.startsWith("get") || signature.startsWith("set")) {
@@ -60,4 +64,9 @@ public class NOAM implements IDirectCodeMetric {
 		return CodeMetricId.NOAM;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
 }
\ No newline at end of file
@@ -1,12 +1,12 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -18,38 +18,42 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class NOAV implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-	private LVAR lvarMetric = new LVAR();
-	private TCC tccMetric = new TCC(); // TCC and NOAV processes accessed fields the same way
-	
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.NOAV;
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
-		List<MethodDeclaration> filteredMethods = filterMethods(type.getMethods());
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.LVAR);
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
+		List<MethodDeclaration> filteredMethods = filterMethods(context.getType().getMethods());
 		
 		for (MethodDeclaration method : filteredMethods) {
-			methodsDoc.add(new Document("method", method.getName()).append("value", calculate(type, method)));
+			methodsDoc.add(new Document("method", method.getName()).append("value", getValue(method, context)));
 		}
 
 		return new Document("metric", CodeMetricId.NOAV.toString()).append("methods", methodsDoc);
 	}
 
-	public int calculate(AbstractClassDeclaration currType, MethodDeclaration method) {
-		int accessFields = tccMetric.processAccessedFields(currType, method).size();
-		int nVar = lvarMetric.calculate(method);
-		int nParams = method.getParameters() != null ? method.getParameters().size() : 0;
-		return accessFields + nVar + nParams;
+	public static int getValue(MethodDeclaration method, MetricContext context) {
+		return context.getValue(CodeMetricId.NOAV, method, () -> {
+			// the fields are processed the same way TCC does
+			int accessFields = context.getFeatures(method).getOwnFields().size();
+			int nVar = LVAR.getValue(method, context);
+			int nParams = method.getParameters() != null ? method.getParameters().size() : 0;
+			return accessFields + nVar + nParams;
+		});
 	}
 	
 	private List<MethodDeclaration> filterMethods(List<MethodDeclaration> methods) {
 		List<MethodDeclaration> methodList = new ArrayList<MethodDeclaration>();
 		for (MethodDeclaration m : methods) {
-			if (!(m.getModifiers().contains("abstract")))
+			if (!(Modifier.isAbstract(m.getModifiers())))
 				methodList.add(m);
 		}
 		return methodList;
@@ -1,8 +1,9 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 /**
@@ -18,8 +19,14 @@ public class NOM implements IDirectCodeMetric {
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		return new Document("metric", CodeMetricId.NOM.toString()).append("value", type.getMethods().size());
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.NOM.toString()).append("value",
+				context.getType().getMethods().size());
+	}
+
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
 	}
 
 }
\ No newline at end of file
@@ -1,25 +1,29 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.FieldDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class NOPA implements IDirectCodeMetric {
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		return new Document("metric", CodeMetricId.NOPA.toString()).append("value", calculate(type.getFields()));
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.NOPA.toString()).append("value", getValue(context));
 	}
 
-	public int calculate(List<FieldDeclaration> fields) {
+	public static int getValue(MetricContext context) {
+		return context.getValue(CodeMetricId.NOPA, () -> calculate(context.getType().getFields()));
+	}
+
+	public static int calculate(List<FieldDeclaration> fields) {
 		int publicMembers = 0;
 
 		for (FieldDeclaration field : fields) {
-			if (field.getModifiers().contains("public")) {
+			if (Modifier.isPublic(field.getModifiers())) {
 				publicMembers++;
 			}
 		}
@@ -32,4 +36,9 @@ public class NOPA implements IDirectCodeMetric {
 		return CodeMetricId.NOPA;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
 }
\ No newline at end of file
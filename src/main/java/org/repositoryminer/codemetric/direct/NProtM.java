@@ -1,20 +1,20 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.FieldDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class NProtM implements IDirectCodeMetric {
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
+	public Document calculate(MetricContext context) {
 		return new Document("metric", CodeMetricId.NProtM.toString()).append("value",
-				calculate(type.getMethods(), type.getFields()));
+				calculate(context.getType().getMethods(), context.getType().getFields()));
 
 	}
 
@@ -22,13 +22,13 @@ public class NProtM implements IDirectCodeMetric {
 		int members = 0;
 
 		for (MethodDeclaration method : methods) {
-			if (method.getModifiers().contains("protected")) {
+			if (Modifier.isProtected(method.getModifiers())) {
 				members++;
 			}
 		}
 
 		for (FieldDeclaration field : fields) {
-			if (field.getModifiers().contains("protected")) {
+			if (Modifier.isProtected(field.getModifiers())) {
 				members++;
 			}
 		}
@@ -41,4 +41,9 @@ public class NProtM implements IDirectCodeMetric {
 		return CodeMetricId.NProtM;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
 }
\ No newline at end of file
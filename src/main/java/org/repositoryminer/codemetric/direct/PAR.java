@@ -1,11 +1,10 @@
 package org.repositoryminer.codemetric.direct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
@@ -16,19 +15,17 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class PAR implements IDirectCodeMetric {
 
-	private List<Document> methodsDoc = new ArrayList<Document>();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.PAR;
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		methodsDoc.clear();
+	public Document calculate(MetricContext context) {
+		List<Document> methodsDoc = new ArrayList<Document>();
 		int accumulated = 0;
 
-		for(MethodDeclaration method : type.getMethods()){
+		for(MethodDeclaration method : context.getType().getMethods()){
 			int par = calculate(method);
 			accumulated += par;
 			methodsDoc.add(new Document("method", method.getName()).append("value", par));
@@ -37,6 +34,11 @@ public class PAR implements IDirectCodeMetric {
 		return new Document("metric", CodeMetricId.PAR.toString()).append("accumulated", accumulated).append("methods", methodsDoc);
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Collections.emptyList();
+	}
+
 	public int calculate(MethodDeclaration method){
 		return method.getParameters() != null ? method.getParameters().size() : 0;
 	}
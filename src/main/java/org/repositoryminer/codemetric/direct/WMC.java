@@ -1,9 +1,9 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
 import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
@@ -16,23 +16,36 @@ import org.repositoryminer.codemetric.CodeMetricId;
  */
 public class WMC implements IDirectCodeMetric {
 
-	private CYCLO cc = new CYCLO();
-
 	@Override
 	public CodeMetricId getId() {
 		return CodeMetricId.WMC;
 	}
 
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		return new Document("metric", CodeMetricId.WMC.toString()).append("value", calculate(type.getMethods()));
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.CYCLO);
+	}
+
+	@Override
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.WMC.toString()).append("value", getValue(context));
+	}
+
+	public static int getValue(MetricContext context) {
+		return context.getValue(CodeMetricId.WMC, () -> {
+			int wmc = 0;
+			for (MethodDeclaration method : context.getType().getMethods()) {
+				wmc += CYCLO.getValue(method, context);
+			}
+			return wmc;
+		});
 	}
 
-	public int calculate(List<MethodDeclaration> methods) {
+	public int calculate(AbstractClassDeclaration type, List<MethodDeclaration> methods) {
 		int wmc = 0;
 
 		for (MethodDeclaration method : methods) {
-			wmc += cc.calculate(method);
+			wmc += new MethodFeatures(type, method).getCyclomaticComplexity();
 		}
 
 		return wmc;
@@ -1,39 +1,41 @@
 package org.repositoryminer.codemetric.direct;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.FieldDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class WOC implements IDirectCodeMetric {
 
-	private NOAM noam = new NOAM();
-
 	@Override
-	public Document calculate(AbstractClassDeclaration type, AST ast) {
-		return new Document("metric", CodeMetricId.WOC.toString()).append("value",
-				calculate(type.getMethods(), type.getFields()));
+	public Document calculate(MetricContext context) {
+		return new Document("metric", CodeMetricId.WOC.toString()).append("value", getValue(context));
+	}
+
+	public static float getValue(MetricContext context) {
+		return context.getValue(CodeMetricId.WOC,
+				() -> calculate(context.getType().getMethods(), context.getType().getFields()));
 	}
 
-	public float calculate(List<MethodDeclaration> methods, List<FieldDeclaration> fields) {
+	public static float calculate(List<MethodDeclaration> methods, List<FieldDeclaration> fields) {
 		int publicMembers = 0;
 		int functionalMembers = 0;
 
 		for (FieldDeclaration field : fields) {
-			if (field.getModifiers().contains("public")) {
+			if (Modifier.isPublic(field.getModifiers())) {
 				publicMembers++;
 			}
 		}
 
 		for (MethodDeclaration method : methods) {
-			if (method.getModifiers().contains("public")) {
+			if (Modifier.isPublic(method.getModifiers())) {
 				publicMembers++;
 
-				if (!noam.isAcessor(method.getName(), fields)) {
+				if (!NOAM.isAcessor(method.getName(), fields)) {
 					functionalMembers++;
 				}
 			}
@@ -51,4 +53,9 @@ public class WOC implements IDirectCodeMetric {
 		return CodeMetricId.WOC;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.NOAM);
+	}
+
 }
\ No newline at end of file
@@ -1,57 +1,50 @@
 package org.repositoryminer.codemetric.indirect;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
-import org.repositoryminer.codemetric.direct.EC;
 
 public class AC implements IIndirectCodeMetric{
 
-	//this map holds the AC metric for each found type
-	private Map<String, Map<String, Integer>> acMap = new HashMap<>();
-	
 	@Override
-	public void calculate(AbstractClassDeclaration type, AST ast) {		
-		EC ec = new EC();
-		Map<String, Integer> ecMap = ec.calculate(type);
-		for(Entry<String, Integer> entry : ecMap.entrySet()){
-			Map<String, Integer> typeAcRelations = acMap.getOrDefault(entry.getKey(), new HashMap<>());
-			typeAcRelations.put(type.getName(), entry.getValue());
-			acMap.put(entry.getKey(), typeAcRelations);
-		}
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
 	}
 
 	@Override
-	public CodeMetricId getId() {
-		return CodeMetricId.AC;
-	}
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		Map<String, Document> result = new HashMap<>();
 
-	@Override
-	public Map<String, Document> getResult() {
+		// the types which depend on each type, found or not in the snapshot
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			int afferentCount = graph.getAfferentCount(type);
+			if (afferentCount == 0) {
+				continue;
+			}
 
-		Map<String, Document> result = new HashMap<>();
-		for(Entry<String, Map<String, Integer>> entry : acMap.entrySet()){
 			List<Document> acRelationsDoc = new ArrayList<>();
-			entry.getValue().entrySet().stream().forEach( relation -> 
-						acRelationsDoc.add(
-								new Document("class",relation.getKey())
-								.append("value", relation.getValue())));
-			result.put(entry.getKey(),
-							new Document("metric",this.getId().toString())
+			for (int i = 0; i < afferentCount; i++) {
+				acRelationsDoc.add(new Document("class", graph.getName(graph.getAfferent(type, i)))
+						.append("value", graph.getAfferentWeight(type, i)));
+			}
+
+			result.put(graph.getName(type),
+							new Document("metric",CodeMetricId.AC.toString())
 								.append("classes", acRelationsDoc)
-								.append("afferentCount", entry.getValue().keySet().size()));
+								.append("afferentCount", afferentCount));
 		}
-		
-		acMap.clear();
-		
+
 		return result;
 	}
 
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.AC;
+	}
+
 }
@@ -1,102 +1,89 @@
 package org.repositoryminer.codemetric.indirect;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
-import org.repositoryminer.ast.ClassArchetype;
-import org.repositoryminer.ast.ClassDeclaration;
-import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class BOvR implements IIndirectCodeMetric {
 
-	// The class name is the key and the list of its methods signature is the
-	// value
-	private Map<String, List<String>> methodsSignatures = new HashMap<String, List<String>>();
-
-	// The class name is the key and the superclass is the value
-	private Map<String, String> kinships = new HashMap<String, String>();
-
-	// Stores the bovr value of each class
-	private Map<String, Float> bovr = new HashMap<String, Float>();
-
 	@Override
-	public void calculate(AbstractClassDeclaration type, AST ast) {
-		if (!type.getArchetype().equals(ClassArchetype.CLASS_OR_INTERFACE)) {
-			return;
-		}
-
-		ClassDeclaration cls = (ClassDeclaration) type;
-
-		List<String> methodsList = new ArrayList<String>();
-		for (MethodDeclaration method : cls.getMethods()) {
-			if (!method.isConstructor()) {
-				methodsList.add(method.getName());
-			}
-		}
-		methodsSignatures.put(cls.getName(), methodsList);
-
-		String parentName = cls.getSuperClass() != null ? cls.getSuperClass().getName() : null;
-		kinships.put(cls.getName(), parentName);
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
 	}
 
 	@Override
-	public CodeMetricId getId() {
-		return CodeMetricId.BOvR;
-	}
-
-	@Override
-	public Map<String, Document> getResult() {
-		calculateBOvR();
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		float[] bovr = getValues(graph, types);
 
 		Map<String, Document> result = new HashMap<String, Document>();
-		for (Entry<String, Float> entry : bovr.entrySet()) {
-			result.put(entry.getKey(),
-					new Document("metric", CodeMetricId.BOvR.toString()).append("value", entry.getValue()));
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (graph.isDeclared(type)) {
+				result.put(graph.getName(type),
+						new Document("metric", CodeMetricId.BOvR.toString()).append("value", bovr[type]));
+			}
 		}
 
-		clean();
 		return result;
 	}
 
-	public void clean() {
-		methodsSignatures.clear();
-		kinships.clear();
-		bovr.clear();
+	/**
+	 * Also used by code smells which need the BOvR values.
+	 * 
+	 * @return the BOvR value of each declared type, indexed by the type id.
+	 */
+	public static float[] getValues(TypeGraph graph) {
+		return getValues(graph, graph.getIds());
 	}
-	
-	public Map<String, Float> getBOvR() {
-		return bovr;
-	}
-	
-	public void calculateBOvR() {
-		for (Entry<String, String> kinship : kinships.entrySet()) {
-			if (kinship.getValue() == null || methodsSignatures.get(kinship.getValue()) == null) {
+
+	/**
+	 * @return the BOvR value of each declared type given, indexed by the type
+	 *         id, the values of the other types are zero.
+	 */
+	public static float[] getValues(TypeGraph graph, BitSet types) {
+		float[] bovr = new float[graph.size()];
+
+		// The methods of a child are marked with its own stamp
+		int[] marks = new int[graph.getSymbolTable().size()];
+
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			int parent = graph.getSuperclass(type);
+			if (!graph.isDeclared(type) || parent == TypeGraph.NONE || !graph.isDeclared(parent)) {
 				// No parent or is not possible find the parent, so the highest
 				// possible value is used
-				bovr.put(kinship.getKey(), 0f);
 				continue;
 			}
 
-			List<String> parentMethods = methodsSignatures.get(kinship.getValue());
-			List<String> childMethods = methodsSignatures.get(kinship.getKey());
+			int stamp = type + 1;
+			for (int i = 0; i < graph.getMethodCount(type); i++) {
+				if (!graph.isConstructor(type, i)) {
+					marks[graph.getMethodName(type, i)] = stamp;
+				}
+			}
 
+			int parentMethods = 0;
 			int value = 0;
 
-			for (String method : parentMethods) {
-				if (childMethods.contains(method)) {
-					value++;
+			for (int i = 0; i < graph.getMethodCount(parent); i++) {
+				if (!graph.isConstructor(parent, i)) {
+					parentMethods++;
+					if (marks[graph.getMethodName(parent, i)] == stamp) {
+						value++;
+					}
 				}
 			}
 
-			bovr.put(kinship.getKey(), value * 1.0f / parentMethods.size());
+			bovr[type] = value * 1.0f / parentMethods;
 		}
+
+		return bovr;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.BOvR;
 	}
 
-}
\ No newline at end of file
+}
@@ -1,192 +1,111 @@
 package org.repositoryminer.codemetric.indirect;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
-import org.repositoryminer.ast.ClassArchetype;
-import org.repositoryminer.ast.ClassDeclaration;
-import org.repositoryminer.ast.FieldDeclaration;
-import org.repositoryminer.ast.MethodDeclaration;
-import org.repositoryminer.ast.Statement;
-import org.repositoryminer.ast.Statement.NodeType;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class BUR implements IIndirectCodeMetric {
 
-	// Stores the protected methods in the class
-	// Key - the class name
-	// Value - list of protected methods
-	private Map<String, List<String>> protMethods = new HashMap<String, List<String>>();
-
-	// Stores the protected fields in the class
-	// Key - the class name
-	// Value - list of protected fields
-	private Map<String, List<String>> protFields = new HashMap<String, List<String>>();
-
-	// Stores the parent fields accessed by child class methods
-	// Key - the child class name
-	// Value - parent fields accessed
-	private Map<String, Set<String>> accessedFields = new HashMap<String, Set<String>>();
-
-	// Stores the parent methods invoked by child class methods
-	// Key - the child class name
-	// Value - parent methods invoked
-	private Map<String, Set<String>> invokedMethods = new HashMap<String, Set<String>>();
-
-	// Stores the relationship between child and parent
-	// Key - the child class name
-	// Value - parent class name
-	private Map<String, String> kinships = new HashMap<String, String>();
-
-	// Stores the bur value
-	// Key - The class
-	// Value - BUR metric value
-	private Map<String, Float> bur = new HashMap<String, Float>();
-
 	@Override
-	public void calculate(AbstractClassDeclaration type, AST ast) {
-		if (!type.getArchetype().equals(ClassArchetype.CLASS_OR_INTERFACE)) {
-			return;
-		}
-
-		ClassDeclaration cls = (ClassDeclaration) type;
-
-		// find protected methods in the class
-		List<String> methodsList = new ArrayList<String>();
-		for (MethodDeclaration method : cls.getMethods()) {
-			if (method.getModifiers().contains("protected")) {
-				methodsList.add(method.getName());
-			}
-		}
-		protMethods.put(cls.getName(), methodsList);
-
-		// find protected fields in the class
-		List<String> fieldsList = new ArrayList<String>();
-		for (FieldDeclaration field : cls.getFields()) {
-			if (field.getModifiers().contains("protected")) {
-				fieldsList.add(field.getName());
-			}
-		}
-		protFields.put(cls.getName(), fieldsList);
-
-		String parentName = cls.getSuperClass() != null ? cls.getSuperClass().getName() : null;
-		kinships.put(cls.getName(), parentName);
-
-		// No parent, so nothing more to do here
-		if (parentName == null) {
-			return;
-		}
-
-		// If the class has a parent bur should be calculate
-		invokedMethods.put(cls.getName(), new HashSet<String>());
-		accessedFields.put(cls.getName(), new HashSet<String>());
-		for (MethodDeclaration method : cls.getMethods()) {
-			processAccessAndInvocations(cls.getName(), parentName, method);
-		}
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
 	}
 
 	@Override
-	public CodeMetricId getId() {
-		return CodeMetricId.BUR;
-	}
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		float[] bur = getValues(graph, types);
 
-	@Override
-	public Map<String, Document> getResult() {
-		calculateBUR();
-		
 		Map<String, Document> result = new HashMap<String, Document>();
-		for (Entry<String, Float> entry : bur.entrySet()) {
-			result.put(entry.getKey(),
-					new Document("metric", CodeMetricId.BUR.toString()).append("value", entry.getValue()));
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (graph.isDeclared(type)) {
+				result.put(graph.getName(type),
+						new Document("metric", CodeMetricId.BUR.toString()).append("value", bur[type]));
+			}
 		}
-		
-		clean();
-		
+
 		return result;
 	}
 
-	public void clean() {
-		protFields.clear();
-		protMethods.clear();
-		accessedFields.clear();
-		invokedMethods.clear();
-		kinships.clear();
-		bur.clear();
+	/**
+	 * Also used by code smells which need the BUR values.
+	 * 
+	 * @return the BUR value of each declared type, indexed by the type id.
+	 */
+	public static float[] getValues(TypeGraph graph) {
+		return getValues(graph, graph.getIds());
 	}
-	
-	public Map<String, Float> getBUR() {
-		return bur;
-	}
-	
-	public void calculateBUR() {
-		for (Entry<String, String> kinship : kinships.entrySet()) {
-			if (kinship.getValue() == null || protMethods.get(kinship.getValue()) == null) {
-				// No parent or is not possible find the parent, so the highest
-				// possible value is used
-				bur.put(kinship.getKey(), 0f);
-				continue;
-			}
 
-			List<String> parentFields = protFields.get(kinship.getValue());
-			List<String> parentMethods = protMethods.get(kinship.getValue());
+	/**
+	 * @return the BUR value of each declared type given, indexed by the type
+	 *         id, the values of the other types are zero.
+	 */
+	public static float[] getValues(TypeGraph graph, BitSet types) {
+		float[] bur = new float[graph.size()];
 
-			int totalProtected = parentFields.size() + parentMethods.size();
+		// The members used by a child are marked with a stamp of its own, so
+		// the marks need no cleaning between children
+		int[] marks = new int[graph.getSymbolTable().size()];
 
-			if (totalProtected == 0) {
-				bur.put(kinship.getKey(), 0f);
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			int parent = graph.getSuperclass(type);
+			if (!graph.isDeclared(type) || parent == TypeGraph.NONE || !graph.isDeclared(parent)) {
+				// No parent or is not possible find the parent, so the highest
+				// possible value is used
 				continue;
 			}
 
-			Set<String> childFields = accessedFields.get(kinship.getKey());
-			Set<String> childMethods = invokedMethods.get(kinship.getKey());
-
+			int totalProtected = 0;
 			int childUses = 0;
 
-			for (String parentField : parentFields) {
-				if (childFields.contains(parentField)) {
-					childUses++;
+			// The accessed fields that belong to the parent
+			int stamp = 2 * type + 1;
+			for (int i = 0; i < graph.getFieldUseCount(type); i++) {
+				if (graph.getFieldUseOwner(type, i) == parent) {
+					marks[graph.getFieldUseName(type, i)] = stamp;
 				}
 			}
 
-			for (String parentMethod : parentMethods) {
-				if (childMethods.contains(parentMethod)) {
-					childUses++;
+			for (int i = 0; i < graph.getFieldCount(parent); i++) {
+				if (Modifier.isProtected(graph.getFieldModifiers(parent, i))) {
+					totalProtected++;
+					if (marks[graph.getFieldName(parent, i)] == stamp) {
+						childUses++;
+					}
 				}
 			}
 
-			bur.put(kinship.getKey(), childUses * 1.0f / totalProtected);
-		}
-	}
-
-	private void processAccessAndInvocations(String clazz, String parent, MethodDeclaration method) {
-		for (Statement stmt : method.getStatements()) {
-			String exp, type, target;
-
-			if (stmt.getNodeType() == NodeType.FIELD_ACCESS || stmt.getNodeType() == NodeType.METHOD_INVOCATION) {
-				exp = stmt.getExpression();
-				type = exp.substring(0, exp.lastIndexOf("."));
-				target = exp.substring(exp.lastIndexOf(".") + 1);
-			} else {
-				continue;
+			// The invoked methods that belong to the parent
+			stamp = 2 * type + 2;
+			for (int i = 0; i < graph.getMethodUseCount(type); i++) {
+				if (graph.getMethodUseOwner(type, i) == parent) {
+					marks[graph.getMethodUseName(type, i)] = stamp;
+				}
 			}
 
-			// The accessed field or invoked method belongs to the parent
-			if (parent.equals(type)) {
-				if (stmt.getNodeType() == NodeType.FIELD_ACCESS) {
-					accessedFields.get(clazz).add(target);
-				} else {
-					invokedMethods.get(clazz).add(target);
+			for (int i = 0; i < graph.getMethodCount(parent); i++) {
+				if (Modifier.isProtected(graph.getMethodModifiers(parent, i))) {
+					totalProtected++;
+					if (marks[graph.getMethodName(parent, i)] == stamp) {
+						childUses++;
+					}
 				}
 			}
+
+			if (totalProtected > 0) {
+				bur[type] = childUses * 1.0f / totalProtected;
+			}
 		}
+
+		return bur;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.BUR;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package org.repositoryminer.codemetric.indirect;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Coupling Between Objects</h1>
+ * <p>
+ * CBO is defined as the number of other types a class is coupled to. Two types
+ * are coupled when the methods of one invoke the methods or access the fields
+ * of the other, in any direction.
+ */
+public class CBO implements IIndirectCodeMetric {
+
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
+	}
+
+	// The users of a type are found among all the declared types, so only the
+	// second pass is restricted to the types given
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		CallGraph calls = graph.getCallGraph();
+		Map<String, Document> result = new HashMap<String, Document>();
+
+		// The types used by a type are marked with a stamp of its own, so the
+		// marks need no cleaning between types
+		int[] marks = new int[graph.size()];
+		int stamp = 0;
+
+		// the distinct types used by each declared type, in the order of the
+		// declared types
+		int[] usedStart = new int[graph.size() + 1];
+		int[] used = new int[16];
+		int usedCount = 0;
+
+		for (int type = 0; type < graph.size(); type++) {
+			usedStart[type] = usedCount;
+			if (!graph.isDeclared(type)) {
+				continue;
+			}
+
+			stamp++;
+			marks[type] = stamp;
+			for (int i = 0; i < graph.getMethodCount(type); i++) {
+				int method = calls.getMethod(type, i);
+				for (int j = 0; j < calls.getCalleeCount(method); j++) {
+					int owner = calls.getType(calls.getCallee(method, j));
+					if (marks[owner] != stamp) {
+						marks[owner] = stamp;
+						used = add(used, usedCount++, owner);
+					}
+				}
+			}
+
+			for (int i = 0; i < graph.getFieldUseCount(type); i++) {
+				int owner = graph.getFieldUseOwner(type, i);
+				if (marks[owner] != stamp) {
+					marks[owner] = stamp;
+					used = add(used, usedCount++, owner);
+				}
+			}
+		}
+		usedStart[graph.size()] = usedCount;
+
+		// the types which use each type, by counting sort
+		int[] userStart = new int[graph.size() + 1];
+		for (int i = 0; i < usedCount; i++) {
+			userStart[used[i] + 1]++;
+		}
+		for (int type = 0; type < graph.size(); type++) {
+			userStart[type + 1] += userStart[type];
+		}
+
+		int[] users = new int[usedCount];
+		int[] next = Arrays.copyOf(userStart, graph.size());
+		for (int type = 0; type < graph.size(); type++) {
+			for (int i = usedStart[type]; i < usedStart[type + 1]; i++) {
+				users[next[used[i]]++] = type;
+			}
+		}
+
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (!graph.isDeclared(type)) {
+				continue;
+			}
+
+			stamp++;
+			marks[type] = stamp;
+			int cbo = 0;
+			for (int i = usedStart[type]; i < usedStart[type + 1]; i++) {
+				marks[used[i]] = stamp;
+				cbo++;
+			}
+			for (int i = userStart[type]; i < userStart[type + 1]; i++) {
+				if (marks[users[i]] != stamp) {
+					marks[users[i]] = stamp;
+					cbo++;
+				}
+			}
+
+			result.put(graph.getName(type), new Document("metric", CodeMetricId.CBO.toString()).append("value", cbo));
+		}
+
+		return result;
+	}
+
+	private static int[] add(int[] array, int index, int value) {
+		if (index == array.length) {
+			array = Arrays.copyOf(array, index * 2);
+		}
+		array[index] = value;
+		return array;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.CBO;
+	}
+
+}
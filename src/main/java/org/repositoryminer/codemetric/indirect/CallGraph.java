@@ -0,0 +1,202 @@
+package org.repositoryminer.codemetric.indirect;
+
+import java.util.Arrays;
+
+/**
+ * The invocations between the methods of a snapshot, in compressed sparse row
+ * form: the methods invoked by a method, and the methods which invoke it, are
+ * contiguous ranges of an int array. Every method gets a dense int id, the
+ * methods of the declared types first, in the order of the types and of their
+ * methods, then the methods of other types they invoke.
+ * <p>
+ * The graph is built from the invocations kept by a {@link TypeGraph}, see
+ * {@link TypeGraph#getCallGraph()}, and does not change after that.
+ */
+public class CallGraph {
+
+	private TypeGraph graph;
+
+	private int size;
+	private int[] types = new int[64];
+	private int[] names = new int[64];
+	// the first method of each declared type, the others follow it
+	private int[] firstMethods;
+
+	private int[] calleeStart;
+	private int[] callees;
+	private int[] callerStart;
+	private int[] callers;
+
+	// Open addressing from type and signature to method, used while building
+	private long[] keys;
+	private int[] values;
+
+	CallGraph(TypeGraph graph) {
+		this.graph = graph;
+
+		int declaredMethods = 0;
+		int edges = 0;
+		firstMethods = new int[graph.size()];
+		for (int type = 0; type < graph.size(); type++) {
+			firstMethods[type] = declaredMethods;
+			if (graph.isDeclared(type)) {
+				declaredMethods += graph.getMethodCount(type);
+				edges += graph.getCallCount(type);
+			}
+		}
+
+		int capacity = Integer.highestOneBit(Math.max(declaredMethods + edges, 8)) * 4;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, TypeGraph.NONE);
+
+		for (int type = 0; type < graph.size(); type++) {
+			if (graph.isDeclared(type)) {
+				for (int i = 0; i < graph.getMethodCount(type); i++) {
+					add(type, graph.getMethodName(type, i));
+				}
+			}
+		}
+
+		// the invocations of each method are not contiguous, so they are
+		// counted before they are placed
+		int[] sources = new int[edges];
+		int[] targets = new int[edges];
+		int edge = 0;
+		for (int type = 0; type < graph.size(); type++) {
+			if (!graph.isDeclared(type)) {
+				continue;
+			}
+			for (int i = 0; i < graph.getCallCount(type); i++) {
+				sources[edge] = firstMethods[type] + graph.getCallMethod(type, i);
+				targets[edge++] = find(graph.getCallOwner(type, i), graph.getCallName(type, i));
+			}
+		}
+		keys = null;
+		values = null;
+
+		calleeStart = new int[size + 1];
+		callees = new int[edges];
+		group(sources, targets, edges, calleeStart, callees);
+
+		callerStart = new int[size + 1];
+		callers = new int[edges];
+		group(targets, sources, edges, callerStart, callers);
+	}
+
+	// Counting sort of the pairs by their sources, keeping the order of the
+	// pairs with the same source
+	private void group(int[] sources, int[] targets, int edges, int[] start, int[] grouped) {
+		for (int i = 0; i < edges; i++) {
+			start[sources[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			start[i + 1] += start[i];
+		}
+
+		int[] next = Arrays.copyOf(start, size);
+		for (int i = 0; i < edges; i++) {
+			grouped[next[sources[i]]++] = targets[i];
+		}
+	}
+
+	// Adds a method, which is found by its type and signature unless the type
+	// has another one with the same signature
+	private int add(int type, int name) {
+		int slot = slot(type, name);
+		if (values[slot] == TypeGraph.NONE) {
+			keys[slot] = key(type, name);
+			values[slot] = size;
+		}
+
+		if (size == types.length) {
+			types = Arrays.copyOf(types, size * 2);
+			names = Arrays.copyOf(names, size * 2);
+		}
+		types[size] = type;
+		names[size] = name;
+		return size++;
+	}
+
+	// The method with the signature in the type, added if the type is not
+	// declared or does not declare it
+	private int find(int type, int name) {
+		int slot = slot(type, name);
+		return values[slot] != TypeGraph.NONE ? values[slot] : add(type, name);
+	}
+
+	// The slot of the method or the empty slot where it goes
+	private int slot(int type, int name) {
+		long key = key(type, name);
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int mask = keys.length - 1;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+
+		while (values[slot] != TypeGraph.NONE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static long key(int type, int name) {
+		return ((long) type << 32) | (name & 0xffffffffL);
+	}
+
+	public TypeGraph getTypeGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the number of methods, the ids go from zero to this value.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the method in the type, as in
+	 *            {@link TypeGraph#getMethodName(int, int)}.
+	 * @return the id of a method of a declared type.
+	 */
+	public int getMethod(int type, int index) {
+		return firstMethods[type] + index;
+	}
+
+	/**
+	 * @return the type that declares the method.
+	 */
+	public int getType(int method) {
+		return types[method];
+	}
+
+	/**
+	 * @return the symbol of the signature of the method.
+	 */
+	public int getName(int method) {
+		return names[method];
+	}
+
+	/**
+	 * @return the number of distinct methods invoked by the method.
+	 */
+	public int getCalleeCount(int method) {
+		return calleeStart[method + 1] - calleeStart[method];
+	}
+
+	public int getCallee(int method, int index) {
+		return callees[calleeStart[method] + index];
+	}
+
+	/**
+	 * @return the number of distinct methods which invoke the method.
+	 */
+	public int getCallerCount(int method) {
+		return callerStart[method + 1] - callerStart[method];
+	}
+
+	public int getCaller(int method, int index) {
+		return callers[callerStart[method] + index];
+	}
+
+}
@@ -1,97 +1,77 @@
 package org.repositoryminer.codemetric.indirect;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Queue;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
-import org.repositoryminer.ast.ClassArchetype;
-import org.repositoryminer.ast.ClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
 public class DIT implements IIndirectCodeMetric {
 
-	// DAG - Directed Acyclic Graph
-	// The superclass name is used as key and class name as value
-	// The classes relationship are structured as a DAG to further calculate DIT
-	// using breadth-first search. A empty string is used as root node.
-	// A child just has one father, so a simplified version of bfs is used.
-	private Map<String, List<String>> dag = new HashMap<String, List<String>>();
-
-	// Stores the DIT of each class.
-	private Map<String, Integer> dit = new HashMap<String, Integer>();
-	
 	@Override
-	public void calculate(AbstractClassDeclaration type, AST ast) {
-		if (!type.getArchetype().equals(ClassArchetype.CLASS_OR_INTERFACE)) {
-			return;
+	public Map<String, Document> calculate(TypeGraph graph) {
+		Map<String, Document> result = new HashMap<String, Document>();
+		int[] dit = new int[graph.size()];
+
+		// The classes relationship is a tree whose roots are the classes with
+		// no superclass, so the DIT is calculated using breadth-first search.
+		// A child just has one father, so each class is queued once. The
+		// classes whose ancestors are not in the snapshot are not reached.
+		int[] queue = new int[graph.size()];
+		int head = 0;
+		int tail = 0;
+
+		for (int type = 0; type < graph.size(); type++) {
+			if (graph.isDeclared(type) && graph.getSuperclass(type) == TypeGraph.NONE) {
+				queue[tail++] = type;
+			}
 		}
 
-		ClassDeclaration cls = (ClassDeclaration) type;
-		String clsName = cls.getName();
-		String superClsName = cls.getSuperClass() == null ? "" : cls.getSuperClass().getName();
+		while (head < tail) {
+			int type = queue[head++];
+			result.put(graph.getName(type), new Document("metric", CodeMetricId.DIT.toString()).append("value", dit[type]));
 
-		if (dag.containsKey(superClsName)) {
-			dag.get(superClsName).add(clsName);
-		} else {
-			List<String> auxList = new ArrayList<String>();
-			auxList.add(clsName);
-			dag.put(superClsName, auxList);
+			for (int i = 0; i < graph.getSubclassCount(type); i++) {
+				int subclass = graph.getSubclass(type, i);
+				dit[subclass] = dit[type] + 1;
+				queue[tail++] = subclass;
+			}
 		}
-	}
 
-	@Override
-	public CodeMetricId getId() {
-		return CodeMetricId.DIT;
+		return result;
 	}
 
+	// A few types are reached faster by walking up their ancestors, with the
+	// same result of the search: the walk stops at a type not in the snapshot
+	// and gives up on a cycle
 	@Override
-	public Map<String, Document> getResult() {
-		bfs();
-
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
 		Map<String, Document> result = new HashMap<String, Document>();
 
-		for (Entry<String, Integer> entry : dit.entrySet()) {
-			result.put(entry.getKey(), new Document("metric", CodeMetricId.DIT.toString()).append("value", entry.getValue()));
-		}
-		
-		// Do not forget to clean your mess after finish the job, another checkout can use this class.
-		dag.clear();
-		dit.clear();
-		
-		return result;
-	}
-
-	// calculates the DIT of the classes using breadth-first search
-	private void bfs() {
-		Queue<String> queue = new ArrayDeque<String>();
-		queue.add(""); // "" is the root
-
-		dit.put("", -1);
-
-		while (!queue.isEmpty()) {
-			String s = queue.poll();
-
-			List<String> adjs = dag.get(s);
-
-			// We reach a leaf node
-			if (adjs == null) {
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (!graph.isDeclared(type)) {
 				continue;
 			}
 
-			for (String w : adjs) {
-				queue.add(w);
-				dit.put(w, dit.get(s)+1);
+			int dit = 0;
+			int ancestor = graph.getSuperclass(type);
+			while (ancestor != TypeGraph.NONE && graph.isDeclared(ancestor) && dit < graph.size()) {
+				dit++;
+				ancestor = graph.getSuperclass(ancestor);
+			}
+
+			if (ancestor == TypeGraph.NONE) {
+				result.put(graph.getName(type), new Document("metric", CodeMetricId.DIT.toString()).append("value", dit));
 			}
 		}
-		
-		dit.remove(""); // removing the fake root from the result
+
+		return result;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.DIT;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package org.repositoryminer.codemetric.indirect;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Fan-out</h1>
+ * <p>
+ * FANOUT is defined as the number of distinct methods invoked by a method.
+ * The value of the class is the sum of the values of its methods.
+ */
+public class FANOUT implements IIndirectCodeMetric {
+
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
+	}
+
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		CallGraph calls = graph.getCallGraph();
+		Map<String, Document> result = new HashMap<String, Document>();
+
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (!graph.isDeclared(type)) {
+				continue;
+			}
+
+			List<Document> methodsDoc = new ArrayList<Document>();
+			int accumulated = 0;
+			for (int i = 0; i < graph.getMethodCount(type); i++) {
+				int value = calls.getCalleeCount(calls.getMethod(type, i));
+				accumulated += value;
+				methodsDoc.add(new Document("method", graph.getSymbolTable().getName(graph.getMethodName(type, i)))
+						.append("value", value));
+			}
+
+			result.put(graph.getName(type), new Document("metric", CodeMetricId.FANOUT.toString())
+					.append("accumulated", accumulated).append("methods", methodsDoc));
+		}
+
+		return result;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.FANOUT;
+	}
+
+}
@@ -1,36 +1,50 @@
 package org.repositoryminer.codemetric.indirect;
 
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 
+/**
+ * Indirect metrics depend on many types of a snapshot, so they are calculated
+ * over the {@link TypeGraph} of the snapshot, built once and shared by all of
+ * them. The metric itself keeps no state and can be shared between threads.
+ */
 public interface IIndirectCodeMetric {
 
 	/**
-	 * Activates the calculation of the metric
-	 * 
-	 * @param type
-	 *            the abstract representation of a type (
-	 *            {@link org.repositoryminer.ast.AbstractClassDeclaration}).
-	 * @param ast
-	 *            an instance of an abstract syntactic tree (
-	 *            {@link org.repositoryminer.ast.AST})
+	 * @return The metric ID
 	 */
-	public void calculate(AbstractClassDeclaration type, AST ast);
+	public CodeMetricId getId();
 
 	/**
-	 * @return The metric ID
+	 * @param graph
+	 *            the types of the snapshot.
+	 * @return a map containing the canonical class name as key and a document
+	 *         with the result of the class used as key.
 	 */
-	public CodeMetricId getId();
+	public Map<String, Document> calculate(TypeGraph graph);
 
 	/**
-	 * @return The result of the metric after process all the source files. This
-	 *         method ought to return a map containing the canonical class name as
-	 *         key and a document with the metric value of the class used as key.
+	 * Calculates the metric only for some types, the ones whose results may
+	 * have changed since the graph was patched.
+	 * 
+	 * @param types
+	 *            the ids of the types whose results are wanted.
+	 * @return the same results of {@link #calculate(TypeGraph)}, only for the
+	 *         types given.
 	 */
-	public Map<String, Document> getResult();
+	public default Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		Map<String, Document> result = calculate(graph);
+		for (Iterator<String> it = result.keySet().iterator(); it.hasNext();) {
+			int type = graph.getId(it.next());
+			if (type == TypeGraph.NONE || !types.get(type)) {
+				it.remove();
+			}
+		}
+		return result;
+	}
 
-}
\ No newline at end of file
+}
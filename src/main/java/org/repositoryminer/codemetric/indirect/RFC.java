@@ -0,0 +1,67 @@
+package org.repositoryminer.codemetric.indirect;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.Document;
+import org.repositoryminer.codemetric.CodeMetricId;
+
+/**
+ * <h1>Response For a Class</h1>
+ * <p>
+ * RFC is defined as the number of distinct methods that can be executed in
+ * response to a message received by the class: its own methods plus the
+ * methods they invoke directly.
+ */
+public class RFC implements IIndirectCodeMetric {
+
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph) {
+		return calculate(graph, graph.getIds());
+	}
+
+	@Override
+	public Map<String, Document> calculate(TypeGraph graph, BitSet types) {
+		CallGraph calls = graph.getCallGraph();
+		Map<String, Document> result = new HashMap<String, Document>();
+
+		// The methods in the response of a type are marked with a stamp of
+		// its own, so the marks need no cleaning between types
+		int[] marks = new int[calls.size()];
+		int stamp = 0;
+
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (!graph.isDeclared(type)) {
+				continue;
+			}
+
+			stamp++;
+			int rfc = graph.getMethodCount(type);
+			for (int i = 0; i < graph.getMethodCount(type); i++) {
+				marks[calls.getMethod(type, i)] = stamp;
+			}
+
+			for (int i = 0; i < graph.getMethodCount(type); i++) {
+				int method = calls.getMethod(type, i);
+				for (int j = 0; j < calls.getCalleeCount(method); j++) {
+					int callee = calls.getCallee(method, j);
+					if (marks[callee] != stamp) {
+						marks[callee] = stamp;
+						rfc++;
+					}
+				}
+			}
+
+			result.put(graph.getName(type), new Document("metric", CodeMetricId.RFC.toString()).append("value", rfc));
+		}
+
+		return result;
+	}
+
+	@Override
+	public CodeMetricId getId() {
+		return CodeMetricId.RFC;
+	}
+
+}
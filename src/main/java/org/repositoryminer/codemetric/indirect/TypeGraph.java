@@ -0,0 +1,562 @@
+package org.repositoryminer.codemetric.indirect;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.ast.ClassArchetype;
+import org.repositoryminer.ast.ClassDeclaration;
+import org.repositoryminer.ast.FieldDeclaration;
+import org.repositoryminer.ast.MethodDeclaration;
+import org.repositoryminer.ast.SuperClassDeclaration;
+import org.repositoryminer.ast.SymbolTable;
+import org.repositoryminer.codemetric.direct.EC;
+import org.repositoryminer.codemetric.direct.MethodFeatures;
+import org.repositoryminer.codemetric.direct.MethodFeatures.Member;
+
+/**
+ * The types of a snapshot and the relations between them, shared by all the
+ * indirect metrics and code smells. Every type, declared in the snapshot or
+ * only referenced by it, gets a dense int id. The lists of a declared type
+ * (interfaces, methods, fields, the members of other types it uses, the
+ * methods invoked by each of its methods and the types it is coupled to) are
+ * kept contiguous in primitive arrays.
+ * <p>
+ * The graph is built while the files of the snapshot are processed, then each
+ * metric is a query over it. The names of the members are symbols of the
+ * {@link SymbolTable} of the snapshot. A type added again replaces the one
+ * added before, so the graph of a snapshot can be patched into the graph of
+ * the next one by removing the types of the changed files and adding them
+ * again, see {@link #remove(String)}.
+ * <p>
+ * The graph is built by one thread at a time and must not be queried while
+ * types are being added.
+ */
+public class TypeGraph {
+
+	/** The id of a missing type. */
+	public static final int NONE = -1;
+
+	// Not a modifier, kept along the modifiers of the methods
+	private static final int CONSTRUCTOR = 1 << 30;
+
+	private static final EC EC_METRIC = new EC();
+
+	// Lists of int tuples, one list per type. The tuples of a type are added
+	// at once, so they are contiguous. The tuples of a replaced or removed
+	// list are left behind until they are half of the tuples.
+	private static class Lists {
+
+		private int[][] columns;
+		private int size;
+		private int garbage;
+		private int[] start = new int[0];
+		private int[] end = new int[0];
+
+		public Lists(int columns) {
+			this.columns = new int[columns][16];
+		}
+
+		public void begin(int type) {
+			if (type >= start.length) {
+				int capacity = Math.max(type + 1, start.length * 2);
+				start = Arrays.copyOf(start, capacity);
+				end = Arrays.copyOf(end, capacity);
+			}
+
+			garbage += end[type] - start[type];
+			end[type] = start[type];
+			if (garbage > 1024 && garbage > size / 2) {
+				compact();
+			}
+
+			start[type] = size;
+			end[type] = size;
+		}
+
+		public void add(int a, int b, int c) {
+			if (size == columns[0].length) {
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = Arrays.copyOf(columns[i], size * 2);
+				}
+			}
+			columns[0][size] = a;
+			if (columns.length > 1) {
+				columns[1][size] = b;
+			}
+			if (columns.length > 2) {
+				columns[2][size] = c;
+			}
+			size++;
+		}
+
+		public void finish(int type) {
+			end[type] = size;
+		}
+
+		public void clear(int type) {
+			begin(type);
+		}
+
+		private void compact() {
+			int[][] compacted = new int[columns.length][Math.max(16, size - garbage)];
+			int position = 0;
+			for (int type = 0; type < start.length; type++) {
+				int count = end[type] - start[type];
+				for (int i = 0; i < columns.length; i++) {
+					System.arraycopy(columns[i], start[type], compacted[i], position, count);
+				}
+				start[type] = position;
+				end[type] = position + count;
+				position += count;
+			}
+			columns = compacted;
+			size = position;
+			garbage = 0;
+		}
+
+		public int count(int type) {
+			return type < start.length ? end[type] - start[type] : 0;
+		}
+
+		public int get(int type, int index, int column) {
+			return columns[column][start[type] + index];
+		}
+
+	}
+
+	private SymbolTable symbolTable;
+
+	private int size;
+	private int[] names = new int[64];
+	private int[] superclasses = new int[64];
+	private BitSet declared = new BitSet();
+	private int[] typeOfSymbol = new int[0];
+
+	private Lists interfaces = new Lists(1);
+	// name, modifiers and cyclomatic complexity
+	private Lists methods = new Lists(3);
+	// name and modifiers
+	private Lists fields = new Lists(2);
+	// owner and name
+	private Lists fieldUses = new Lists(2);
+	private Lists methodUses = new Lists(2);
+	// method, owner and name of the method invoked
+	private Lists calls = new Lists(3);
+	// type and number of references
+	private Lists couplings = new Lists(2);
+
+	// The reverse edges, built on demand
+	private boolean reversed;
+	private int[] subclassStart;
+	private int[] subclasses;
+	private int[] afferentStart;
+	private int[] afferentTypes;
+	private int[] afferentWeights;
+	private CallGraph callGraph;
+
+	/**
+	 * @param symbolTable
+	 *            the symbol table of the snapshot, the same given to the
+	 *            parser.
+	 */
+	public TypeGraph(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+	}
+
+	/**
+	 * Adds a type declared in the snapshot. Types which are not classes or
+	 * interfaces are ignored.
+	 */
+	public void add(AbstractClassDeclaration type) {
+		if (type.getArchetype() != ClassArchetype.CLASS_OR_INTERFACE) {
+			return;
+		}
+
+		ClassDeclaration cls = (ClassDeclaration) type;
+		int id = getOrAdd(symbolTable.getId(cls.getName()));
+		declared.set(id);
+		// may grow the arrays, so it is not assigned directly
+		int superclass = cls.getSuperClass() != null ? getOrAdd(symbolTable.getId(cls.getSuperClass().getName()))
+				: NONE;
+		superclasses[id] = superclass;
+
+		interfaces.begin(id);
+		for (SuperClassDeclaration superInterface : cls.getInterfaces()) {
+			interfaces.add(getOrAdd(symbolTable.getId(superInterface.getName())), 0, 0);
+		}
+		interfaces.finish(id);
+
+		fields.begin(id);
+		for (FieldDeclaration field : cls.getFields()) {
+			fields.add(symbolTable.getId(field.getName()), field.getModifiers(), 0);
+		}
+		fields.finish(id);
+
+		Set<Member> accessedFields = new LinkedHashSet<Member>();
+		Set<Member> invokedMethods = new LinkedHashSet<Member>();
+
+		methods.begin(id);
+		calls.begin(id);
+		for (MethodDeclaration method : cls.getMethods()) {
+			MethodFeatures features = new MethodFeatures(cls, method);
+			accessedFields.addAll(features.getAccessedFields());
+			invokedMethods.addAll(features.getInvokedMethods());
+
+			int index = methods.count(id);
+			for (Member invoked : features.getInvokedMethods()) {
+				calls.add(index, getOrAdd(getSymbol(invoked.getTypeId(), invoked.getType(), invoked)),
+						getSymbol(invoked.getNameId(), invoked.getName(), invoked));
+			}
+
+			int flags = method.getModifiers() | (method.isConstructor() ? CONSTRUCTOR : 0);
+			methods.add(symbolTable.getId(method.getName()), flags, features.getCyclomaticComplexity());
+		}
+		calls.finish(id);
+		methods.finish(id);
+
+		addUses(id, accessedFields, fieldUses);
+		addUses(id, invokedMethods, methodUses);
+
+		couplings.begin(id);
+		for (Entry<String, Integer> coupling : EC_METRIC.calculate(cls).entrySet()) {
+			couplings.add(getOrAdd(symbolTable.getId(coupling.getKey())), coupling.getValue(), 0);
+		}
+		couplings.finish(id);
+
+		reversed = false;
+		callGraph = null;
+	}
+
+	/**
+	 * Removes a declared type, which keeps its id as a type only referenced by
+	 * the snapshot.
+	 */
+	public void remove(String name) {
+		int id = getId(name);
+		if (id == NONE || !declared.get(id)) {
+			return;
+		}
+
+		declared.clear(id);
+		superclasses[id] = NONE;
+		interfaces.clear(id);
+		methods.clear(id);
+		fields.clear(id);
+		fieldUses.clear(id);
+		methodUses.clear(id);
+		couplings.clear(id);
+		calls.clear(id);
+
+		reversed = false;
+		callGraph = null;
+	}
+
+	private void addUses(int id, Set<Member> members, Lists uses) {
+		uses.begin(id);
+		for (Member member : members) {
+			uses.add(getOrAdd(getSymbol(member.getTypeId(), member.getType(), member)),
+					getSymbol(member.getNameId(), member.getName(), member), 0);
+		}
+		uses.finish(id);
+	}
+
+	// The members should come from the same table, but just in case
+	private int getSymbol(int id, String name, Member member) {
+		return member.getSymbolTable() == symbolTable ? id : symbolTable.getId(name);
+	}
+
+	private int getOrAdd(int symbol) {
+		if (symbol >= typeOfSymbol.length) {
+			int length = typeOfSymbol.length;
+			typeOfSymbol = Arrays.copyOf(typeOfSymbol, Math.max(symbol + 1, length * 2));
+			Arrays.fill(typeOfSymbol, length, typeOfSymbol.length, NONE);
+		}
+
+		if (typeOfSymbol[symbol] == NONE) {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				superclasses = Arrays.copyOf(superclasses, size * 2);
+			}
+			names[size] = symbol;
+			superclasses[size] = NONE;
+			typeOfSymbol[symbol] = size++;
+		}
+		return typeOfSymbol[symbol];
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	/**
+	 * @return the number of types, the ids go from zero to this value.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the ids of all the types, as a set to be given to the indirect
+	 *         metrics.
+	 */
+	public BitSet getIds() {
+		BitSet ids = new BitSet(size);
+		ids.set(0, size);
+		return ids;
+	}
+
+	/**
+	 * @return the id of the type or {@link #NONE} if it is not in the graph.
+	 */
+	public int getId(String name) {
+		int symbol = symbolTable.find(name);
+		return symbol != SymbolTable.NONE && symbol < typeOfSymbol.length ? typeOfSymbol[symbol] : NONE;
+	}
+
+	public String getName(int type) {
+		return symbolTable.getName(names[type]);
+	}
+
+	/**
+	 * @return whether the type is declared in the snapshot, otherwise it is
+	 *         only referenced and has no lists.
+	 */
+	public boolean isDeclared(int type) {
+		return declared.get(type);
+	}
+
+	/**
+	 * @return the superclass of the type or {@link #NONE}.
+	 */
+	public int getSuperclass(int type) {
+		return superclasses[type];
+	}
+
+	public int getInterfaceCount(int type) {
+		return interfaces.count(type);
+	}
+
+	public int getInterface(int type, int index) {
+		return interfaces.get(type, index, 0);
+	}
+
+	/**
+	 * @return the number of declared types whose superclass is the type.
+	 */
+	public int getSubclassCount(int type) {
+		reverse();
+		return subclassStart[type + 1] - subclassStart[type];
+	}
+
+	public int getSubclass(int type, int index) {
+		reverse();
+		return subclasses[subclassStart[type] + index];
+	}
+
+	public int getMethodCount(int type) {
+		return methods.count(type);
+	}
+
+	/**
+	 * @return the symbol of the signature of the method.
+	 */
+	public int getMethodName(int type, int index) {
+		return methods.get(type, index, 0);
+	}
+
+	public int getMethodModifiers(int type, int index) {
+		return methods.get(type, index, 1) & ~CONSTRUCTOR;
+	}
+
+	public boolean isConstructor(int type, int index) {
+		return (methods.get(type, index, 1) & CONSTRUCTOR) != 0;
+	}
+
+	public int getMethodComplexity(int type, int index) {
+		return methods.get(type, index, 2);
+	}
+
+	public int getFieldCount(int type) {
+		return fields.count(type);
+	}
+
+	/**
+	 * @return the symbol of the name of the field.
+	 */
+	public int getFieldName(int type, int index) {
+		return fields.get(type, index, 0);
+	}
+
+	public int getFieldModifiers(int type, int index) {
+		return fields.get(type, index, 1);
+	}
+
+	/**
+	 * @return the number of distinct fields, of any type, accessed by the
+	 *         methods of the type.
+	 */
+	public int getFieldUseCount(int type) {
+		return fieldUses.count(type);
+	}
+
+	/**
+	 * @return the type that declares the field accessed.
+	 */
+	public int getFieldUseOwner(int type, int index) {
+		return fieldUses.get(type, index, 0);
+	}
+
+	/**
+	 * @return the symbol of the name of the field accessed.
+	 */
+	public int getFieldUseName(int type, int index) {
+		return fieldUses.get(type, index, 1);
+	}
+
+	/**
+	 * @return the number of distinct methods, of any type, invoked by the
+	 *         methods of the type.
+	 */
+	public int getMethodUseCount(int type) {
+		return methodUses.count(type);
+	}
+
+	/**
+	 * @return the type that declares the method invoked.
+	 */
+	public int getMethodUseOwner(int type, int index) {
+		return methodUses.get(type, index, 0);
+	}
+
+	/**
+	 * @return the symbol of the signature of the method invoked.
+	 */
+	public int getMethodUseName(int type, int index) {
+		return methodUses.get(type, index, 1);
+	}
+
+	/**
+	 * @return the number of invocations made by the methods of the type, each
+	 *         method counts a method it invokes once.
+	 */
+	public int getCallCount(int type) {
+		return calls.count(type);
+	}
+
+	/**
+	 * @return the index of the method of the type which makes the invocation.
+	 */
+	public int getCallMethod(int type, int index) {
+		return calls.get(type, index, 0);
+	}
+
+	/**
+	 * @return the type that declares the method invoked.
+	 */
+	public int getCallOwner(int type, int index) {
+		return calls.get(type, index, 1);
+	}
+
+	/**
+	 * @return the symbol of the signature of the method invoked.
+	 */
+	public int getCallName(int type, int index) {
+		return calls.get(type, index, 2);
+	}
+
+	/**
+	 * @return the graph of the invocations between the methods of the
+	 *         snapshot, built once until the graph changes.
+	 */
+	public CallGraph getCallGraph() {
+		if (callGraph == null) {
+			callGraph = new CallGraph(this);
+		}
+		return callGraph;
+	}
+
+	/**
+	 * @return the number of types the type depends on, as counted by
+	 *         {@link EC}.
+	 */
+	public int getEfferentCount(int type) {
+		return couplings.count(type);
+	}
+
+	public int getEfferent(int type, int index) {
+		return couplings.get(type, index, 0);
+	}
+
+	/**
+	 * @return the number of references to the type the type depends on.
+	 */
+	public int getEfferentWeight(int type, int index) {
+		return couplings.get(type, index, 1);
+	}
+
+	/**
+	 * @return the number of declared types which depend on the type.
+	 */
+	public int getAfferentCount(int type) {
+		reverse();
+		return afferentStart[type + 1] - afferentStart[type];
+	}
+
+	public int getAfferent(int type, int index) {
+		reverse();
+		return afferentTypes[afferentStart[type] + index];
+	}
+
+	public int getAfferentWeight(int type, int index) {
+		reverse();
+		return afferentWeights[afferentStart[type] + index];
+	}
+
+	// Both reverse lists are built by counting the edges into each type, so
+	// the sources come in the order of their ids
+	private void reverse() {
+		if (reversed) {
+			return;
+		}
+
+		subclassStart = new int[size + 1];
+		afferentStart = new int[size + 1];
+		for (int type = declared.nextSetBit(0); type >= 0; type = declared.nextSetBit(type + 1)) {
+			if (superclasses[type] != NONE) {
+				subclassStart[superclasses[type] + 1]++;
+			}
+			for (int i = 0; i < couplings.count(type); i++) {
+				afferentStart[getEfferent(type, i) + 1]++;
+			}
+		}
+
+		for (int type = 0; type < size; type++) {
+			subclassStart[type + 1] += subclassStart[type];
+			afferentStart[type + 1] += afferentStart[type];
+		}
+
+		subclasses = new int[subclassStart[size]];
+		afferentTypes = new int[afferentStart[size]];
+		afferentWeights = new int[afferentStart[size]];
+		int[] nextSubclass = Arrays.copyOf(subclassStart, size);
+		int[] nextAfferent = Arrays.copyOf(afferentStart, size);
+
+		for (int type = declared.nextSetBit(0); type >= 0; type = declared.nextSetBit(type + 1)) {
+			if (superclasses[type] != NONE) {
+				subclasses[nextSubclass[superclasses[type]]++] = type;
+			}
+			for (int i = 0; i < couplings.count(type); i++) {
+				int position = nextAfferent[getEfferent(type, i)]++;
+				afferentTypes[position] = type;
+				afferentWeights[position] = getEfferentWeight(type, i);
+			}
+		}
+
+		reversed = true;
+	}
+
+}
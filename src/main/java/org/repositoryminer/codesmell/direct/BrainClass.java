@@ -1,11 +1,14 @@
 package org.repositoryminer.codesmell.direct;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.MLOC;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codemetric.direct.TCC;
 import org.repositoryminer.codemetric.direct.WMC;
 import org.repositoryminer.codesmell.CodeSmellId;
@@ -25,10 +28,7 @@ import org.repositoryminer.codesmell.CodeSmellId;
  */
 public class BrainClass implements IDirectCodeSmell {
 
-	private WMC wmcMetric = new WMC();
 	private BrainMethod brainMethod = new BrainMethod();
-	private TCC tccMetric = new TCC();
-	private MLOC mlocMetric = new MLOC();
 
 	private int wmcThreshold = 47;
 	private float tccThreshold = 0.5f;
@@ -51,16 +51,23 @@ public class BrainClass implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
-		int wmc = wmcMetric.calculate(type.getMethods());
-		float tcc = tccMetric.calculate(type, type.getMethods());
+	public List<CodeMetricId> getRequiredMetrics() {
+		List<CodeMetricId> metrics = new ArrayList<CodeMetricId>(brainMethod.getRequiredMetrics());
+		metrics.addAll(Arrays.asList(CodeMetricId.WMC, CodeMetricId.TCC));
+		return metrics;
+	}
+
+	@Override
+	public Document detect(MetricContext context) {
+		int wmc = WMC.getValue(context);
+		float tcc = TCC.getValue(context);
 
 		int nbm = 0; // number of brain methods
 		int totalMloc = 0; // total number of lines of code from methods
 
-		for (MethodDeclaration method : type.getMethods()) {
-			totalMloc += mlocMetric.calculate(method, ast);
-			if (brainMethod.detect(type, method, ast)) {
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			totalMloc += MLOC.getValue(method, context);
+			if (brainMethod.detect(method, context)) {
 				nbm++;
 			}
 		}
@@ -1,16 +1,16 @@
 package org.repositoryminer.codesmell.direct;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.CYCLO;
 import org.repositoryminer.codemetric.direct.MAXNESTING;
 import org.repositoryminer.codemetric.direct.MLOC;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codemetric.direct.NOAV;
 import org.repositoryminer.codesmell.CodeSmellId;
 
@@ -43,11 +43,6 @@ import org.repositoryminer.codesmell.CodeSmellId;
  */
 public class BrainMethod implements IDirectCodeSmell {
 
-	private MLOC mlocMetric = new MLOC();
-	private CYCLO ccMetric = new CYCLO();
-	private NOAV noavMetric = new NOAV();
-	private MAXNESTING maxNestingMetric = new MAXNESTING();
-
 	private int mlocThreshold = 65;
 	private float ccThreshold = 10;
 	private int maxNestingThreshold = 5;
@@ -69,14 +64,19 @@ public class BrainMethod implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.CYCLO, CodeMetricId.MLOC, CodeMetricId.NOAV, CodeMetricId.MAXNESTING);
+	}
+
+	@Override
+	public Document detect(MetricContext context) {
 		List<Document> methods = new ArrayList<Document>();
 
-		for (MethodDeclaration method : type.getMethods()) {
-			int cc = ccMetric.calculate(method);
-			int mloc = mlocMetric.calculate(method, ast);
-			int noav = noavMetric.calculate(type, method);
-			int maxNesting = maxNestingMetric.calculate(method);
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			int cc = CYCLO.getValue(method, context);
+			int mloc = MLOC.getValue(method, context);
+			int noav = NOAV.getValue(method, context);
+			int maxNesting = MAXNESTING.getValue(method, context);
 
 			if (detect(cc, mloc, noav, maxNesting)) {
 				Document metrics = new Document(CodeMetricId.MLOC.toString(), mloc)
@@ -99,14 +99,13 @@ public class BrainMethod implements IDirectCodeSmell {
 				&& noav > noavThreshold;
 	}
 
-	public boolean detect(AbstractClassDeclaration type, MethodDeclaration method, AST ast) {
-		int cc = ccMetric.calculate(method);
-		int mloc = mlocMetric.calculate(method, ast);
-		int noav = noavMetric.calculate(type, method);
-		int maxNesting = maxNestingMetric.calculate(method);
+	public boolean detect(MethodDeclaration method, MetricContext context) {
+		int cc = CYCLO.getValue(method, context);
+		int mloc = MLOC.getValue(method, context);
+		int noav = NOAV.getValue(method, context);
+		int maxNesting = MAXNESTING.getValue(method, context);
 
-		return mloc > (mlocThreshold / 2) && cc >= ccThreshold && maxNesting >= maxNestingThreshold
-				&& noav > noavThreshold;
+		return detect(cc, mloc, noav, maxNesting);
 	}
 
 	@Override
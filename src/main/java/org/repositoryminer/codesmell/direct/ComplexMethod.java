@@ -1,14 +1,14 @@
 package org.repositoryminer.codesmell.direct;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.CYCLO;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codesmell.CodeSmellId;
 
 /**
@@ -22,8 +22,6 @@ import org.repositoryminer.codesmell.CodeSmellId;
  */
 public class ComplexMethod implements IDirectCodeSmell {
 
-	private CYCLO ccMetric = new CYCLO();
-
 	private int ccThreshold = 10;
 
 	public ComplexMethod() {
@@ -39,11 +37,16 @@ public class ComplexMethod implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.CYCLO);
+	}
+
+	@Override
+	public Document detect(MetricContext context) {
 		List<Document> methods = new ArrayList<Document>();
 
-		for (MethodDeclaration method : type.getMethods()) {
-			int cc = ccMetric.calculate(method);
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			int cc = CYCLO.getValue(method, context);
 			if (cc > ccThreshold) {
 				Document mDoc = new Document("signature", method.getName()).append("metrics",
 						new Document(CodeMetricId.CYCLO.toString(), cc));
@@ -1,9 +1,11 @@
 package org.repositoryminer.codesmell.direct;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codemetric.direct.NOAM;
 import org.repositoryminer.codemetric.direct.NOPA;
 import org.repositoryminer.codemetric.direct.WMC;
@@ -12,11 +14,6 @@ import org.repositoryminer.codesmell.CodeSmellId;
 
 public class DataClass implements IDirectCodeSmell {
 
-	private WOC wocMetric = new WOC();
-	private NOPA nopaMetric = new NOPA();
-	private NOAM noamMetric = new NOAM();
-	private WMC wmcMetric = new WMC();
-
 	private float wocThreshold = 1 / 3f;
 	private int noamThreshold = 5;
 	private int nopaThreshold = 3;
@@ -36,11 +33,11 @@ public class DataClass implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
-		float woc = wocMetric.calculate(type.getMethods(), type.getFields());
-		int nopa = nopaMetric.calculate(type.getFields());
-		int noam = noamMetric.calculate(type.getMethods(), type.getFields());
-		int wmc = wmcMetric.calculate(type.getMethods());
+	public Document detect(MetricContext context) {
+		float woc = WOC.getValue(context);
+		int nopa = NOPA.getValue(context);
+		int noam = NOAM.getValue(context);
+		int wmc = WMC.getValue(context);
 
 		if (detect(woc, nopa, noam, wmc)) {
 			Document metrics = new Document();
@@ -60,6 +57,11 @@ public class DataClass implements IDirectCodeSmell {
 		return CodeSmellId.DATA_CLASS;
 	}
 
+	@Override
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.WOC, CodeMetricId.NOPA, CodeMetricId.NOAM, CodeMetricId.WMC);
+	}
+
 	@Override
 	public Document getThresholds() {
 		Document doc = new Document();
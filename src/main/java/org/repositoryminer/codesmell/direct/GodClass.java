@@ -1,11 +1,12 @@
 package org.repositoryminer.codesmell.direct;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
-import org.repositoryminer.ast.ClassDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.ATFD;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codemetric.direct.TCC;
 import org.repositoryminer.codemetric.direct.WMC;
 import org.repositoryminer.codesmell.CodeSmellId;
@@ -37,10 +38,6 @@ import org.repositoryminer.codesmell.CodeSmellId;
  */
 public class GodClass implements IDirectCodeSmell {
 
-	private ATFD atfdMetric = new ATFD();
-	private WMC wmcMetric = new WMC();
-	private TCC tccMetric = new TCC();
-
 	private int atfdThreshold = 5;
 	private int wmcThreshold = 47;
 	private float tccThreshold = 1.0f / 3.0f;
@@ -60,10 +57,15 @@ public class GodClass implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
-		int atfd = atfdMetric.calculate(type, type.getMethods(), false);
-		float tcc = tccMetric.calculate(type, type.getMethods());
-		int wmc = wmcMetric.calculate(type.getMethods());
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.ATFD, CodeMetricId.WMC, CodeMetricId.TCC);
+	}
+
+	@Override
+	public Document detect(MetricContext context) {
+		int atfd = ATFD.getValue(context);
+		float tcc = TCC.getValue(context);
+		int wmc = WMC.getValue(context);
 
 		if (detect(atfd, wmc, tcc)) {
 			Document metrics = new Document();
@@ -77,14 +79,6 @@ public class GodClass implements IDirectCodeSmell {
 		return null;
 	}
 
-	public boolean detect(AbstractClassDeclaration type, ClassDeclaration cls) {
-		int atfd = atfdMetric.calculate(type, cls.getMethods(), false);
-		float tcc = tccMetric.calculate(type, cls.getMethods());
-		int wmc = wmcMetric.calculate(cls.getMethods());
-
-		return atfd > atfdThreshold && wmc >= wmcThreshold && tcc < tccThreshold;
-	}
-
 	public boolean detect(int atfd, int wmc, float tcc) {
 		return atfd > atfdThreshold && wmc >= wmcThreshold && tcc < tccThreshold;
 	}
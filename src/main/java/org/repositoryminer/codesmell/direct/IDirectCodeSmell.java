@@ -1,32 +1,39 @@
 package org.repositoryminer.codesmell.direct;
 
+import java.util.List;
+
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.codemetric.CodeMetricId;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codesmell.CodeSmellId;
 
 /**
  * This interface defines how to implement code smell detection in class level.
+ * <p>
+ * Implementations must be reentrant: the results are returned, never kept in
+ * fields, so the same instance can be used by many threads at the same time.
  */
 public interface IDirectCodeSmell {
 	
 	/**
 	 * Activates the code smell detection
 	 * 
-	 * @param type
-	 *            the abstract representation of a type (
-	 *            {@link org.repositoryminer.ast.AbstractClassDeclaration}).
-	 * @param ast
-	 *            an instance of an abstract syntactic tree (
-	 *            {@link org.repositoryminer.ast.AST})
+	 * @param context
+	 *            the context of the type, the metric values must be requested
+	 *            through it.
 	 * @return the document with the data to persist in database
 	 */
-	public Document detect(AbstractClassDeclaration type, AST ast);
+	public Document detect(MetricContext context);
 	
 	/**
 	 * @return The code smell ID
 	 */
 	public CodeSmellId getId();
+
+	/**
+	 * @return the metrics used in the detection.
+	 */
+	public List<CodeMetricId> getRequiredMetrics();
 	
 	/**
 	 * @return The thresholds used to detect the codesmell
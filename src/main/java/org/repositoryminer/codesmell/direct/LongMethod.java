@@ -1,20 +1,18 @@
 package org.repositoryminer.codesmell.direct;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.MLOC;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codesmell.CodeSmellId;
 
 public class LongMethod implements IDirectCodeSmell {
 
-	private MLOC mlocMetric = new MLOC();
-
 	private int mlocThreshold = 40;
 
 	public LongMethod() {
@@ -30,11 +28,16 @@ public class LongMethod implements IDirectCodeSmell {
 	}
 
 	@Override
-	public Document detect(AbstractClassDeclaration type, AST ast) {
+	public List<CodeMetricId> getRequiredMetrics() {
+		return Arrays.asList(CodeMetricId.MLOC);
+	}
+
+	@Override
+	public Document detect(MetricContext context) {
 		List<Document> methods = new ArrayList<Document>();
 
-		for (MethodDeclaration method : type.getMethods()) {
-			int mloc = mlocMetric.calculate(method, ast);
+		for (MethodDeclaration method : context.getType().getMethods()) {
+			int mloc = MLOC.getValue(method, context);
 			if (mloc > mlocThreshold) {
 				Document mDoc = new Document("signature", method.getName()).append("metrics",
 						new Document(CodeMetricId.MLOC.toString(), mloc));
@@ -1,29 +1,22 @@
 package org.repositoryminer.codesmell.indirect;
 
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.codemetric.indirect.TypeGraph;
 import org.repositoryminer.codesmell.CodeSmellId;
 
 /**
  * This interface defines how to implement code smell detection in class level.
+ * <p>
+ * The code smells are detected over the {@link TypeGraph} of the snapshot,
+ * the code smell itself keeps only its thresholds and can be shared between
+ * threads.
  */
 public interface IIndirectCodeSmell {
 
-	/**
-	 * Activates the code smell detection
-	 * 
-	 * @param type
-	 *            the abstract representation of a type (
-	 *            {@link org.repositoryminer.ast.AbstractClassDeclaration}).
-	 * @param ast
-	 *            an instance of an abstract syntactic tree (
-	 *            {@link org.repositoryminer.ast.AST})
-	 */
-	public void detect(AbstractClassDeclaration type, AST ast);
-	
 	/**
 	 * @return The code smell ID
 	 */
@@ -35,10 +28,31 @@ public interface IIndirectCodeSmell {
 	public Document getThresholds();
 	
 	/**
-	 * @return The result of the metric after process all the source files. This
-	 *         method ought to return a map containing the canonical class name as
-	 *         key and a document with the metric value of the class used as key.
+	 * @param graph
+	 *            the types of the snapshot.
+	 * @return a map containing the canonical class name as key and a document
+	 *         describing the code smell, only for the classes affected.
 	 */
-	public Map<String, Document> getResult();
-	
-}
\ No newline at end of file
+	public Map<String, Document> detect(TypeGraph graph);
+
+	/**
+	 * Detects the code smell only in some types, the ones whose results may
+	 * have changed since the graph was patched.
+	 * 
+	 * @param types
+	 *            the ids of the types to check.
+	 * @return the same results of {@link #detect(TypeGraph)}, only for the
+	 *         types given.
+	 */
+	public default Map<String, Document> detect(TypeGraph graph, BitSet types) {
+		Map<String, Document> result = detect(graph);
+		for (Iterator<String> it = result.keySet().iterator(); it.hasNext();) {
+			int type = graph.getId(it.next());
+			if (type == TypeGraph.NONE || !types.get(type)) {
+				it.remove();
+			}
+		}
+		return result;
+	}
+
+}
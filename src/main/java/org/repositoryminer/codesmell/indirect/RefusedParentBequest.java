@@ -1,20 +1,16 @@
 package org.repositoryminer.codesmell.indirect;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.bson.Document;
-import org.repositoryminer.ast.AST;
-import org.repositoryminer.ast.AbstractClassDeclaration;
-import org.repositoryminer.ast.ClassArchetype;
-import org.repositoryminer.ast.ClassDeclaration;
+import org.repositoryminer.ast.Modifier;
 import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.AMW;
-import org.repositoryminer.codemetric.direct.NProtM;
-import org.repositoryminer.codemetric.direct.WMC;
 import org.repositoryminer.codemetric.indirect.BOvR;
 import org.repositoryminer.codemetric.indirect.BUR;
+import org.repositoryminer.codemetric.indirect.TypeGraph;
 import org.repositoryminer.codesmell.CodeSmellId;
 
 public class RefusedParentBequest implements IIndirectCodeSmell {
@@ -26,19 +22,7 @@ public class RefusedParentBequest implements IIndirectCodeSmell {
 	private int wmcThreshold = 47;
 	private int nomThreshold = 5;
 
-	private NProtM nprotmMetric = new NProtM();
-	private BUR burMetric = new BUR();
-	private BOvR bovrMetric = new BOvR();
-	private AMW amwMetric = new AMW();
-	private WMC wmcMetric = new WMC();
-
-	private Map<String, Integer> nprotm = new HashMap<String, Integer>();
-	private Map<String, Integer> wmc = new HashMap<String, Integer>();
-	private Map<String, Integer> nom = new HashMap<String, Integer>();
-	private Map<String, Float> amw = new HashMap<String, Float>();
-
-	private Map<String, Float> bur;
-	private Map<String, Float> bovr;
+	private static final AMW AMW_METRIC = new AMW();
 
 	public RefusedParentBequest() {
 	}
@@ -55,27 +39,57 @@ public class RefusedParentBequest implements IIndirectCodeSmell {
 	}
 
 	@Override
-	public void detect(AbstractClassDeclaration type, AST ast) {
-		if (!type.getArchetype().equals(ClassArchetype.CLASS_OR_INTERFACE)) {
-			return;
-		}
+	public Map<String, Document> detect(TypeGraph graph) {
+		return detect(graph, graph.getIds());
+	}
 
-		ClassDeclaration cls = (ClassDeclaration) type;
+	@Override
+	public Map<String, Document> detect(TypeGraph graph, BitSet types) {
+		float[] bur = BUR.getValues(graph, types);
+		float[] bovr = BOvR.getValues(graph, types);
 
-		if (cls.getSuperClass() == null) {
-			return;
-		}
+		Map<String, Document> result = new HashMap<String, Document>();
+
+		// only the classes with a parent may refuse its bequest
+		for (int type = types.nextSetBit(0); type >= 0; type = types.nextSetBit(type + 1)) {
+			if (!graph.isDeclared(type) || graph.getSuperclass(type) == TypeGraph.NONE) {
+				continue;
+			}
+
+			int nprotmValue = 0;
+			int wmcValue = 0;
+			int nomValue = graph.getMethodCount(type);
+
+			for (int i = 0; i < nomValue; i++) {
+				wmcValue += graph.getMethodComplexity(type, i);
+				if (Modifier.isProtected(graph.getMethodModifiers(type, i))) {
+					nprotmValue++;
+				}
+			}
+
+			for (int i = 0; i < graph.getFieldCount(type); i++) {
+				if (Modifier.isProtected(graph.getFieldModifiers(type, i))) {
+					nprotmValue++;
+				}
+			}
 
-		burMetric.calculate(type, ast);
-		bovrMetric.calculate(type, ast);
+			float amwValue = AMW_METRIC.calculate(wmcValue, nomValue);
+
+			if (detect(nprotmValue, bur[type], bovr[type], amwValue, wmcValue, nomValue)) {
+				Document metrics = new Document();
+				metrics.append(CodeMetricId.NProtM.toString(), nprotmValue);
+				metrics.append(CodeMetricId.BUR.toString(), bur[type]);
+				metrics.append(CodeMetricId.BOvR.toString(), bovr[type]);
+				metrics.append(CodeMetricId.AMW.toString(), amwValue);
+				metrics.append(CodeMetricId.WMC.toString(), wmcValue);
+				metrics.append(CodeMetricId.NOM.toString(), nomValue);
 
-		int wmcValue = wmcMetric.calculate(cls.getMethods());
-		int nomValue = cls.getMethods().size();
+				result.put(graph.getName(type), new Document("codesmell",
+						CodeSmellId.REFUSED_PARENT_BEQUEST.toString()).append("metrics", metrics));
+			}
+		}
 
-		nprotm.put(cls.getName(), nprotmMetric.calculate(cls.getMethods(), cls.getFields()));
-		wmc.put(cls.getName(), wmcValue);
-		nom.put(cls.getName(), nomValue);
-		amw.put(cls.getName(), amwMetric.calculate(wmcValue, nomValue));
+		return result;
 	}
 
 	@Override
@@ -96,47 +110,6 @@ public class RefusedParentBequest implements IIndirectCodeSmell {
 		return new Document("codesmell", CodeSmellId.REFUSED_PARENT_BEQUEST.toString()).append("thresholds", doc);
 	}
 
-	@Override
-	public Map<String, Document> getResult() {
-		burMetric.calculateBUR();
-		bovrMetric.calculateBOvR();
-
-		bur = burMetric.getBUR();
-		bovr = bovrMetric.getBOvR();
-
-		Map<String, Document> result = new HashMap<String, Document>();
-
-		for (Entry<String, Integer> nprotmMap : nprotm.entrySet()) {
-			String clazz = nprotmMap.getKey();
-			if (bur.get(clazz) == null || bovr.get(clazz) == null) {
-				continue;
-			}
-
-			int nprotmValue = nprotmMap.getValue();
-			float burValue = bur.get(clazz);
-			float bovrValue = bovr.get(clazz);
-			float amwValue = amw.get(clazz);
-			int wmcValue = wmc.get(clazz);
-			int nomValue = nom.get(clazz);
-
-			if (detect(nprotmValue, burValue, bovrValue, amwValue, wmcValue, nomValue)) {
-				Document metrics = new Document();
-				metrics.append(CodeMetricId.NProtM.toString(), nprotmValue);
-				metrics.append(CodeMetricId.BUR.toString(), burValue);
-				metrics.append(CodeMetricId.BOvR.toString(), bovrValue);
-				metrics.append(CodeMetricId.AMW.toString(), amwValue);
-				metrics.append(CodeMetricId.WMC.toString(), wmcValue);
-				metrics.append(CodeMetricId.NOM.toString(), nomValue);
-
-				result.put(clazz, new Document("codesmell", CodeSmellId.REFUSED_PARENT_BEQUEST.toString())
-						.append("metrics", metrics));
-			}
-		}
-
-		clean();
-		return result;
-	}
-
 	private boolean detect(int nprotmValue, float burValue, float bovrValue, float amwValue, int wmcValue,
 			int nomValue) {
 		boolean ignoreBequest = (nprotmValue > nomThreshold && burValue < burThreshold) || bovrValue < bovrThreshold;
@@ -144,13 +117,4 @@ public class RefusedParentBequest implements IIndirectCodeSmell {
 		return ignoreBequest && complexChild;
 	}
 
-	private void clean() {
-		burMetric.clean();
-		bovrMetric.clean();
-		nom.clear();
-		nprotm.clear();
-		wmc.clear();
-		amw.clear();
-	}
-
 }
\ No newline at end of file
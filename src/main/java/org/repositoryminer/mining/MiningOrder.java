@@ -0,0 +1,25 @@
+package org.repositoryminer.mining;
+
+public enum MiningOrder {
+
+	/**
+	 * The history of each reference is mined at once, the data of the
+	 * repository is available when the whole mining ends.
+	 */
+	HISTORY,
+
+	/**
+	 * The last commits of the references and the snapshots are mined and
+	 * analyzed first. Then the other commits are mined from the newest to the
+	 * oldest, taking one commit of each reference at a time.
+	 */
+	NEWEST_FIRST,
+
+	/**
+	 * Like {@link #NEWEST_FIRST}, but the history of each reference is
+	 * sampled: commits evenly spaced along the history come first, then the
+	 * gaps between them are filled, halving the space each time.
+	 */
+	SAMPLED;
+
+}
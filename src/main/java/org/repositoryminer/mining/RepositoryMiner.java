@@ -14,6 +14,7 @@ import org.repositoryminer.listener.mining.IMiningListener;
 import org.repositoryminer.listener.mining.NullMiningListener;
 import org.repositoryminer.listener.postmining.IPostMiningListener;
 import org.repositoryminer.listener.postmining.NullPostMiningListener;
+import org.repositoryminer.mining.local.AnalysisCache;
 import org.repositoryminer.mining.local.IncrementalMiningProcessor;
 import org.repositoryminer.mining.local.MiningProcessor;
 import org.repositoryminer.model.Repository;
@@ -23,6 +24,7 @@ import org.repositoryminer.postmining.IPostMiningTask;
 import org.repositoryminer.postmining.PostMiningProcessor;
 import org.repositoryminer.scm.ReferenceType;
 import org.repositoryminer.scm.SCMType;
+import org.repositoryminer.scm.workspace.WorkspaceType;
 
 /**
  * <h1>A facade for the repository miner API</h1>
@@ -59,6 +61,14 @@ public class RepositoryMiner {
 	private String description;
 	private SCMType scm = SCMType.GIT;
 	private String charset = "UTF-8";
+	private int extractionThreads = 1;
+	private int indirectAnalysisThreads = 1;
+	private int parsingThreads = 1;
+	private int analysisThreads = 1;
+	private int pipelineQueueSize = 32;
+	private MiningOrder miningOrder = MiningOrder.HISTORY;
+	private WorkspaceType workspaceType = WorkspaceType.SHARED_CLONE;
+	private AnalysisCache analysisCache;
 
 	private List<IParser> parsers;
 
@@ -279,6 +289,120 @@ public class RepositoryMiner {
 		this.charset = charset;
 	}
 
+	public int getExtractionThreads() {
+		return extractionThreads;
+	}
+
+	/**
+	 * @param extractionThreads
+	 *            number of threads used to extract the commits from the SCM.
+	 *            The commits are persisted in the same order regardless of this
+	 *            value.
+	 */
+	public void setExtractionThreads(int extractionThreads) {
+		this.extractionThreads = extractionThreads;
+	}
+
+	public int getIndirectAnalysisThreads() {
+		return indirectAnalysisThreads;
+	}
+
+	/**
+	 * @param indirectAnalysisThreads
+	 *            number of snapshots analyzed at the same time by the indirect
+	 *            code analysis. Each thread checks out its snapshots in its own
+	 *            working tree, sharing the objects of the repository.
+	 */
+	public void setIndirectAnalysisThreads(int indirectAnalysisThreads) {
+		this.indirectAnalysisThreads = indirectAnalysisThreads;
+	}
+
+	public int getParsingThreads() {
+		return parsingThreads;
+	}
+
+	/**
+	 * @param parsingThreads
+	 *            number of threads used to parse the files of the commits and
+	 *            snapshots, each one with its own parser. The results of a
+	 *            commit or snapshot are saved in the same order regardless of
+	 *            this value.
+	 */
+	public void setParsingThreads(int parsingThreads) {
+		this.parsingThreads = parsingThreads;
+	}
+
+	public int getAnalysisThreads() {
+		return analysisThreads;
+	}
+
+	/**
+	 * @param analysisThreads
+	 *            number of threads used to calculate the direct metrics and
+	 *            detect the direct code smells of the parsed files.
+	 */
+	public void setAnalysisThreads(int analysisThreads) {
+		this.analysisThreads = analysisThreads;
+	}
+
+	public int getPipelineQueueSize() {
+		return pipelineQueueSize;
+	}
+
+	/**
+	 * @param pipelineQueueSize
+	 *            number of items, e.g. commits or parsed files, a mining stage
+	 *            may have ready before the next stage takes them. The stage
+	 *            waits when it gets ahead by this many items.
+	 */
+	public void setPipelineQueueSize(int pipelineQueueSize) {
+		this.pipelineQueueSize = pipelineQueueSize;
+	}
+
+	public MiningOrder getMiningOrder() {
+		return miningOrder;
+	}
+
+	/**
+	 * @param miningOrder
+	 *            the order the commits are mined. With an order other than
+	 *            {@link MiningOrder#HISTORY} the last commits of the references
+	 *            and the snapshots can be queried before the rest of the
+	 *            history is mined, see the completeness of each reference.
+	 */
+	public void setMiningOrder(MiningOrder miningOrder) {
+		this.miningOrder = miningOrder;
+	}
+
+	public WorkspaceType getWorkspaceType() {
+		return workspaceType;
+	}
+
+	/**
+	 * @param workspaceType
+	 *            how the repository is prepared to be mined. An in place
+	 *            workspace can not be used with indirect code analysis, since it
+	 *            requires checkouts.
+	 */
+	public void setWorkspaceType(WorkspaceType workspaceType) {
+		this.workspaceType = workspaceType;
+	}
+
+	/**
+	 * @return the cache of direct code analyses, its hits and misses can be
+	 *         checked after the mining.
+	 */
+	public AnalysisCache getAnalysisCache() {
+		if (analysisCache == null) {
+			analysisCache = new AnalysisCache();
+		}
+		return analysisCache;
+	}
+
+	public void setAnalysisCache(AnalysisCache analysisCache) {
+		this.analysisCache = analysisCache;
+	}
+
 	public List<IParser> getParsers() {
 		if (parsers == null) {
 			parsers = new ArrayList<IParser>();
@@ -0,0 +1,90 @@
+package org.repositoryminer.mining.local;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+import org.repositoryminer.codemetric.indirect.TypeGraph;
+
+/**
+ * The types whose indirect metrics and code smells may change when the graph
+ * of a snapshot is patched into the graph of the next one. A type replaced in
+ * the graph affects its ancestors and descendants, and the types it depends
+ * on, whose afferent couplings, users and callers change with it.
+ * <p>
+ * Each replaced type is added twice, before it is removed from the graph and
+ * after it is added again, so the relations it had and the ones it has are
+ * both followed.
+ */
+class AffectedTypes {
+
+	private TypeGraph graph;
+	private BitSet types = new BitSet();
+	// the types whose descendants were already added
+	private BitSet roots = new BitSet();
+
+	public AffectedTypes(TypeGraph graph) {
+		this.graph = graph;
+	}
+
+	public void add(String name) {
+		int type = graph.getId(name);
+		if (type == TypeGraph.NONE) {
+			return;
+		}
+
+		types.set(type);
+		addAncestors(type);
+		addDescendants(type);
+
+		if (!graph.isDeclared(type)) {
+			return;
+		}
+
+		for (int i = 0; i < graph.getEfferentCount(type); i++) {
+			types.set(graph.getEfferent(type, i));
+		}
+		for (int i = 0; i < graph.getCallCount(type); i++) {
+			types.set(graph.getCallOwner(type, i));
+		}
+		for (int i = 0; i < graph.getFieldUseCount(type); i++) {
+			types.set(graph.getFieldUseOwner(type, i));
+		}
+	}
+
+	/**
+	 * @return the ids of the types affected so far.
+	 */
+	public BitSet getTypes() {
+		return types;
+	}
+
+	// a cycle of superclasses is walked once
+	private void addAncestors(int type) {
+		int ancestor = graph.getSuperclass(type);
+		for (int depth = 0; ancestor != TypeGraph.NONE && depth < graph.size(); depth++) {
+			types.set(ancestor);
+			ancestor = graph.getSuperclass(ancestor);
+		}
+	}
+
+	private void addDescendants(int type) {
+		Deque<Integer> pending = new ArrayDeque<Integer>();
+		pending.push(type);
+
+		while (!pending.isEmpty()) {
+			int parent = pending.pop();
+			if (roots.get(parent)) {
+				continue;
+			}
+
+			roots.set(parent);
+			for (int i = 0; i < graph.getSubclassCount(parent); i++) {
+				int subclass = graph.getSubclass(parent, i);
+				types.set(subclass);
+				pending.push(subclass);
+			}
+		}
+	}
+
+}
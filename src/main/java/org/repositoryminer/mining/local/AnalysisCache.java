@@ -0,0 +1,140 @@
+package org.repositoryminer.mining.local;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.Document;
+import org.repositoryminer.persistence.handler.AnalysisCacheDocumentHandler;
+
+/**
+ * Keeps the direct code analysis of file contents. An analysis is identified by
+ * the content id (the git blob id) and by the configuration used to produce it,
+ * so the same content is analyzed only once for the same metrics, code smells
+ * and thresholds, no matter in which commit, branch or path it appears.
+ * <p>
+ * The most recently used analyses are kept in memory, all of them are saved in
+ * the database, so they survive between runs. The new analyses are saved in
+ * batches, see {@link #flush()}.
+ */
+public class AnalysisCache {
+
+	public static final int DEFAULT_CAPACITY = 5000;
+
+	private Map<String, Document> entries;
+	private Map<String, Document> unsaved = new LinkedHashMap<String, Document>();
+	private AnalysisCacheDocumentHandler cacheHandler;
+
+	private long memoryHits;
+	private long persistentHits;
+	private long misses;
+
+	public AnalysisCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            the number of analyses kept in memory.
+	 */
+	public AnalysisCache(final int capacity) {
+		entries = new LinkedHashMap<String, Document>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Document> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Only the analyses in memory are looked up holding the lock, the database
+	 * is queried by each thread on its own.
+	 * 
+	 * @param blobId
+	 *            the content id.
+	 * @param configuration
+	 *            the configuration key.
+	 * @return the analysis or null if the content was never analyzed with the
+	 *         configuration.
+	 */
+	public Document get(String blobId, String configuration) {
+		String key = blobId + ":" + configuration;
+
+		synchronized (this) {
+			Document analysis = entries.get(key);
+			if (analysis != null) {
+				memoryHits++;
+				return analysis;
+			}
+		}
+
+		Document analysis = getCacheHandler().findByKey(key);
+
+		synchronized (this) {
+			if (analysis == null) {
+				misses++;
+				return null;
+			}
+
+			analysis.remove("_id");
+			entries.put(key, analysis);
+			persistentHits++;
+			return analysis;
+		}
+	}
+
+	/**
+	 * Keeps the analysis in memory, it is saved in the database by the next
+	 * {@link #flush()}.
+	 */
+	public synchronized void put(String blobId, String configuration, Document analysis) {
+		String key = blobId + ":" + configuration;
+		entries.put(key, analysis);
+		unsaved.put(key, analysis);
+	}
+
+	/**
+	 * Saves the analyses put since the last call in the database, all at once.
+	 */
+	public void flush() {
+		Map<String, Document> analyses;
+		synchronized (this) {
+			if (unsaved.isEmpty()) {
+				return;
+			}
+			analyses = unsaved;
+			unsaved = new LinkedHashMap<String, Document>();
+		}
+
+		getCacheHandler().saveMany(analyses);
+	}
+
+	/**
+	 * @return the number of analyses found in memory or in the database.
+	 */
+	public synchronized long getHits() {
+		return memoryHits + persistentHits;
+	}
+
+	public synchronized long getMemoryHits() {
+		return memoryHits;
+	}
+
+	public synchronized long getPersistentHits() {
+		return persistentHits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	// The database connection may not be ready when the cache is created
+	private synchronized AnalysisCacheDocumentHandler getCacheHandler() {
+		if (cacheHandler == null) {
+			cacheHandler = new AnalysisCacheDocumentHandler();
+		}
+		return cacheHandler;
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.repositoryminer.mining.local;
+
+import java.util.List;
+
+import org.repositoryminer.persistence.handler.CheckpointDocumentHandler;
+
+/**
+ * The progress of the stages of a mining run, kept in the database so a run
+ * which stops part way is resumed by the next one. Each commit of a cursor is
+ * a document of its own, so the cursors of a big history do not grow a single
+ * document and a commit leaves its cursor with a single delete.
+ * <p>
+ * The cursor of a stage has the commits the stage was given but did not save
+ * yet. A commit joins the cursor before the stage before saves it and leaves
+ * it once all the documents of the stage for it are saved, so a commit still
+ * in the cursor may not be saved and its documents may be incomplete. The
+ * next run deletes them and processes those commits again.
+ * <p>
+ * The commits and the working directories are saved with the commit as their
+ * id, so the saved documents are their progress and they need no cursor.
+ */
+class Checkpoint {
+
+	/** The commits whose direct code analysis is not saved. */
+	public static final String DIRECT_ANALYSIS = "direct_analysis";
+
+	/** The snapshots whose indirect code analysis is not saved. */
+	public static final String INDIRECT_ANALYSIS = "indirect_analysis";
+
+	private String repositoryId;
+	private CheckpointDocumentHandler checkpointHandler;
+
+	public Checkpoint(String repositoryId) {
+		this.repositoryId = repositoryId;
+		checkpointHandler = new CheckpointDocumentHandler();
+		checkpointHandler.createIndexes();
+	}
+
+	/**
+	 * Adds the commits to the cursor of the stage, before the stage may save
+	 * any document of them.
+	 */
+	public void begin(String stage, List<String> commits) {
+		if (commits.size() > 0) {
+			checkpointHandler.addMany(repositoryId, stage, commits);
+		}
+	}
+
+	/**
+	 * Removes the commit from the cursor of the stage, after all its documents
+	 * were saved.
+	 */
+	public void end(String stage, String commit) {
+		checkpointHandler.remove(repositoryId, stage, commit);
+	}
+
+	/**
+	 * @return the commits left in the cursor of the stage by the last run.
+	 */
+	public List<String> getPending(String stage) {
+		return checkpointHandler.findCommits(repositoryId, stage);
+	}
+
+}
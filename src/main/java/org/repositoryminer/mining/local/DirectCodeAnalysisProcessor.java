@@ -3,35 +3,121 @@ package org.repositoryminer.mining.local;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FilenameUtils;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.repositoryminer.ast.AST;
 import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.codemetric.CodeMetricId;
 import org.repositoryminer.codemetric.direct.IDirectCodeMetric;
+import org.repositoryminer.codemetric.direct.MetricContext;
 import org.repositoryminer.codesmell.direct.IDirectCodeSmell;
 import org.repositoryminer.listener.mining.IMiningListener;
 import org.repositoryminer.mining.RepositoryMiner;
+import org.repositoryminer.mining.local.Pipeline.Output;
+import org.repositoryminer.mining.local.SourceTreePool.SourceTree;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Diff;
+import org.repositoryminer.parser.IASTRequestor;
 import org.repositoryminer.parser.IParser;
 import org.repositoryminer.persistence.handler.CommitDocumentHandler;
 import org.repositoryminer.persistence.handler.DirectCodeAnalysisDocumentHandler;
 import org.repositoryminer.scm.DiffType;
 import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.utility.FileUtils;
+import org.repositoryminer.utility.StringUtils;
 
 import com.mongodb.client.model.Projections;
 
+/**
+ * Calculates the direct metrics and detects the direct code smells of the files
+ * changed by each commit. The analysis runs as stages of a {@link Pipeline}:
+ * the contents of the changed files are fetched, parsed in batches, analyzed
+ * file by file and saved commit by commit, all at the same time for
+ * different commits.
+ * <p>
+ * The analyses of a commit are saved together, in the same order of its
+ * changes, and the commits are saved in the order they were given. A commit
+ * analyzed before the ones given earlier waits for them to be saved.
+ */
 public class DirectCodeAnalysisProcessor {
 
 	private static final int COMMIT_RANGE = 3000;
 
+	// The files of a commit are parsed in batches of this size, so the files
+	// of a big commit are parsed by many threads
+	private static final int BATCH_SIZE = 64;
+
+	// A commit going through the stages. It is saved once all its files were
+	// analyzed: pending starts with the files to parse plus the batches, each
+	// file analyzed and each batch parsed count one down. The sequence is the
+	// position of the commit among the ones given. The source tree is only
+	// taken if something is parsed, and released with the last batch parsed.
+	private static class CommitJob {
+
+		int sequence;
+		Commit commit;
+		SourceTree tree;
+		Map<String, String> blobs = new HashMap<String, String>();
+		Map<String, Document> analyses = new HashMap<String, Document>();
+		AtomicInteger pending = new AtomicInteger();
+		AtomicInteger unparsedBatches = new AtomicInteger();
+
+		public CommitJob(int sequence, Commit commit) {
+			this.sequence = sequence;
+			this.commit = commit;
+		}
+
+	}
+
+	// Files of a commit to be parsed together, sharing the bindings. The
+	// parser is null if the commit has nothing to parse.
+	private static class ParseBatch {
+
+		CommitJob job;
+		IParser parser;
+		String configuration;
+		List<String> files;
+
+		public ParseBatch(CommitJob job, IParser parser, String configuration, List<String> files) {
+			this.job = job;
+			this.parser = parser;
+			this.configuration = configuration;
+			this.files = files;
+		}
+
+	}
+
+	// A file parsed, or the end of a batch when the AST is null. The end
+	// releases the batch and the files which could not be parsed.
+	private static class ParsedFile {
+
+		ParseBatch batch;
+		String filePath;
+		AST ast;
+		int release;
+
+		public ParsedFile(ParseBatch batch, String filePath, AST ast, int release) {
+			this.batch = batch;
+			this.filePath = filePath;
+			this.ast = ast;
+			this.release = release;
+		}
+
+	}
+
 	private ISCM scm;
 	private RepositoryMiner repositoryMiner;
 	private String repositoryId;
@@ -40,11 +126,25 @@ public class DirectCodeAnalysisProcessor {
 	private List<String> selectedCommits;
 	
 	private IMiningListener listener;
+	private Checkpoint checkpoint;
 	
 	private DirectCodeAnalysisDocumentHandler directAnalysisHandler;
 	private CommitDocumentHandler commitPersistence;
 	
 	private Map<String, IParser> parsers;
+	private List<IDirectCodeMetric> metrics;
+	// the position of each metric, in the order they are calculated, among the
+	// configured ones, which is the order they are saved
+	private int[] metricPositions;
+
+	private AnalysisCache analysisCache;
+	private Map<IParser, String> configurations;
+	private Map<IParser, SourceFolderDetector> detectors;
+
+	// Folder where the source trees are written, the parser needs the files in
+	// the file system to parse them in batch and to resolve the bindings
+	private File scratchFolder;
+	private SourceTreePool sourceTrees;
 
 	public DirectCodeAnalysisProcessor() {
 		directAnalysisHandler = new DirectCodeAnalysisDocumentHandler();
@@ -69,7 +169,51 @@ public class DirectCodeAnalysisProcessor {
 		this.scm = scm;
 	}
 
+	/**
+	 * @param checkpoint
+	 *            where each commit is removed from the cursor of the direct
+	 *            code analysis once its analyses are saved.
+	 */
+	void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Analyzes the selected commits, read from the database.
+	 */
 	public void start() throws IOException {
+		Pipeline pipeline = new Pipeline(repositoryMiner.getPipelineQueueSize());
+		Pipeline.Link<Commit> commits = pipeline.source("commits", new Pipeline.Source<Commit>() {
+			@Override
+			public void produce(Output<Commit> output) throws Exception {
+				for (int begin = 0; begin < selectedCommits.size(); begin += COMMIT_RANGE) {
+					loadCommits(selectedCommits.subList(begin, Math.min(selectedCommits.size(), begin + COMMIT_RANGE)),
+							output);
+				}
+			}
+		});
+
+		run(pipeline, commits, selectedCommits.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadCommits(List<String> commits, Output<Commit> output) throws InterruptedException {
+		for (Document doc : commitPersistence.findByIdColl(repositoryId, commits,
+				Projections.include("diffs", "commit_date", "parents"))) {
+			output.put(Commit.parseDocument(doc, (List<String>) doc.get("parents")));
+		}
+	}
+
+	/**
+	 * Adds the stages of the analysis to a pipeline and runs it.
+	 * 
+	 * @param commits
+	 *            the commits to be analyzed, with their changes, parents and
+	 *            dates.
+	 * @param totalCommits
+	 *            the number of commits, used to notify the progress.
+	 */
+	void run(Pipeline pipeline, Pipeline.Link<Commit> commits, final int totalCommits) throws IOException {
 		parsers = new HashMap<String, IParser>();
 		for (IParser p : repositoryMiner.getParsers()) {
 			for (String ext : p.getExtensions()) {
@@ -77,73 +221,291 @@ public class DirectCodeAnalysisProcessor {
 			}
 		}
 
-		int begin = 0;
-		int end = Math.min(selectedCommits.size(), COMMIT_RANGE);
-
-		listener.notifyDirectCodeAnalysisStart(selectedCommits.size());
-		
-		while (end < selectedCommits.size()) {
-			processCommits(selectedCommits.subList(begin, end), begin, selectedCommits.size());
-			begin = end;
-			end = Math.min(selectedCommits.size(), COMMIT_RANGE + end);
+		metrics = sortByDependencies(repositoryMiner.getDirectCodeMetrics());
+		metricPositions = new int[metrics.size()];
+		List<IDirectCodeMetric> configuredMetrics = repositoryMiner.getDirectCodeMetrics();
+		for (int i = 0; i < metrics.size(); i++) {
+			for (IDirectCodeMetric metric : metrics) {
+				if (configuredMetrics.indexOf(metric) < configuredMetrics.indexOf(metrics.get(i))) {
+					metricPositions[i]++;
+				}
+			}
+		}
+		analysisCache = repositoryMiner.getAnalysisCache();
+		configurations = new HashMap<IParser, String>();
+		detectors = new HashMap<IParser, SourceFolderDetector>();
+		for (IParser parser : repositoryMiner.getParsers()) {
+			configurations.put(parser, createConfigurationKey(parser));
+			detectors.put(parser, new SourceFolderDetector(scm, parser.getExtensions()));
 		}
 
-		processCommits(selectedCommits.subList(begin, end), begin, selectedCommits.size());
-		listener.notifyDirectCodeAnalysisEnd(selectedCommits.size());
+		scratchFolder = Files.createTempDirectory("rm-direct-analysis").toFile();
+		// a tree for each commit being parsed plus one for each commit being
+		// prepared, so the parsers do not wait for the trees
+		sourceTrees = new SourceTreePool(scm, parsers.keySet().toArray(new String[parsers.size()]), scratchFolder,
+				repositoryMiner.getParsingThreads() + repositoryMiner.getExtractionThreads());
+
+		// a single thread numbers the commits in the order they come
+		Pipeline.Link<CommitJob> jobs = pipeline.stage("jobs", 1, commits, new Pipeline.Stage<Commit, CommitJob>() {
+
+			private int sequence = 0;
+
+			@Override
+			public void process(Commit commit, Output<CommitJob> output) throws Exception {
+				output.put(new CommitJob(sequence++, commit));
+			}
+		});
+
+		Pipeline.Link<ParseBatch> batches = pipeline.stage("contents", repositoryMiner.getExtractionThreads(), jobs,
+				new Pipeline.Stage<CommitJob, ParseBatch>() {
+					@Override
+					public void process(CommitJob job, Output<ParseBatch> output) throws Exception {
+						fetchContents(job, output);
+					}
+				});
+
+		Pipeline.Link<ParsedFile> parsedFiles = pipeline.stage("parsing", repositoryMiner.getParsingThreads(), batches,
+				new Pipeline.Stage<ParseBatch, ParsedFile>() {
+					@Override
+					public void process(ParseBatch batch, Output<ParsedFile> output) throws Exception {
+						parse(batch, output);
+					}
+				});
+
+		Pipeline.Link<CommitJob> analyzedCommits = pipeline.stage("analysis", repositoryMiner.getAnalysisThreads(),
+				parsedFiles, new Pipeline.Stage<ParsedFile, CommitJob>() {
+					@Override
+					public void process(ParsedFile file, Output<CommitJob> output) throws Exception {
+						analyze(file, output);
+					}
+				});
+
+		// The commits are analyzed by many threads, so they may finish out of
+		// order. Each one is held until the ones before it are saved.
+		pipeline.stage("persistence", 1, analyzedCommits, new Pipeline.Stage<CommitJob, Void>() {
+
+			private int index = 0;
+			private Map<Integer, CommitJob> heldJobs = new HashMap<Integer, CommitJob>();
+
+			@Override
+			public void process(CommitJob job, Output<Void> output) throws Exception {
+				heldJobs.put(job.sequence, job);
+				while (heldJobs.containsKey(index)) {
+					CommitJob next = heldJobs.remove(index);
+					listener.notifyDirectCodeAnalysisProgress(next.commit.getId(), index++, totalCommits);
+					save(next);
+				}
+			}
+		});
+
+		listener.notifyDirectCodeAnalysisStart(totalCommits);
+		try {
+			pipeline.run();
+		} finally {
+			FileUtils.deleteFolder(scratchFolder.getAbsolutePath());
+		}
+		listener.notifyDirectCodeAnalysisEnd(totalCommits);
 	}
 
-	private void processCommits(List<String> commits, int progress, int totalCommits) throws IOException {
-		for (Document doc : commitPersistence.findByIdColl(repositoryId, commits,
-				Projections.include("diffs", "commit_date"))) {
-			Commit commit = Commit.parseDocument(doc);
-			
-			listener.notifyDirectCodeAnalysisProgress(commit.getId(), progress++, totalCommits);
-			
-			scm.checkout(commit.getId());
+	// The contents already analyzed come from the cache, the others are parsed
+	// in batches per parser. The parser resolves the bindings against a source
+	// tree moved to the commit, never against the working tree, which is at
+	// another commit.
+	private void fetchContents(CommitJob job, Output<ParseBatch> output) throws IOException, InterruptedException {
+		Commit commit = job.commit;
+		Map<IParser, List<String>> filesToParse = new LinkedHashMap<IParser, List<String>>();
+
+		List<String> filePaths = new ArrayList<String>();
+		for (Diff diff : commit.getDiffs()) {
+			if (diff.getType() != DiffType.DELETE && parsers.containsKey(FilenameUtils.getExtension(diff.getPath()))) {
+				filePaths.add(diff.getPath());
+			}
+		}
+
+		Map<String, String> blobIds = scm.getBlobIds(commit.getId(), filePaths);
+		for (String filePath : filePaths) {
+			IParser parser = parsers.get(FilenameUtils.getExtension(filePath));
+			String blobId = blobIds.get(filePath);
+
+			// Links and submodules have no data
+			if (blobId == null) {
+				continue;
+			}
+
+			job.blobs.put(filePath, blobId);
+			Document analysis = analysisCache.get(blobId, configurations.get(parser));
 
-			for (IParser parser : repositoryMiner.getParsers()) {
-				parser.processSourceFolders(repositoryPath);
+			if (analysis != null) {
+				job.analyses.put(filePath, analysis);
+				continue;
 			}
 
-			for (Diff diff : commit.getDiffs()) {
-				if (diff.getType() != DiffType.DELETE) {
-					processDiff(diff.getPath(), diff.getHash(), commit);
+			if (!filesToParse.containsKey(parser)) {
+				filesToParse.put(parser, new ArrayList<String>());
+			}
+			filesToParse.get(parser).add(filePath);
+		}
+
+		// the sources are only needed if something is going to be parsed
+		String parent = commit.getParents().isEmpty() ? null : commit.getParents().get(0);
+		if (!filesToParse.isEmpty()) {
+			job.tree = sourceTrees.acquire(commit);
+		}
+
+		List<ParseBatch> commitBatches = new ArrayList<ParseBatch>();
+		int files = 0;
+		for (Entry<IParser, List<String>> entry : filesToParse.entrySet()) {
+			IParser parser = entry.getKey().newInstance();
+			parser.setSourceFolders(detectors.get(entry.getKey()).detect(job.tree.getFolder().getAbsolutePath(), commit.getId(),
+					parent, commit.getDiffs()));
+
+			List<String> paths = entry.getValue();
+			for (int begin = 0; begin < paths.size(); begin += BATCH_SIZE) {
+				List<String> batch = paths.subList(begin, Math.min(paths.size(), begin + BATCH_SIZE));
+				commitBatches.add(new ParseBatch(job, parser, configurations.get(entry.getKey()), batch));
+			}
+			files += paths.size();
+		}
+
+		// a commit with nothing to parse still goes through the stages
+		if (commitBatches.isEmpty()) {
+			commitBatches.add(new ParseBatch(job, null, null, Collections.<String> emptyList()));
+		}
+
+		job.pending.set(files + commitBatches.size());
+		job.unparsedBatches.set(commitBatches.size());
+		for (ParseBatch batch : commitBatches) {
+			output.put(batch);
+		}
+	}
+
+	// The batches of a commit may be parsed at the same time, so each one has
+	// its own parser
+	private void parse(ParseBatch batch, Output<ParsedFile> output) throws InterruptedException {
+		final List<ParsedFile> parsedFiles = new ArrayList<ParsedFile>(batch.files.size());
+
+		if (batch.parser != null) {
+			final ParseBatch parseBatch = batch;
+			IParser parser = batch.parser.newInstance();
+			parser.setSourceFolders(batch.parser.getSourceFolders());
+			try {
+				parser.generate(batch.job.tree.getFolder().getAbsolutePath(), batch.files,
+						repositoryMiner.getCharset(), new IASTRequestor() {
+							@Override
+							public void accept(String filePath, AST ast) {
+								parsedFiles.add(new ParsedFile(parseBatch, filePath, ast, 1));
+							}
+						});
+			} finally {
+				if (batch.job.unparsedBatches.decrementAndGet() == 0) {
+					sourceTrees.release(batch.job.tree);
 				}
 			}
 		}
+
+		for (ParsedFile parsedFile : parsedFiles) {
+			output.put(parsedFile);
+		}
+		output.put(new ParsedFile(batch, null, null, 1 + batch.files.size() - parsedFiles.size()));
 	}
 
-	private void processDiff(String filePath, long fileHash, Commit commit) throws IOException {
-		String ext = FilenameUtils.getExtension(filePath);
-		IParser currParser = parsers.get(ext);
+	// The metrics and code smells are reentrant, only the analyses of the
+	// commit are shared
+	private void analyze(ParsedFile file, Output<CommitJob> output) throws InterruptedException {
+		CommitJob job = file.batch.job;
 
-		if (currParser == null) {
-			return;
+		if (file.ast != null) {
+			Document analysis = analyzeFile(file.ast);
+			synchronized (job.analyses) {
+				job.analyses.put(file.filePath, analysis);
+			}
+
+			analysisCache.put(job.blobs.get(file.filePath), file.batch.configuration, analysis);
+		}
+
+		if (job.pending.addAndGet(-file.release) == 0) {
+			output.put(job);
 		}
+	}
 
-		File f = new File(repositoryPath, filePath);
+	// The analyses are saved in the same order of the changes
+	private void save(CommitJob job) throws IOException {
+		List<Document> documents = new ArrayList<Document>();
+		for (Diff diff : job.commit.getDiffs()) {
+			Document analysis = job.analyses.get(diff.getPath());
+			if (analysis != null && diff.getType() != DiffType.DELETE) {
+				documents.add(createDocument(job.commit, diff.getPath(), diff.getHash(), analysis));
+			}
+		}
 
-		// This used to treat links to folders
-		if (f.isDirectory()) {
-			return;
+		if (documents.size() > 0) {
+			directAnalysisHandler.insertMany(documents);
+		}
+		// the new analyses of the cache are saved by this stage alone
+		analysisCache.flush();
+
+		if (checkpoint != null) {
+			checkpoint.end(Checkpoint.DIRECT_ANALYSIS, job.commit.getId());
+		}
+	}
+
+	// The analysis of a file depends only on its content, the parser and the
+	// metrics and code smells (with their thresholds) in use.
+	private String createConfigurationKey(IParser parser) {
+		StringBuilder key = new StringBuilder();
+		key.append(parser.getLanguage()).append(';').append(repositoryMiner.getCharset());
+
+		for (IDirectCodeMetric metric : repositoryMiner.getDirectCodeMetrics()) {
+			key.append(';').append(metric.getId());
+		}
+
+		for (IDirectCodeSmell codeSmell : repositoryMiner.getDirectCodeSmells()) {
+			key.append(';').append(codeSmell.getThresholds().toJson());
+		}
+
+		return StringUtils.encodeToSHA1(key.toString());
+	}
+
+	// The required metrics come first. Cycles and metrics which are not
+	// configured are ignored, the context calculates the values on demand
+	// anyway.
+	private List<IDirectCodeMetric> sortByDependencies(List<IDirectCodeMetric> configuredMetrics) {
+		Map<CodeMetricId, IDirectCodeMetric> metricsById = new EnumMap<CodeMetricId, IDirectCodeMetric>(
+				CodeMetricId.class);
+		for (IDirectCodeMetric metric : configuredMetrics) {
+			metricsById.put(metric.getId(), metric);
+		}
+
+		List<IDirectCodeMetric> sortedMetrics = new ArrayList<IDirectCodeMetric>(configuredMetrics.size());
+		Set<CodeMetricId> visited = new HashSet<CodeMetricId>();
+		for (IDirectCodeMetric metric : configuredMetrics) {
+			addAfterDependencies(metric, metricsById, visited, sortedMetrics);
 		}
 
-		byte[] data = Files.readAllBytes(Paths.get(f.getAbsolutePath()));
+		return sortedMetrics;
+	}
 
-		if (data == null) {
+	private void addAfterDependencies(IDirectCodeMetric metric, Map<CodeMetricId, IDirectCodeMetric> metricsById,
+			Set<CodeMetricId> visited, List<IDirectCodeMetric> sortedMetrics) {
+		if (!visited.add(metric.getId())) {
 			return;
 		}
 
-		String source = new String(data, repositoryMiner.getCharset());
-		AST ast = currParser.generate(filePath, source, repositoryMiner.getCharset());
-		processFile(commit, filePath, fileHash, ast);
+		for (CodeMetricId id : metric.getRequiredMetrics()) {
+			IDirectCodeMetric requiredMetric = metricsById.get(id);
+			if (requiredMetric != null) {
+				addAfterDependencies(requiredMetric, metricsById, visited, sortedMetrics);
+			}
+		}
+
+		sortedMetrics.add(metric);
 	}
 
-	private void processFile(Commit commit, String file, long fileHash, AST ast) {
+	private Document createDocument(Commit commit, String file, long fileHash, Document analysis) {
 		Document doc = new Document();
 		doc.append("commit", commit.getId());
 		doc.append("commit_date", commit.getCommitDate());
-		doc.append("package", ast.getDocument().getPackageDeclaration());
+		doc.append("package", analysis.getString("package"));
 		doc.append("filename", file);
 		doc.append("repository", new ObjectId(repositoryId));
 		doc.append("filehash", fileHash);
@@ -154,6 +516,11 @@ public class DirectCodeAnalysisProcessor {
 		}
 		doc.append("codesmells_threshholds", thresholdsDoc);
 
+		doc.append("classes", analysis.get("classes"));
+		return doc;
+	}
+
+	private Document analyzeFile(AST ast) {
 		List<AbstractClassDeclaration> types = ast.getDocument().getTypes();
 		List<Document> classesDocs = new ArrayList<Document>();
 
@@ -161,20 +528,27 @@ public class DirectCodeAnalysisProcessor {
 			Document typeDoc = new Document();
 			typeDoc.append("name", type.getName()).append("type", type.getArchetype().toString());
 
-			processDirectCodeMetrics(ast, type, typeDoc);
-			processDirectCodeSmells(ast, type, typeDoc);
+			// a context per type, so metrics and code smells share the values
+			MetricContext context = new MetricContext(type, ast);
+			processDirectCodeMetrics(context, typeDoc);
+			processDirectCodeSmells(context, typeDoc);
 
 			classesDocs.add(typeDoc);
 		}
 
-		doc.append("classes", classesDocs);
-		directAnalysisHandler.insert(doc);
+		return new Document("package", ast.getDocument().getPackageDeclaration()).append("classes", classesDocs);
 	}
 
-	private void processDirectCodeMetrics(AST ast, AbstractClassDeclaration cls, Document clsDoc) {
+	// The metrics are calculated after the ones they require, but saved in the
+	// configured order
+	private void processDirectCodeMetrics(MetricContext context, Document clsDoc) {
+		Document[] results = new Document[metrics.size()];
+		for (int i = 0; i < metrics.size(); i++) {
+			results[metricPositions[i]] = metrics.get(i).calculate(context);
+		}
+
 		List<Document> metricsDoc = new ArrayList<Document>();
-		for (IDirectCodeMetric metric : repositoryMiner.getDirectCodeMetrics()) {
-			Document mDoc = metric.calculate(cls, ast);
+		for (Document mDoc : results) {
 			if (mDoc != null) {
 				metricsDoc.add(mDoc);
 			}
@@ -183,10 +557,10 @@ public class DirectCodeAnalysisProcessor {
 		clsDoc.append("metrics", metricsDoc);
 	}
 
-	private void processDirectCodeSmells(AST ast, AbstractClassDeclaration cls, Document clsDoc) {
+	private void processDirectCodeSmells(MetricContext context, Document clsDoc) {
 		List<Document> codeSmellsDoc = new ArrayList<Document>();
 		for (IDirectCodeSmell codeSmell : repositoryMiner.getDirectCodeSmells()) {
-			Document cDoc = codeSmell.detect(cls, ast);
+			Document cDoc = codeSmell.detect(context);
 			if (cDoc != null) {
 				codeSmellsDoc.add(cDoc);
 			}
@@ -4,11 +4,14 @@ import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.bson.Document;
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.exceptions.VisMinerAPIException;
 import org.repositoryminer.listener.mining.IMiningListener;
 import org.repositoryminer.mining.RepositoryMiner;
 import org.repositoryminer.model.Commit;
@@ -16,12 +19,17 @@ import org.repositoryminer.model.Contributor;
 import org.repositoryminer.model.Reference;
 import org.repositoryminer.model.Repository;
 import org.repositoryminer.persistence.handler.CommitDocumentHandler;
+import org.repositoryminer.persistence.handler.DirectCodeAnalysisDocumentHandler;
+import org.repositoryminer.persistence.handler.IndirectCodeAnalysisDocumentHandler;
 import org.repositoryminer.persistence.handler.ReferenceDocumentHandler;
 import org.repositoryminer.persistence.handler.RepositoryDocumentHandler;
+import org.repositoryminer.persistence.handler.WorkingDirectoryDocumentHandler;
 import org.repositoryminer.scm.ISCM;
 import org.repositoryminer.scm.ReferenceType;
 import org.repositoryminer.scm.SCMFactory;
-import org.repositoryminer.utility.FileUtils;
+import org.repositoryminer.scm.workspace.IWorkspace;
+import org.repositoryminer.scm.workspace.WorkspaceFactory;
+import org.repositoryminer.utility.CommitIdSet;
 
 import com.mongodb.client.model.Projections;
 
@@ -38,6 +46,7 @@ public class IncrementalMiningProcessor {
 	private IssueExtractor issueExtractor;
 	private List<Reference> selectedReferences;
 	private List<String> newCommits;
+	private Checkpoint checkpoint;
 
 	private void updateReferences(String repositoryId) {
 		contributors = new HashSet<Contributor>();
@@ -48,7 +57,6 @@ public class IncrementalMiningProcessor {
 		List<Reference> references = scm.getReferences();
 
 		listener.notifyReferencesMiningStart(references.size());
-		Set<String> commitsToSkip = new HashSet<String>(processedCommits);
 
 		for (Reference ref : references) {
 			Entry<String, ReferenceType> entry = new AbstractMap.SimpleEntry<String, ReferenceType>(ref.getName(),
@@ -74,7 +82,7 @@ public class IncrementalMiningProcessor {
 			}
 
 			listener.notifyCommitsMiningStart(ref.getName(), ref.getType(), ref.getCommits().size());
-			listener.notifyCommitsMiningEnd(ref.getName(), ref.getType(), updateCommits(ref, commitsToSkip));
+			listener.notifyCommitsMiningEnd(ref.getName(), ref.getType(), updateCommits(ref));
 			
 			ref.setCommits(ref.getCommits().subList(0, 1)); // copy only the last commit in the reference
 			ref.setId(refDoc.getObjectId("_id").toString());
@@ -84,38 +92,96 @@ public class IncrementalMiningProcessor {
 		listener.notifyReferencesMiningEnd(selectedReferences.size());
 	}
 
-	private int updateCommits(Reference reference, Set<String> commitsToSkip) {
+	// The new commits join the processed ones, so the next references skip
+	// them too
+	private int updateCommits(Reference reference) {
 		CommitDocumentHandler documentHandler = new CommitDocumentHandler();
 
-		int skip = 0;
 		int acceptedCommits = 0;
-		List<Commit> commits = scm.getCommits(skip, COMMITS_RANGE, reference, commitsToSkip);
+		List<Document> commitsDoc = new ArrayList<Document>();
+		List<String> commitIds = new ArrayList<String>();
 
-		while (commits.size() > 0) {
-			List<Document> commitsDoc = new ArrayList<Document>();
-			acceptedCommits += commits.size();
+		Iterator<Commit> commits = scm.getCommits(reference, processedCommits);
+		while (commits.hasNext()) {
+			Commit commit = commits.next();
+			listener.notifyCommitsMiningProgress(reference.getName(), reference.getType(), commit.getId());
 
-			for (Commit commit : commits) {
-				listener.notifyCommitsMiningProgress(reference.getName(), reference.getType(), commit.getId());
+			commit.setRepository(reference.getRepository());
+			commit.setIssueReferences(issueExtractor.analyzeMessage(commit.getMessage()));
 
-				commit.setRepository(reference.getRepository());
-				commit.setIssueReferences(issueExtractor.analyzeMessage(commit.getMessage()));
+			contributors.add(commit.getCommitter());
+			commitsDoc.add(commit.toDocument());
+			commitIds.add(commit.getId());
 
-				contributors.add(commit.getCommitter());
-				commitsDoc.add(commit.toDocument());
+			processedCommits.add(commit.getId());
+			newCommits.add(commit.getId());
+			acceptedCommits++;
 
-				commitsToSkip.add(commit.getId());
-				newCommits.add(commit.getId());
+			if (commitsDoc.size() == COMMITS_RANGE) {
+				saveCommits(documentHandler, commitsDoc, commitIds);
+				commitsDoc = new ArrayList<Document>();
+				commitIds = new ArrayList<String>();
 			}
+		}
 
-			documentHandler.insertMany(commitsDoc);
-			skip += COMMITS_RANGE;
-			commits = scm.getCommits(skip, COMMITS_RANGE, reference, commitsToSkip);
+		if (commitsDoc.size() > 0) {
+			saveCommits(documentHandler, commitsDoc, commitIds);
 		}
 
 		return acceptedCommits;
 	}
 
+	// The commits wait in the cursor of the direct code analysis, which is
+	// done after all the references are updated. They join it before they are
+	// saved, so no saved commit is left out of the analysis.
+	private void saveCommits(CommitDocumentHandler documentHandler, List<Document> commitsDoc, List<String> commitIds) {
+		if (hasDirectAnalysis()) {
+			checkpoint.begin(Checkpoint.DIRECT_ANALYSIS, commitIds);
+		}
+		documentHandler.insertMany(commitsDoc);
+	}
+
+	private boolean hasDirectAnalysis() {
+		return repositoryMiner.hasParsers()
+				&& (repositoryMiner.hasDirectCodeMetrics() || repositoryMiner.hasDirectCodeSmells());
+	}
+
+	// What the last run left unsaved is deleted and done again: the direct
+	// analyses of the commits in its cursor are redone with the new commits
+	// and the indirect ones are redone as the snapshots are no longer analyzed.
+	// A commit of the cursor which was not saved is walked again as a new
+	// commit, so only the saved ones are added here.
+	private void resume(String repositoryId) {
+		List<String> directAnalysis = checkpoint.getPending(Checkpoint.DIRECT_ANALYSIS);
+		if (directAnalysis.size() > 0) {
+			new DirectCodeAnalysisDocumentHandler().deleteByCommits(repositoryId, directAnalysis);
+			for (String commit : directAnalysis) {
+				if (processedCommits.contains(commit)) {
+					newCommits.add(commit);
+				}
+			}
+		}
+
+		List<String> indirectAnalysis = checkpoint.getPending(Checkpoint.INDIRECT_ANALYSIS);
+		if (indirectAnalysis.size() > 0) {
+			new IndirectCodeAnalysisDocumentHandler().deleteByCommits(repositoryId, indirectAnalysis);
+		}
+	}
+
+	// Only the contributors the repository does not have yet are added, the
+	// others may have data from the hosting service
+	@SuppressWarnings("unchecked")
+	private void updateContributors(String repositoryId, RepositoryDocumentHandler repoHandler) {
+		Document repoDoc = repoHandler.findOnlyContributors(repositoryId);
+		if (repoDoc.get("contributors") != null) {
+			contributors.removeAll(Contributor.parseDocuments((List<Document>) repoDoc.get("contributors")));
+		}
+
+		if (contributors.size() > 0) {
+			repoHandler.addContributors(repositoryId, Contributor.toDocumentList(contributors));
+		}
+	}
+
 	public void mine(RepositoryMiner repositoryMiner) throws IOException {
 		this.repositoryMiner = repositoryMiner;
 		listener = repositoryMiner.getMiningListener();
@@ -126,21 +192,38 @@ public class IncrementalMiningProcessor {
 		RepositoryDocumentHandler repoHandler = new RepositoryDocumentHandler();
 		Repository repository = Repository.parseDocument(repoHandler.findByName(repositoryMiner.getName()));
 
-		String tempRepo = FileUtils.copyFolderToTmp(repository.getPath(), repository.getName());
+		IWorkspace workspace = WorkspaceFactory.getWorkspace(repositoryMiner.getScm(),
+				repositoryMiner.getWorkspaceType());
+		if (workspace.isReadOnly()
+				&& (repositoryMiner.hasIndirectCodeMetrics() || repositoryMiner.hasIndirectCodeSmells())) {
+			throw new VisMinerAPIException(ErrorMessage.READ_ONLY_WORKSPACE.toString());
+		}
+
+		String tempRepo = workspace.create(repository.getPath(), repository.getName());
 
 		scm = SCMFactory.getSCM(repositoryMiner.getScm());
+		scm.setExtractionThreads(repositoryMiner.getExtractionThreads());
 		scm.open(tempRepo);
 
+		checkpoint = new Checkpoint(repository.getId());
 		loadAllCommits(repository.getId());
+		resume(repository.getId());
 
 		updateReferences(repository.getId());
+		updateContributors(repository.getId(), repoHandler);
 		
 		updateWorkingDirectories(repository.getId());
 		
 		calculateAndDetect(tempRepo, repository.getId());
 
+		ReferenceDocumentHandler refDocumentHandler = new ReferenceDocumentHandler();
+		for (Reference ref : selectedReferences) {
+			refDocumentHandler.updateCompleteness(ref.getId(), new Document("last_commit", true).append("history", true)
+					.append("working_directories", true));
+		}
+
 		scm.close();
-		FileUtils.deleteFolder(tempRepo);
+		workspace.dispose();
 
 		listener.notifyMiningEnd(repositoryMiner.getName());
 	}
@@ -148,17 +231,30 @@ public class IncrementalMiningProcessor {
 	private void updateWorkingDirectories(String repositoryId) {
 		WorkingDirectoryProcessor wdProcessor = new WorkingDirectoryProcessor();
 		wdProcessor.setReferences(selectedReferences);
-		wdProcessor.setVisitedCommits(processedCommits);
+		wdProcessor.setVisitedCommits(loadWorkingDirectories(repositoryId));
 		wdProcessor.setRepositoryId(repositoryId);
 		wdProcessor.setMiningListener(listener);
 		wdProcessor.processWorkingDirectories();
 	}
 
+	// The commits whose working directories were saved, a commit may be saved
+	// without them if the last run was interrupted
+	private Set<String> loadWorkingDirectories(String repositoryId) {
+		WorkingDirectoryDocumentHandler wdHandler = new WorkingDirectoryDocumentHandler();
+		List<Document> wdDocs = wdHandler.findByRepository(repositoryId, Projections.include("_id"));
+		Set<String> visitedCommits = new CommitIdSet(wdDocs.size());
+
+		for (Document d : wdDocs) {
+			visitedCommits.add(d.getString("_id"));
+		}
+
+		return visitedCommits;
+	}
+
 	private void loadAllCommits(String repositoryId) {
 		CommitDocumentHandler commitDocHandler = new CommitDocumentHandler();
-		processedCommits = new HashSet<String>();
-
 		List<Document> commitsDoc = commitDocHandler.findByRepository(repositoryId, Projections.include("_id"));
+		processedCommits = new CommitIdSet(commitsDoc.size());
 
 		for (Document d : commitsDoc) {
 			processedCommits.add(d.getString("_id"));
@@ -170,19 +266,20 @@ public class IncrementalMiningProcessor {
 			return;
 		}
 
-		if (repositoryMiner.hasDirectCodeMetrics() || repositoryMiner.hasDirectCodeSmells()) {
+		if (hasDirectAnalysis()) {
 			DirectCodeAnalysisProcessor processor = new DirectCodeAnalysisProcessor();
 			processor.setSCM(scm);
 			processor.setRepositoryMiner(repositoryMiner);
 			processor.setRepositoryData(repositoryId, tempRepo);
 			processor.setSelectedCommits(newCommits);
+			processor.setCheckpoint(checkpoint);
 			processor.start();
 		}
 
 		if (repositoryMiner.hasIndirectCodeMetrics() || repositoryMiner.hasIndirectCodeSmells()) {
 			List<String> validSnapshots = new ArrayList<String>();
 			for (String hash : repositoryMiner.getSnapshots()) {
-				if (processedCommits.contains(hash) || newCommits.contains(hash)) {
+				if (processedCommits.contains(hash)) {
 					validSnapshots.add(hash);
 				}
 			}
@@ -193,6 +290,7 @@ public class IncrementalMiningProcessor {
 			processor.setRepositoryData(repositoryId, tempRepo);
 			processor.setRepositoryMiner(repositoryMiner);
 			processor.setSCM(scm);
+			processor.setCheckpoint(checkpoint);
 			processor.startIncrementalAnalysis();
 		}
 
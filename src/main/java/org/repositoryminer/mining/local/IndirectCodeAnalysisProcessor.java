@@ -2,14 +2,25 @@ package org.repositoryminer.mining.local;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -17,16 +28,23 @@ import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.repositoryminer.ast.AST;
 import org.repositoryminer.ast.AbstractClassDeclaration;
+import org.repositoryminer.ast.SymbolTable;
 import org.repositoryminer.codemetric.indirect.IIndirectCodeMetric;
+import org.repositoryminer.codemetric.indirect.TypeGraph;
 import org.repositoryminer.codesmell.indirect.IIndirectCodeSmell;
 import org.repositoryminer.listener.mining.IMiningListener;
 import org.repositoryminer.mining.RepositoryMiner;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Reference;
+import org.repositoryminer.parser.IASTRequestor;
 import org.repositoryminer.parser.IParser;
 import org.repositoryminer.persistence.handler.CommitDocumentHandler;
 import org.repositoryminer.persistence.handler.IndirectCodeAnalysisDocumentHandler;
 import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.scm.SCMFactory;
+import org.repositoryminer.scm.workspace.IWorkspace;
+import org.repositoryminer.scm.workspace.WorkspaceFactory;
+import org.repositoryminer.scm.workspace.WorkspaceType;
 import org.repositoryminer.utility.StringUtils;
 
 import com.mongodb.client.model.Projections;
@@ -48,17 +66,86 @@ public class IndirectCodeAnalysisProcessor {
 
 	}
 
+	// The parse products of the last snapshot a parser analyzed in a working
+	// tree: the type graph, the files with their types, in the order they
+	// were listed, and the documents of the types. The next snapshot analyzed
+	// there only parses the files changed since then, patches the graph and
+	// calculates again only the types affected.
+	private static class ParserState {
+
+		String[] sourceFolders;
+		SymbolTable symbolTable = new SymbolTable();
+		TypeGraph graph = new TypeGraph(symbolTable);
+		Map<String, FileEntry> files = new LinkedHashMap<String, FileEntry>();
+		Map<String, Document> classDocs = new HashMap<String, Document>();
+		// the symbols after the whole snapshot was parsed, the symbols of the
+		// replaced declarations are never released
+		int initialSymbols;
+
+		public ParserState(String[] sourceFolders) {
+			this.sourceFolders = sourceFolders;
+		}
+
+		public boolean isWorn() {
+			return symbolTable.size() > initialSymbols * 2;
+		}
+
+	}
+
+	// A working tree where the snapshots are checked out. It is used by one
+	// thread at a time, the workspace is null for the main working tree. The
+	// commit is the last one analyzed there, or null if its analysis failed.
+	private static class Worktree {
+
+		String path;
+		ISCM scm;
+		IWorkspace workspace;
+		String commit;
+		Map<IParser, ParserState> states = new HashMap<IParser, ParserState>();
+
+		public Worktree(String path, ISCM scm, IWorkspace workspace) {
+			this.path = path;
+			this.scm = scm;
+			this.workspace = workspace;
+		}
+
+	}
+
+	// A snapshot being analyzed. The reference is null if the snapshot is not
+	// the last commit of a reference.
+	private static class Snapshot {
+
+		String name;
+		Commit commit;
+		Reference reference;
+		Future<List<Document>> analysis;
+
+		public Snapshot(String name, Commit commit, Reference reference) {
+			this.name = name;
+			this.commit = commit;
+			this.reference = reference;
+		}
+
+	}
+
 	private ISCM scm;
 	private RepositoryMiner repositoryMiner;
 	private String repositoryId;
 	private String repositoryPath;
 
 	private IMiningListener listener;
+	private Checkpoint checkpoint;
 
 	private List<Reference> references;
 	private List<String> snapshots;
 
-	List<FileEntry> processedFiles;
+	private List<Worktree> createdWorktrees;
+	private BlockingQueue<Worktree> worktrees;
+	private ExecutorService executor;
+	private ParallelParser parallelParser;
+
+	// Shared by all the working trees, they are checkouts of the same objects
+	private Map<IParser, SourceFolderDetector> detectors;
 
 	private IndirectCodeAnalysisDocumentHandler indirectAnalysisHandler = new IndirectCodeAnalysisDocumentHandler();
 	private CommitDocumentHandler commitHandler = new CommitDocumentHandler();
@@ -76,6 +163,15 @@ public class IndirectCodeAnalysisProcessor {
 		this.scm = scm;
 	}
 
+	/**
+	 * @param checkpoint
+	 *            where the snapshots are kept in the cursor of the indirect
+	 *            code analysis until their analyses are saved.
+	 */
+	void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
 	public void setSnapshots(List<String> snapshots) {
 		this.snapshots = snapshots;
 	}
@@ -94,8 +190,19 @@ public class IndirectCodeAnalysisProcessor {
 		int total = references.size() + snapshots.size();
 		listener.notifyIndirectCodeAnalysisStart(total);
 
-		processReferences();
-		processCommits();
+		detectors = new HashMap<IParser, SourceFolderDetector>();
+		for (IParser parser : repositoryMiner.getParsers()) {
+			detectors.put(parser, new SourceFolderDetector(scm, parser.getExtensions()));
+		}
+
+		createWorktrees();
+		parallelParser = new ParallelParser(repositoryMiner.getParsingThreads());
+		try {
+			analyzeSnapshots();
+		} finally {
+			parallelParser.shutdown();
+			disposeWorktrees();
+		}
 
 		listener.notifyIndirectCodeAnalysisEnd(total);
 	}
@@ -126,83 +233,289 @@ public class IndirectCodeAnalysisProcessor {
 		indirectAnalysisHandler.updateOnlyReference(doc.getObjectId("_id"), reference.getName(), reference.getType());
 	}
 
-	private void processReferences() throws IOException {
-		int index = 1;
-		int total = references.size() + snapshots.size();
+	// The main working tree is always in the pool, the others share its
+	// objects, so no object is copied.
+	private void createWorktrees() throws IOException {
+		int threads = Math.max(repositoryMiner.getIndirectAnalysisThreads(), 1);
 
-		for (Reference ref : references) {
-			String commitId = ref.getCommits().get(0);
+		createdWorktrees = new ArrayList<Worktree>(threads);
+		worktrees = new ArrayBlockingQueue<Worktree>(threads);
+		worktrees.add(new Worktree(repositoryPath, scm, null));
 
-			listener.notifyIndirectCodeAnalysisProgress(ref.getName(), index, total);
+		String name = FilenameUtils.getName(repositoryPath);
+		for (int i = 1; i < threads; i++) {
+			IWorkspace workspace = WorkspaceFactory.getWorkspace(repositoryMiner.getScm(), WorkspaceType.SHARED_CLONE);
+			String path = workspace.create(repositoryPath, name + "-worktree-" + i);
 
-			Commit commit = Commit.parseDocument(commitHandler.findById(commitId, Projections.include("commit_date")));
-			scm.checkout(commitId);
+			ISCM worktreeScm = SCMFactory.getSCM(repositoryMiner.getScm());
+			worktreeScm.open(path);
 
-			processFiles(commit, ref);
+			Worktree worktree = new Worktree(path, worktreeScm, workspace);
+			createdWorktrees.add(worktree);
+			worktrees.add(worktree);
 		}
+
+		executor = Executors.newFixedThreadPool(threads);
 	}
 
-	private void processCommits() throws IOException {
-		int index = references.size() + 1;
-		int total = references.size() + snapshots.size();
+	private void disposeWorktrees() throws IOException {
+		executor.shutdownNow();
+		try {
+			// the running analyses must not lose their working trees
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (Worktree worktree : createdWorktrees) {
+			worktree.scm.close();
+			worktree.workspace.dispose();
+		}
+	}
+
+	// The snapshots are analyzed concurrently, but their results are saved by
+	// this thread in the same order they were submitted.
+	private void analyzeSnapshots() throws IOException {
+		List<Snapshot> toAnalyze = new ArrayList<Snapshot>(references.size() + snapshots.size());
+		for (Reference ref : references) {
+			toAnalyze.add(new Snapshot(ref.getName(), findCommit(ref.getCommits().get(0)), ref));
+		}
 
 		for (String snapshot : snapshots) {
-			listener.notifyIndirectCodeAnalysisProgress(snapshot, index, total);
+			toAnalyze.add(new Snapshot(snapshot, findCommit(snapshot), null));
+		}
+
+		if (checkpoint != null) {
+			List<String> commits = new ArrayList<String>(toAnalyze.size());
+			for (Snapshot snapshot : toAnalyze) {
+				commits.add(snapshot.commit.getId());
+			}
+			checkpoint.begin(Checkpoint.INDIRECT_ANALYSIS, commits);
+		}
+
+		int window = worktrees.size() * 2;
+		Deque<Snapshot> pending = new ArrayDeque<Snapshot>(window);
+		int index = 1;
+
+		for (Snapshot snapshot : toAnalyze) {
+			if (pending.size() == window) {
+				saveAnalysis(pending.poll(), index++, toAnalyze.size());
+			}
 
-			Commit commit = Commit.parseDocument(commitHandler.findById(snapshot, Projections.include("commit_date")));
-			scm.checkout(snapshot);
-			processFiles(commit, null);
+			submit(snapshot);
+			pending.add(snapshot);
+		}
+
+		while (!pending.isEmpty()) {
+			saveAnalysis(pending.poll(), index++, toAnalyze.size());
 		}
 	}
 
-	private void processFiles(Commit commit, Reference ref) throws IOException {
-		for (IParser parser : repositoryMiner.getParsers()) {
-			processedFiles = new ArrayList<FileEntry>();
-			parser.processSourceFolders(repositoryPath);
+	// The changes and the parents let the source folders be taken from the
+	// parent
+	@SuppressWarnings("unchecked")
+	private Commit findCommit(String commitId) {
+		Document doc = commitHandler.findById(commitId, Projections.include("commit_date", "diffs", "parents"));
+		return Commit.parseDocument(doc, (List<String>) doc.get("parents"));
+	}
+
+	private void submit(final Snapshot snapshot) {
+		snapshot.analysis = executor.submit(new Callable<List<Document>>() {
+			@Override
+			public List<Document> call() throws Exception {
+				Worktree worktree = worktrees.take();
+				try {
+					worktree.scm.checkout(snapshot.commit.getId());
+					return processFiles(snapshot.commit, snapshot.reference, worktree);
+				} finally {
+					worktrees.put(worktree);
+				}
+			}
+		});
+	}
 
-			File directory = new File(repositoryPath);
-			Collection<File> files = FileUtils.listFiles(directory, parser.getExtensions(), true);
+	private void saveAnalysis(Snapshot snapshot, int index, int total) throws IOException {
+		listener.notifyIndirectCodeAnalysisProgress(snapshot.name, index, total);
+
+		List<Document> documents = null;
+		try {
+			documents = snapshot.analysis.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
 
-			for (File f : files) {
-				byte[] data = Files.readAllBytes(Paths.get(f.getAbsolutePath()));
+		if (documents.size() > 0) {
+			indirectAnalysisHandler.insertMany(documents);
+		}
 
-				if (data == null) {
-					continue;
+		if (checkpoint != null) {
+			checkpoint.end(Checkpoint.INDIRECT_ANALYSIS, snapshot.commit.getId());
+		}
+	}
+
+	// Each working tree keeps its own parse products, since the parsers and
+	// type graphs keep state while the files of a snapshot are processed. The
+	// parser and the graph share the symbol table of the working tree.
+	private List<Document> processFiles(Commit commit, Reference ref, Worktree worktree) throws IOException {
+		List<Document> documents = new ArrayList<Document>();
+		String previousCommit = worktree.commit;
+		// the products are not consistent until the analysis is over
+		worktree.commit = null;
+
+		for (IParser p : repositoryMiner.getParsers()) {
+			String[] sourceFolders = detectors.get(p).detect(worktree.path, commit.getId(),
+					commit.getParents().isEmpty() ? null : commit.getParents().get(0), commit.getDiffs());
+			ParserState state = worktree.states.get(p);
+			List<String> filePaths = null;
+
+			if (previousCommit != null && state != null && Arrays.equals(state.sourceFolders, sourceFolders)
+					&& !state.isWorn()) {
+				filePaths = getChangedFiles(worktree.scm, previousCommit, commit.getId(), p.getExtensions());
+				// too many changes are parsed faster as a whole snapshot
+				if (filePaths.size() > state.files.size() / 2) {
+					filePaths = null;
 				}
+			}
 
-				String source = new String(data, repositoryMiner.getCharset());
+			boolean incremental = filePaths != null;
+			if (!incremental) {
+				state = new ParserState(sourceFolders);
+				worktree.states.put(p, state);
+				filePaths = listFiles(worktree.path, p.getExtensions());
+			}
 
-				String filePath = FilenameUtils.normalize(f.getAbsolutePath());
-				filePath = filePath.substring(repositoryPath.length() + 1);
+			IParser parser = p.newInstance();
+			parser.setSourceFolders(sourceFolders);
+			parser.setSymbolTable(state.symbolTable);
+
+			AffectedTypes affected = incremental ? new AffectedTypes(state.graph) : null;
+			for (String filePath : filePaths) {
+				FileEntry previous = state.files.get(filePath);
+				if (previous != null) {
+					for (String type : previous.classes.keySet()) {
+						affected.add(type);
+						state.graph.remove(type);
+						state.classDocs.remove(type);
+					}
+				}
+			}
 
-				AST ast = parser.generate(filePath, source, repositoryMiner.getCharset());
-				processFile(filePath, ast);
+			List<String> existingPaths = new ArrayList<String>(filePaths.size());
+			for (String filePath : filePaths) {
+				if (new File(worktree.path, filePath).isFile()) {
+					existingPaths.add(filePath);
+				}
 			}
 
-			saveAnalysis(commit, ref);
+			FileEntry[] entries = parseFiles(parser, worktree.path, existingPaths, state.graph);
+
+			// the files removed or not parsed have no entry
+			Map<String, FileEntry> parsed = new HashMap<String, FileEntry>();
+			for (FileEntry entry : entries) {
+				if (entry != null) {
+					parsed.put(entry.filePath, entry);
+				}
+			}
+
+			for (String filePath : filePaths) {
+				FileEntry entry = parsed.get(filePath);
+				if (entry != null) {
+					state.files.put(filePath, entry);
+				} else {
+					state.files.remove(filePath);
+				}
+			}
+
+			BitSet types;
+			if (incremental) {
+				for (FileEntry entry : parsed.values()) {
+					for (String type : entry.classes.keySet()) {
+						affected.add(type);
+					}
+				}
+				types = affected.getTypes();
+			} else {
+				state.initialSymbols = state.symbolTable.size();
+				types = state.graph.getIds();
+			}
+
+			createDocuments(commit, ref, state, types, documents);
 		}
+
+		worktree.commit = commit.getId();
+		return documents;
 	}
 
-	private void processFile(String filePath, AST ast) {
-		List<AbstractClassDeclaration> types = ast.getDocument().getTypes();
-		FileEntry fEntry = new FileEntry(filePath, ast.getDocument().getPackageDeclaration());
+	private List<String> listFiles(String worktreePath, String[] extensions) {
+		Collection<File> files = FileUtils.listFiles(new File(worktreePath), extensions, true);
 
-		for (AbstractClassDeclaration type : types) {
-			fEntry.classes.put(type.getName(), type.getArchetype().toString());
+		List<String> filePaths = new ArrayList<String>(files.size());
+		for (File f : files) {
+			String filePath = FilenameUtils.normalize(f.getAbsolutePath());
+			filePaths.add(filePath.substring(worktreePath.length() + 1));
+		}
+		return filePaths;
+	}
 
-			for (IIndirectCodeMetric metric : repositoryMiner.getIndirectCodeMetrics()) {
-				metric.calculate(type, ast);
+	private List<String> getChangedFiles(ISCM scm, String fromCommit, String toCommit, String[] extensions) {
+		List<String> filePaths = new ArrayList<String>();
+		for (String filePath : scm.getChangedFiles(fromCommit, toCommit)) {
+			if (FilenameUtils.isExtension(filePath, extensions)) {
+				filePaths.add(FilenameUtils.separatorsToSystem(filePath));
 			}
+		}
+		return filePaths;
+	}
+
+	// The files are parsed in batch, sharing the bindings, the types of the
+	// files not given are found in the source folders. The files may be parsed
+	// by many threads, but the graph gets one file at a time and the entries
+	// keep the files order.
+	private FileEntry[] parseFiles(IParser parser, String worktreePath, List<String> filePaths,
+			final TypeGraph graph) throws IOException {
+		final Map<String, Integer> positions = new HashMap<String, Integer>();
+		for (int i = 0; i < filePaths.size(); i++) {
+			positions.put(filePaths.get(i), i);
+		}
 
-			for (IIndirectCodeSmell codesmell : repositoryMiner.getIndirectCodeSmell()) {
-				codesmell.detect(type, ast);
+		final FileEntry[] entries = new FileEntry[filePaths.size()];
+		parallelParser.generate(parser, worktreePath, filePaths, repositoryMiner.getCharset(), new IASTRequestor() {
+			@Override
+			public void accept(String filePath, AST ast) {
+				synchronized (entries) {
+					entries[positions.get(filePath)] = processFile(filePath, ast, graph);
+				}
 			}
+		});
+
+		return entries;
+	}
+
+	private FileEntry processFile(String filePath, AST ast, TypeGraph graph) {
+		List<AbstractClassDeclaration> types = ast.getDocument().getTypes();
+		FileEntry fEntry = new FileEntry(filePath, ast.getDocument().getPackageDeclaration());
+
+		for (AbstractClassDeclaration type : types) {
+			fEntry.classes.put(type.getName(), type.getArchetype().toString());
+			graph.add(type);
 		}
 
-		processedFiles.add(fEntry);
+		return fEntry;
 	}
 
-	private void saveAnalysis(Commit commit, Reference ref) {
+	// Only the types given are calculated, the other classes keep the
+	// documents of the last snapshot. Every snapshot still gets a document for
+	// each of its files, so a snapshot is read with no need of the others.
+	private void createDocuments(Commit commit, Reference ref, ParserState state, BitSet types,
+			List<Document> documents) {
 		Document doc = new Document();
 
 		if (ref != null) {
@@ -217,45 +530,49 @@ public class IndirectCodeAnalysisProcessor {
 		List<Map<String, Document>> codeSmellsResults = new ArrayList<Map<String, Document>>();
 
 		for (IIndirectCodeMetric metric : repositoryMiner.getIndirectCodeMetrics()) {
-			codeMetricsResults.add(metric.getResult());
+			codeMetricsResults.add(metric.calculate(state.graph, types));
 		}
 
+		List<Document> thresholdsDoc = new ArrayList<Document>();
 		for (IIndirectCodeSmell codesmell : repositoryMiner.getIndirectCodeSmell()) {
-			codeSmellsResults.add(codesmell.getResult());
+			codeSmellsResults.add(codesmell.detect(state.graph, types));
+			thresholdsDoc.add(codesmell.getThresholds());
 		}
 
-		for (FileEntry entry : processedFiles) {
-			createDocument(doc, entry, codeMetricsResults, codeSmellsResults);
-			doc.remove("_id");
+		for (FileEntry entry : state.files.values()) {
+			documents.add(createDocument(new Document(doc), entry, state, types, thresholdsDoc, codeMetricsResults,
+					codeSmellsResults));
 		}
 	}
 
-	private void createDocument(Document doc, FileEntry fileEntry, List<Map<String, Document>> codeMetricsResults,
+	private Document createDocument(Document doc, FileEntry fileEntry, ParserState state, BitSet types,
+			List<Document> thresholdsDoc, List<Map<String, Document>> codeMetricsResults,
 			List<Map<String, Document>> codeSmellsResults) {
 		doc.append("package", fileEntry.packageName);
 		doc.append("filename", fileEntry.filePath);
 		doc.append("filehash", StringUtils.encodeToCRC32(fileEntry.filePath));
 		doc.append("repository", new ObjectId(repositoryId));
-
-		List<Document> thresholdsDoc = new ArrayList<Document>();
-		for (IIndirectCodeSmell codeSmell : repositoryMiner.getIndirectCodeSmell()) {
-			thresholdsDoc.add(codeSmell.getThresholds());
-		}
 		doc.append("codesmells_threshholds", thresholdsDoc);
 
 		List<Document> classesDocs = new ArrayList<Document>();
 		for (Entry<String, String> entry : fileEntry.classes.entrySet()) {
-			Document clsDoc = new Document();
-			clsDoc.append("name", entry.getKey()).append("type", entry.getValue());
-
-			addIndirectCodeMetrics(entry.getKey(), codeMetricsResults, clsDoc);
-			addIndirectCodeSmells(entry.getKey(), codeSmellsResults, clsDoc);
+			// the types left out of the graph are never affected
+			int type = state.graph.getId(entry.getKey());
+			Document clsDoc = state.classDocs.get(entry.getKey());
+			if (clsDoc == null || (type != TypeGraph.NONE && types.get(type))) {
+				clsDoc = new Document();
+				clsDoc.append("name", entry.getKey()).append("type", entry.getValue());
+
+				addIndirectCodeMetrics(entry.getKey(), codeMetricsResults, clsDoc);
+				addIndirectCodeSmells(entry.getKey(), codeSmellsResults, clsDoc);
+				state.classDocs.put(entry.getKey(), clsDoc);
+			}
 
 			classesDocs.add(clsDoc);
 		}
 
 		doc.append("classes", classesDocs);
-		indirectAnalysisHandler.insert(doc);
+		return doc;
 	}
 
 	private void addIndirectCodeMetrics(String cls, List<Map<String, Document>> codeMetricsResults, Document clsDoc) {
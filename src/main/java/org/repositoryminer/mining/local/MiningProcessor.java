@@ -5,14 +5,19 @@ import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Map.Entry;
 
 import org.apache.commons.io.FilenameUtils;
 import org.bson.Document;
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.exceptions.VisMinerAPIException;
 import org.repositoryminer.listener.mining.IMiningListener;
+import org.repositoryminer.mining.MiningOrder;
 import org.repositoryminer.mining.RepositoryMiner;
+import org.repositoryminer.mining.local.Pipeline.Output;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Contributor;
 import org.repositoryminer.model.Reference;
@@ -23,7 +28,9 @@ import org.repositoryminer.persistence.handler.RepositoryDocumentHandler;
 import org.repositoryminer.scm.ISCM;
 import org.repositoryminer.scm.ReferenceType;
 import org.repositoryminer.scm.SCMFactory;
-import org.repositoryminer.utility.FileUtils;
+import org.repositoryminer.scm.workspace.IWorkspace;
+import org.repositoryminer.scm.workspace.WorkspaceFactory;
+import org.repositoryminer.utility.CommitIdSet;
 
 /**
  * <h1>The actual mining processor behind
@@ -78,16 +85,14 @@ public class MiningProcessor {
 	
 	private RepositoryMiner repositoryMiner;
 	private IMiningListener listener;
+	private Checkpoint checkpoint;
 	
 	private List<Reference> selectedReferences;
 	private Set<String> selectedCommits;
 	private Set<Contributor> contributors;
 
-	private void saveReferences(String repositoryId) {
+	private void selectReferences(String repositoryId) {
 		selectedReferences = new ArrayList<Reference>();
-		contributors = new HashSet<Contributor>();
-		selectedCommits = new HashSet<String>();
-		messageAnalyzer = new IssueExtractor();
 
 		ReferenceDocumentHandler refDocumentHandler = new ReferenceDocumentHandler();
 		List<Reference> references = scm.getReferences();
@@ -108,12 +113,10 @@ public class MiningProcessor {
 			ref.setCommits(scm.getReferenceCommits(ref.getPath(), ref.getType()));
 
 			Document refDoc = ref.toDocument();
+			refDoc.append("completeness", new Document("last_commit", false).append("history", false)
+					.append("working_directories", false));
 			refDocumentHandler.insert(refDoc);
 
-			listener.notifyCommitsMiningStart(ref.getName(), ref.getType(), ref.getCommits().size());
-			listener.notifyCommitsMiningEnd(ref.getName(), ref.getType(), saveCommits(repositoryId, ref));
-			
-			ref.setCommits(ref.getCommits().subList(0, 1)); // copy only the last commit in the reference
 			ref.setId(refDoc.getObjectId("_id").toString());
 			selectedReferences.add(ref);
 		}
@@ -121,38 +124,257 @@ public class MiningProcessor {
 		listener.notifyReferencesMiningEnd(selectedReferences.size());
 	}
 
-	private int saveCommits(String repositoryId, Reference reference) {
-		CommitDocumentHandler documentHandler = new CommitDocumentHandler();
+	// The commits given by the source are saved as they come. They are passed
+	// on to the direct code analysis, if there is one, which works on them
+	// while the next commits are extracted. A commit joins the cursor of the
+	// analysis before it is saved and is passed on after, so an interrupted
+	// run never leaves a saved commit the next run does not analyze.
+	private void mineCommits(String repositoryId, String tempRepo, Pipeline.Source<Commit> source, int totalCommits)
+			throws IOException {
+		final boolean directAnalysis = repositoryMiner.hasParsers()
+				&& (repositoryMiner.hasDirectCodeMetrics() || repositoryMiner.hasDirectCodeSmells());
+		// the analysis waits for the commits held here
+		final int commitsRange = directAnalysis ? Math.min(repositoryMiner.getPipelineQueueSize(), COMMITS_RANGE)
+				: COMMITS_RANGE;
 
-		int skip = 0;
-		int acceptedCommits = 0;
-		
-		List<Commit> commits = scm.getCommits(skip, COMMITS_RANGE, reference, selectedCommits);
+		Pipeline pipeline = new Pipeline(repositoryMiner.getPipelineQueueSize());
+		Pipeline.Link<Commit> commits = pipeline.source("history", source);
 
-		while (commits.size() > 0) {
-			List<Document> commitsDoc = new ArrayList<Document>();
-			acceptedCommits += commits.size();
-			
-			for (Commit commit : commits) {
-				listener.notifyCommitsMiningProgress(reference.getName(), reference.getType(), commit.getId());
-				
-				commit.setRepository(repositoryId);
-				commit.setIssueReferences(messageAnalyzer.analyzeMessage(commit.getMessage()));
+		Pipeline.Link<Commit> savedCommits = pipeline.stage("commits", 1, commits, new Pipeline.Stage<Commit, Commit>() {
 
-				contributors.add(commit.getCommitter());
-				commitsDoc.add(commit.toDocument());
+			private CommitDocumentHandler documentHandler = new CommitDocumentHandler();
+			private List<Commit> heldCommits = new ArrayList<Commit>();
 
-				selectedCommits.add(commit.getId());
+			@Override
+			public void process(Commit commit, Output<Commit> output) throws Exception {
+				heldCommits.add(commit);
+				if (heldCommits.size() >= commitsRange) {
+					save(output);
+				}
+			}
+
+			@Override
+			public void finish(Output<Commit> output) throws Exception {
+				save(output);
 			}
 
-			documentHandler.insertMany(commitsDoc);
-			skip += COMMITS_RANGE;
-			commits = scm.getCommits(skip, COMMITS_RANGE, reference, selectedCommits);
+			private void save(Output<Commit> output) throws InterruptedException {
+				if (heldCommits.size() == 0) {
+					return;
+				}
+
+				List<Document> commitsDoc = new ArrayList<Document>(heldCommits.size());
+				List<String> commitIds = new ArrayList<String>(heldCommits.size());
+				for (Commit commit : heldCommits) {
+					commitsDoc.add(commit.toDocument());
+					commitIds.add(commit.getId());
+				}
+
+				if (directAnalysis) {
+					checkpoint.begin(Checkpoint.DIRECT_ANALYSIS, commitIds);
+				}
+				documentHandler.insertMany(commitsDoc);
+
+				for (Commit commit : heldCommits) {
+					output.put(commit);
+				}
+				heldCommits = new ArrayList<Commit>();
+			}
+		});
+
+		if (directAnalysis) {
+			DirectCodeAnalysisProcessor processor = new DirectCodeAnalysisProcessor();
+			processor.setSCM(scm);
+			processor.setRepositoryMiner(repositoryMiner);
+			processor.setRepositoryData(repositoryId, tempRepo);
+			processor.setCheckpoint(checkpoint);
+			processor.run(pipeline, savedCommits, totalCommits);
+		} else {
+			pipeline.run();
 		}
-		
+	}
+
+	// The history of each selected reference, walked from the SCM
+	private Pipeline.Source<Commit> historySource(final String repositoryId) {
+		return new Pipeline.Source<Commit>() {
+			@Override
+			public void produce(Output<Commit> output) throws Exception {
+				for (Reference ref : selectedReferences) {
+					listener.notifyCommitsMiningStart(ref.getName(), ref.getType(), ref.getCommits().size());
+					listener.notifyCommitsMiningEnd(ref.getName(), ref.getType(),
+							extractCommits(repositoryId, ref, output));
+
+					ref.setCommits(ref.getCommits().subList(0, 1)); // copy only the last commit in the reference
+				}
+			}
+		};
+	}
+
+	// The given commits, in their order. Each one is notified as a commit of
+	// the reference at the same position of the owners.
+	private Pipeline.Source<Commit> commitsSource(final String repositoryId, final List<String> commitIds,
+			final List<Integer> owners) {
+		return new Pipeline.Source<Commit>() {
+			@Override
+			public void produce(Output<Commit> output) throws Exception {
+				int[] counts = new int[selectedReferences.size()];
+				for (int owner : owners) {
+					counts[owner]++;
+				}
+				notifyCommitsMining(counts, true);
+
+				int index = 0;
+				Iterator<Commit> commits = scm.getCommits(commitIds);
+				while (commits.hasNext()) {
+					Commit commit = commits.next();
+					Reference ref = selectedReferences.get(owners.get(index++));
+					listener.notifyCommitsMiningProgress(ref.getName(), ref.getType(), commit.getId());
+					acceptCommit(repositoryId, commit, output);
+				}
+
+				notifyCommitsMining(counts, false);
+			}
+		};
+	}
+
+	private void notifyCommitsMining(int[] counts, boolean start) {
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0) {
+				continue;
+			}
+
+			Reference ref = selectedReferences.get(i);
+			if (start) {
+				listener.notifyCommitsMiningStart(ref.getName(), ref.getType(), counts[i]);
+			} else {
+				listener.notifyCommitsMiningEnd(ref.getName(), ref.getType(), counts[i]);
+			}
+		}
+	}
+
+	private int extractCommits(String repositoryId, Reference reference, Output<Commit> output)
+			throws InterruptedException {
+		int acceptedCommits = 0;
+
+		Iterator<Commit> commits = scm.getCommits(reference, selectedCommits);
+		while (commits.hasNext()) {
+			Commit commit = commits.next();
+			listener.notifyCommitsMiningProgress(reference.getName(), reference.getType(), commit.getId());
+			acceptCommit(repositoryId, commit, output);
+			acceptedCommits++;
+		}
+
 		return acceptedCommits;
 	}
 
+	private void acceptCommit(String repositoryId, Commit commit, Output<Commit> output) throws InterruptedException {
+		commit.setRepository(repositoryId);
+		commit.setIssueReferences(messageAnalyzer.analyzeMessage(commit.getMessage()));
+
+		contributors.add(commit.getCommitter());
+		selectedCommits.add(commit.getId());
+
+		output.put(commit);
+	}
+
+	// The last commits of the references and the snapshots are mined and
+	// analyzed first, so they can be queried while the rest of the history is
+	// mined in the configured order.
+	private void mineProgressively(String repositoryId, String tempRepo, RepositoryDocumentHandler repoHandler)
+			throws IOException {
+		Set<String> scheduled = new CommitIdSet();
+		List<String> firstCommits = new ArrayList<String>();
+		List<Integer> firstOwners = new ArrayList<Integer>();
+
+		for (int i = 0; i < selectedReferences.size(); i++) {
+			String tip = selectedReferences.get(i).getCommits().get(0);
+			if (scheduled.add(tip)) {
+				firstCommits.add(tip);
+				firstOwners.add(i);
+			}
+		}
+
+		for (String snapshot : repositoryMiner.getSnapshots()) {
+			for (int i = 0; i < selectedReferences.size(); i++) {
+				if (selectedReferences.get(i).getCommits().contains(snapshot)) {
+					if (scheduled.add(snapshot)) {
+						firstCommits.add(snapshot);
+						firstOwners.add(i);
+					}
+					break;
+				}
+			}
+		}
+
+		// one commit of each reference at a time, so the references advance
+		// together
+		List<List<String>> histories = new ArrayList<List<String>>();
+		for (Reference ref : selectedReferences) {
+			histories.add(repositoryMiner.getMiningOrder() == MiningOrder.SAMPLED ? sample(ref.getCommits())
+					: ref.getCommits());
+			ref.setCommits(ref.getCommits().subList(0, 1)); // copy only the last commit in the reference
+		}
+
+		List<String> otherCommits = new ArrayList<String>();
+		List<Integer> otherOwners = new ArrayList<Integer>();
+		int[] next = new int[histories.size()];
+		boolean remaining = true;
+		while (remaining) {
+			remaining = false;
+			for (int i = 0; i < histories.size(); i++) {
+				List<String> history = histories.get(i);
+				while (next[i] < history.size()) {
+					String commit = history.get(next[i]++);
+					if (scheduled.add(commit)) {
+						otherCommits.add(commit);
+						otherOwners.add(i);
+						break;
+					}
+				}
+				remaining |= next[i] < history.size();
+			}
+		}
+		histories = null;
+		scheduled = null;
+
+		mineCommits(repositoryId, tempRepo, commitsSource(repositoryId, firstCommits, firstOwners),
+				firstCommits.size());
+		repoHandler.updateOnlyContributors(repositoryId, Contributor.toDocumentList(contributors));
+		calculateAndDetect(tempRepo, repositoryId);
+		updateCompleteness(new Document("last_commit", true).append("history", false)
+				.append("working_directories", false));
+
+		mineCommits(repositoryId, tempRepo, commitsSource(repositoryId, otherCommits, otherOwners),
+				otherCommits.size());
+		repoHandler.updateOnlyContributors(repositoryId, Contributor.toDocumentList(contributors));
+		saveWorkingDirectories(repositoryId);
+	}
+
+	// The commits evenly spaced along the history first, then the ones halfway
+	// between them, and so on until the gaps are filled
+	private static List<String> sample(List<String> commits) {
+		List<String> sample = new ArrayList<String>(commits.size());
+		boolean[] taken = new boolean[commits.size()];
+
+		for (int step = Integer.highestOneBit(Math.max(commits.size() - 1, 1)); step > 0; step /= 2) {
+			for (int i = 0; i < commits.size(); i += step) {
+				if (!taken[i]) {
+					taken[i] = true;
+					sample.add(commits.get(i));
+				}
+			}
+		}
+
+		return sample;
+	}
+
+	private void updateCompleteness(Document completeness) {
+		ReferenceDocumentHandler refDocumentHandler = new ReferenceDocumentHandler();
+		for (Reference ref : selectedReferences) {
+			refDocumentHandler.updateCompleteness(ref.getId(), completeness);
+		}
+	}
+
 	/**
 	 * Starts the mining process
 	 * 
@@ -169,9 +391,17 @@ public class MiningProcessor {
 		listener.notifyMiningStart(repositoryMiner.getName());
 		
 		File repositoryFolder = new File(repositoryMiner.getPath());
-		String tempRepo = FileUtils.copyFolderToTmp(repositoryFolder.getAbsolutePath(), repositoryMiner.getName());
+		IWorkspace workspace = WorkspaceFactory.getWorkspace(repositoryMiner.getScm(),
+				repositoryMiner.getWorkspaceType());
+		if (workspace.isReadOnly()
+				&& (repositoryMiner.hasIndirectCodeMetrics() || repositoryMiner.hasIndirectCodeSmells())) {
+			throw new VisMinerAPIException(ErrorMessage.READ_ONLY_WORKSPACE.toString());
+		}
+
+		String tempRepo = workspace.create(repositoryFolder.getAbsolutePath(), repositoryMiner.getName());
 
 		scm = SCMFactory.getSCM(repositoryMiner.getScm());
+		scm.setExtractionThreads(repositoryMiner.getExtractionThreads());
 		scm.open(tempRepo);
 
 		Repository repository = new Repository(repositoryMiner);
@@ -181,15 +411,34 @@ public class MiningProcessor {
 		Document repoDoc = repository.toDocument();
 		repoHandler.insert(repoDoc);
 		repository.setId(repoDoc.get("_id").toString());
+		checkpoint = new Checkpoint(repository.getId());
+
+		selectReferences(repository.getId());
+
+		contributors = new HashSet<Contributor>();
+		selectedCommits = new CommitIdSet();
+		messageAnalyzer = new IssueExtractor();
+
+		if (repositoryMiner.getMiningOrder() == MiningOrder.HISTORY) {
+			Set<String> allCommits = new CommitIdSet();
+			for (Reference ref : selectedReferences) {
+				allCommits.addAll(ref.getCommits());
+			}
 
-		saveReferences(repository.getId());
-		repoHandler.updateOnlyContributors(repository.getId(), Contributor.toDocumentList(contributors));
+			mineCommits(repository.getId(), tempRepo, historySource(repository.getId()), allCommits.size());
+			repoHandler.updateOnlyContributors(repository.getId(), Contributor.toDocumentList(contributors));
 
-		saveWorkingDirectories(repository.getId());
-		calculateAndDetect(tempRepo, repository.getId());
+			saveWorkingDirectories(repository.getId());
+			calculateAndDetect(tempRepo, repository.getId());
+		} else {
+			mineProgressively(repository.getId(), tempRepo, repoHandler);
+		}
+
+		updateCompleteness(new Document("last_commit", true).append("history", true)
+				.append("working_directories", true));
 
 		scm.close();
-		FileUtils.deleteFolder(tempRepo);
+		workspace.dispose();
 		
 		listener.notifyMiningEnd(repositoryMiner.getName());
 	}
@@ -203,8 +452,8 @@ public class MiningProcessor {
 	}
 
 	/**
-	 * Performs both the calculation (metrics) and detections (smells/debts) on
-	 * the targeted project.
+	 * Performs the indirect calculations and detections on the targeted
+	 * project, the direct ones are made while the commits are mined.
 	 * 
 	 * @param repositoryMiner
 	 *            instance of {@link org.repositoryminer.mining.RepositoryMiner}
@@ -217,15 +466,6 @@ public class MiningProcessor {
 			return;
 		}
 
-		if (repositoryMiner.hasDirectCodeMetrics() || repositoryMiner.hasDirectCodeSmells()) {
-			DirectCodeAnalysisProcessor processor = new DirectCodeAnalysisProcessor();
-			processor.setSelectedCommits(new ArrayList<String>(selectedCommits));
-			processor.setSCM(scm);
-			processor.setRepositoryMiner(repositoryMiner);
-			processor.setRepositoryData(repositoryId, tempRepo);
-			processor.start();
-		}
-
 		if (repositoryMiner.hasIndirectCodeMetrics() || repositoryMiner.hasIndirectCodeSmells()) {
 			List<String> validSnapshots = new ArrayList<String>();
 			for (String hash : repositoryMiner.getSnapshots()) {
@@ -240,6 +480,7 @@ public class MiningProcessor {
 			processor.setRepositoryData(repositoryId, tempRepo);
 			processor.setRepositoryMiner(repositoryMiner);
 			processor.setSCM(scm);
+			processor.setCheckpoint(checkpoint);
 			processor.start();
 		}
 	}
@@ -0,0 +1,91 @@
+package org.repositoryminer.mining.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.repositoryminer.ast.SymbolTable;
+import org.repositoryminer.parser.IASTRequestor;
+import org.repositoryminer.parser.IParser;
+
+/**
+ * Parses a batch of files in many threads. The batch is split in contiguous
+ * parts, so files of the same package tend to share an environment, and each
+ * part is parsed by its own parser instance, created from the given one with
+ * the same source folders. All the parts share a symbol table, the one of the
+ * given parser or a new one for the batch.
+ * <p>
+ * The requestor may be called by many threads at the same time and in any
+ * order, it is up to the caller to put the results back in order.
+ */
+class ParallelParser {
+
+	private int threads;
+	private ExecutorService executor;
+
+	public ParallelParser(int threads) {
+		this.threads = Math.max(threads, 1);
+		if (this.threads > 1) {
+			executor = Executors.newFixedThreadPool(this.threads);
+		}
+	}
+
+	public void generate(IParser parser, final String baseFolder, List<String> filePaths, final String charset,
+			final IASTRequestor requestor) throws IOException {
+		if (executor == null || filePaths.size() < 2) {
+			parser.generate(baseFolder, filePaths, charset, requestor);
+			return;
+		}
+
+		int parts = Math.min(threads, filePaths.size());
+		int partSize = (filePaths.size() + parts - 1) / parts;
+		List<Future<?>> results = new ArrayList<Future<?>>(parts);
+		SymbolTable symbolTable = parser.getSymbolTable() != null ? parser.getSymbolTable() : new SymbolTable();
+
+		for (int begin = 0; begin < filePaths.size(); begin += partSize) {
+			final List<String> part = filePaths.subList(begin, Math.min(begin + partSize, filePaths.size()));
+			final IParser partParser = parser.newInstance();
+			partParser.setSourceFolders(parser.getSourceFolders());
+			partParser.setSymbolTable(symbolTable);
+
+			results.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					partParser.generate(baseFolder, part, charset, requestor);
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			// the other parts are useless if one of them fails
+			for (Future<?> result : results) {
+				result.cancel(true);
+			}
+		}
+	}
+
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+}
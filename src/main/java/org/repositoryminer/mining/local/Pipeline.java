@@ -0,0 +1,220 @@
+package org.repositoryminer.mining.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the steps of the mining as stages connected by bounded queues, so a
+ * stage works on an item while the next one works on the previous item, e.g.
+ * the changes of a commit are extracted while the files of the previous commit
+ * are parsed and the analysis of the one before is saved. A stage waits when
+ * its output queue is full, so the fastest stages do not pile up items in
+ * memory.
+ * <p>
+ * Each stage has its own number of threads. The items of a stage with a single
+ * thread leave it in the order they came, the others may reorder them. A
+ * stage is finished once all its threads took the end of its input, then the
+ * end is passed on.
+ * <p>
+ * The first failure of a stage stops the pipeline and is thrown by
+ * {@link #run()}.
+ */
+class Pipeline {
+
+	/**
+	 * Where a stage puts the items for the next one.
+	 */
+	public interface Output<T> {
+
+		public void put(T item) throws InterruptedException;
+
+	}
+
+	/**
+	 * The first stage, which produces the items.
+	 */
+	public interface Source<O> {
+
+		public void produce(Output<O> output) throws Exception;
+
+	}
+
+	/**
+	 * A stage which turns each item in any number of items for the next stage.
+	 * It may be called by many threads at the same time.
+	 */
+	public interface Stage<I, O> {
+
+		public void process(I item, Output<O> output) throws Exception;
+
+		/**
+		 * Called once, after all the items were processed, e.g. to put the
+		 * items held by the stage.
+		 */
+		public default void finish(Output<O> output) throws Exception {
+		}
+
+	}
+
+	/**
+	 * The items between two stages. The items put in a link nobody takes are
+	 * discarded.
+	 */
+	public static class Link<T> {
+
+		private String name;
+		private BlockingQueue<Object> queue;
+
+		private Link(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+	}
+
+	private static final Object END = new Object();
+
+	private int queueSize;
+	private List<Runnable> workers = new ArrayList<Runnable>();
+	private volatile Throwable failure;
+	private ExecutorService executor;
+
+	/**
+	 * @param queueSize
+	 *            the number of items each link holds before the stage which
+	 *            fills it waits.
+	 */
+	public Pipeline(int queueSize) {
+		this.queueSize = Math.max(queueSize, 1);
+	}
+
+	public <O> Link<O> source(String name, final Source<O> source) {
+		final Link<O> output = new Link<O>(name);
+		workers.add(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					source.produce(output(output));
+					end(output);
+				} catch (Throwable e) {
+					fail(e);
+				}
+			}
+		});
+		return output;
+	}
+
+	public <I, O> Link<O> stage(String name, int threads, Link<I> input, final Stage<I, O> stage) {
+		if (input.queue != null) {
+			throw new IllegalStateException(input.name + " is already taken by another stage");
+		}
+
+		final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(queueSize);
+		input.queue = queue;
+
+		final Link<O> output = new Link<O>(name);
+		final int stageThreads = Math.max(threads, 1);
+		final AtomicInteger running = new AtomicInteger(stageThreads);
+
+		for (int i = 0; i < stageThreads; i++) {
+			workers.add(new Runnable() {
+				@SuppressWarnings("unchecked")
+				@Override
+				public void run() {
+					try {
+						Output<O> out = output(output);
+						Object item;
+						while ((item = queue.take()) != END) {
+							stage.process((I) item, out);
+						}
+
+						// the other threads of the stage must see the end too
+						queue.put(END);
+						if (running.decrementAndGet() == 0) {
+							stage.finish(out);
+							end(output);
+						}
+					} catch (Throwable e) {
+						fail(e);
+					}
+				}
+			});
+		}
+
+		return output;
+	}
+
+	private <T> Output<T> output(final Link<T> link) {
+		return new Output<T>() {
+			@Override
+			public void put(T item) throws InterruptedException {
+				if (link.queue != null) {
+					link.queue.put(item);
+				}
+			}
+		};
+	}
+
+	private void end(Link<?> link) throws InterruptedException {
+		if (link.queue != null) {
+			link.queue.put(END);
+		}
+	}
+
+	private void fail(Throwable e) {
+		synchronized (this) {
+			if (failure != null) {
+				// the others are interrupted because of the first one
+				return;
+			}
+			failure = e;
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Runs all the stages and waits for them to finish.
+	 */
+	public void run() throws IOException {
+		executor = Executors.newFixedThreadPool(workers.size());
+		for (Runnable worker : workers) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				// a worker started before failed and stopped the pipeline
+				break;
+			}
+		}
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IOException(failure);
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.repositoryminer.mining.local;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.repositoryminer.model.Diff;
+import org.repositoryminer.scm.DiffType;
+import org.repositoryminer.scm.ISCM;
+
+/**
+ * Detects the source folders of a parser from the repository objects instead
+ * of listing the file system. A folder is a source folder if there is some file
+ * supported by the parser beneath it, hidden folders are ignored.
+ * <p>
+ * The folders are cached by tree id. A commit whose changes do not add, remove
+ * or move any supported file has the same folders of its parent, so its tree
+ * is not even read. The folders found for such a commit are kept for its parent
+ * too, as the history is walked from the children to the parents.
+ */
+class SourceFolderDetector {
+
+	private static final int CACHE_SIZE = 256;
+
+	private ISCM scm;
+	private String[] extensions;
+	private Map<String, String[]> folders;
+
+	public SourceFolderDetector(ISCM scm, String[] extensions) {
+		this.scm = scm;
+		this.extensions = extensions;
+		this.folders = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * @param repositoryPath
+	 *            the path the source folders are resolved against.
+	 * @param commit
+	 *            the commit id.
+	 * @param parent
+	 *            the parent the changes were extracted from, or null.
+	 * @param diffs
+	 *            the changes made in the commit, ignored if there is no parent.
+	 * @return the absolute paths of the source folders.
+	 */
+	public synchronized String[] detect(String repositoryPath, String commit, String parent, List<Diff> diffs) {
+		String treeId = scm.getTreeId(commit);
+		String[] relativeFolders = folders.get(treeId);
+
+		String parentTreeId = null;
+		if (parent != null && !changesSourceFolders(diffs)) {
+			parentTreeId = scm.getTreeId(parent);
+			if (relativeFolders == null) {
+				relativeFolders = folders.get(parentTreeId);
+			}
+		}
+
+		if (relativeFolders == null) {
+			relativeFolders = findSourceFolders(scm.getFiles(commit));
+		}
+
+		folders.put(treeId, relativeFolders);
+		if (parentTreeId != null) {
+			folders.put(parentTreeId, relativeFolders);
+		}
+
+		String[] absoluteFolders = new String[relativeFolders.length];
+		for (int i = 0; i < relativeFolders.length; i++) {
+			absoluteFolders[i] = new File(repositoryPath, relativeFolders[i]).getAbsolutePath();
+		}
+
+		return absoluteFolders;
+	}
+
+	// Only added, removed or moved files can change the source folders
+	private boolean changesSourceFolders(List<Diff> diffs) {
+		for (Diff diff : diffs) {
+			if (diff.getType() == DiffType.MODIFY) {
+				continue;
+			}
+
+			if (isSupported(diff.getPath()) || (diff.getOldPath() != null && isSupported(diff.getOldPath()))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// The parents are added before their children
+	private String[] findSourceFolders(List<String> files) {
+		Set<String> sourceFolders = new LinkedHashSet<String>();
+
+		for (String file : files) {
+			if (!isSupported(file) || isInHiddenFolder(file)) {
+				continue;
+			}
+
+			for (int end = file.indexOf('/'); end != -1; end = file.indexOf('/', end + 1)) {
+				sourceFolders.add(file.substring(0, end));
+			}
+		}
+
+		return sourceFolders.toArray(new String[sourceFolders.size()]);
+	}
+
+	private boolean isInHiddenFolder(String file) {
+		return file.startsWith(".") || file.substring(0, Math.max(file.lastIndexOf('/'), 0)).contains("/.");
+	}
+
+	private boolean isSupported(String file) {
+		return FilenameUtils.isExtension(file, extensions);
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.repositoryminer.mining.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.io.FilenameUtils;
+import org.repositoryminer.model.Commit;
+import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.utility.FileUtils;
+
+/**
+ * Scratch copies of the source files of the repository, written from the
+ * repository objects, so the parsers resolve the bindings of a commit against
+ * the files of that commit and the working tree is never touched. Only the
+ * files supported by the parsers are kept.
+ * <p>
+ * A tree is moved from the commit it has to the one it is asked for by writing
+ * only the files which differ between the two. The commits of the history come
+ * one after the other, so a tree is mostly moved from a parent to its child or
+ * the other way around, a few files at a time.
+ * <p>
+ * A tree is used by one commit at a time and there are at most as many trees
+ * as the size of the pool. When all of them are in use, the next commit waits
+ * for one to be released.
+ */
+class SourceTreePool {
+
+	/**
+	 * A scratch folder with the source files of a commit.
+	 */
+	public static class SourceTree {
+
+		private File folder;
+		private String commit;
+		private List<String> parents;
+
+		private SourceTree(File folder) {
+			this.folder = folder;
+		}
+
+		public File getFolder() {
+			return folder;
+		}
+
+		// the commits one step away in the history
+		private boolean isNextTo(Commit other) {
+			return commit != null && (other.getParents().contains(commit) || parents.contains(other.getId()));
+		}
+
+	}
+
+	private ISCM scm;
+	private String[] extensions;
+	private File scratchFolder;
+	private int size;
+	private int createdTrees;
+	// the trees released last come first, their files are the most recent
+	private Deque<SourceTree> freeTrees = new ArrayDeque<SourceTree>();
+
+	/**
+	 * @param scratchFolder
+	 *            where the trees are written, each one in a folder of its own.
+	 * @param size
+	 *            the maximum number of trees.
+	 */
+	public SourceTreePool(ISCM scm, String[] extensions, File scratchFolder, int size) {
+		this.scm = scm;
+		this.extensions = extensions;
+		this.scratchFolder = scratchFolder;
+		this.size = size;
+	}
+
+	/**
+	 * Takes a tree and moves it to the commit, waiting for a tree to be released
+	 * if all of them are in use.
+	 */
+	public SourceTree acquire(Commit commit) throws IOException, InterruptedException {
+		SourceTree tree = take(commit);
+		update(tree, commit);
+		return tree;
+	}
+
+	public synchronized void release(SourceTree tree) {
+		freeTrees.push(tree);
+		notifyAll();
+	}
+
+	// A tree next to the commit, the most recent one or a new one, in this
+	// order: the fewer files differ the less is written
+	private synchronized SourceTree take(Commit commit) throws InterruptedException {
+		while (freeTrees.isEmpty() && createdTrees == size) {
+			wait();
+		}
+
+		for (Iterator<SourceTree> it = freeTrees.iterator(); it.hasNext();) {
+			SourceTree tree = it.next();
+			if (tree.isNextTo(commit)) {
+				it.remove();
+				return tree;
+			}
+		}
+
+		if (!freeTrees.isEmpty()) {
+			return freeTrees.pop();
+		}
+		return new SourceTree(new File(scratchFolder, "tree" + createdTrees++));
+	}
+
+	// A tree left half written by a failure is written again from scratch
+	private void update(SourceTree tree, Commit commit) throws IOException {
+		String fromCommit = tree.commit;
+		if (fromCommit == null && tree.folder.exists()) {
+			FileUtils.deleteFolder(tree.folder.getAbsolutePath());
+		}
+		tree.commit = null;
+
+		for (Entry<String, String> blob : scm.getChangedBlobs(fromCommit, commit.getId()).entrySet()) {
+			if (!FilenameUtils.isExtension(blob.getKey(), extensions)) {
+				continue;
+			}
+
+			File file = new File(tree.folder, blob.getKey());
+			if (blob.getValue() == null) {
+				file.delete();
+			} else {
+				FileUtils.writeByteArrayToFile(file, scm.getData(blob.getValue()));
+			}
+		}
+
+		tree.commit = commit.getId();
+		tree.parents = commit.getParents();
+	}
+
+}
@@ -1,11 +1,11 @@
 package org.repositoryminer.mining.local;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.repositoryminer.listener.mining.IMiningListener;
 import org.repositoryminer.model.Diff;
 import org.repositoryminer.model.Reference;
@@ -14,6 +14,7 @@ import org.repositoryminer.persistence.handler.CommitDocumentHandler;
 import org.repositoryminer.persistence.handler.ReferenceDocumentHandler;
 import org.repositoryminer.persistence.handler.WorkingDirectoryDocumentHandler;
 import org.repositoryminer.scm.DiffType;
+import org.repositoryminer.utility.CommitIdSet;
 
 import com.mongodb.client.model.Projections;
 
@@ -21,6 +22,10 @@ public class WorkingDirectoryProcessor {
 
 	private static final int COMMIT_RANGE = 1000;
 
+	// A working directory is saved with all its files once in this many
+	// commits, the others only with their changes to the previous one
+	private static final int KEYFRAME_INTERVAL = 32;
+
 	private CommitDocumentHandler commitHandler;
 	private ReferenceDocumentHandler referenceHandler;
 	private WorkingDirectoryDocumentHandler wdHandler;
@@ -29,6 +34,12 @@ public class WorkingDirectoryProcessor {
 	private String repositoryId; 
 	private List<Reference> references;
 	private WorkingDirectory workingDirectory;
+	// the last saved working directory, loaded when the next one is built
+	private String previousCommit;
+	// the keyframe the working directory leads back to, and how many deltas
+	// are between them
+	private String keyframe;
+	private int depth;
 	private IMiningListener miningListener;
 	
 	public WorkingDirectoryProcessor() {
@@ -56,11 +67,13 @@ public class WorkingDirectoryProcessor {
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public void processWorkingDirectories() {
 		if (visitedCommits == null) {
-			visitedCommits = new HashSet<String>();
+			visitedCommits = new CommitIdSet();
 		}
+		wdHandler.createIndexes();
 		
 		for (Reference ref : references) {
 			workingDirectory = new WorkingDirectory(repositoryId);
+			previousCommit = null;
 			Document refDoc = referenceHandler.findById(ref.getId(), Projections.include("commits"));
 
 			List<String> commits = (List<String>) refDoc.get("commits");
@@ -86,11 +99,10 @@ public class WorkingDirectoryProcessor {
 	private int processCommits(List<String> commits, Reference ref) {
 		// not selects already processed commits
 		List<String> newCommits = new ArrayList<String>();
-		String prevCommit = null;
 		
 		for (int i = commits.size() - 1; i >= 0; i--) {
 			if (visitedCommits.contains(commits.get(i))) {
-				prevCommit = commits.get(i);
+				previousCommit = commits.get(i);
 			} else {
 				newCommits.add(commits.get(i));
 			}
@@ -100,8 +112,10 @@ public class WorkingDirectoryProcessor {
 			return 0;
 		}
 		
-		if (prevCommit != null) {
-			workingDirectory = WorkingDirectory.parseDocument(wdHandler.findById(prevCommit));
+		// the previous working directory may be in an earlier range
+		if (previousCommit != null) {
+			loadWorkingDirectory(previousCommit);
+			previousCommit = null;
 		}
 		
 		List<Document> wdDocs = new ArrayList<Document>();
@@ -110,27 +124,79 @@ public class WorkingDirectoryProcessor {
 			miningListener.notifyWorkingDirectoriesMiningProgress(ref.getName(), ref.getType(), commitId);
 			
 			visitedCommits.add(commitId);
+			String previous = workingDirectory.getId();
 			workingDirectory.setId(commitId);
 			
-			processDiff(Diff.parseDocuments((List<Document>) doc.get("diffs")));
-			wdDocs.add(workingDirectory.toDocument());
+			List<Diff> diffs = Diff.parseDocuments((List<Document>) doc.get("diffs"));
+			processDiff(diffs);
+
+			if (previous == null || depth + 1 >= KEYFRAME_INTERVAL) {
+				keyframe = commitId;
+				depth = 0;
+				wdDocs.add(workingDirectory.toDocument());
+			} else {
+				depth++;
+				wdDocs.add(createDelta(previous, diffs));
+			}
 		}
 		
 		wdHandler.insertMany(wdDocs);
 		return wdDocs.size();
 	}
 
-	private void processDiff(List<Diff> diffs) {
+	private void loadWorkingDirectory(String commitId) {
+		Document doc = wdHandler.findById(commitId, Projections.include("keyframe", "depth"));
+		keyframe = doc.getString("keyframe") != null ? doc.getString("keyframe") : commitId;
+		depth = doc.getInteger("depth", 0);
+
+		workingDirectory = new WorkingDirectory(repositoryId);
+		workingDirectory.setId(commitId);
+		workingDirectory.setFiles(wdHandler.findFiles(commitId));
+	}
+
+	// The changes of the working directory to the previous one, the files
+	// added and renamed were last added by its commit
+	private Document createDelta(String previous, List<Diff> diffs) {
+		List<String> added = new ArrayList<String>();
+		List<String> removed = new ArrayList<String>();
+		List<Document> renamed = new ArrayList<Document>();
+
 		for (Diff d : diffs) {
 			if (d.getType() == DiffType.ADD || d.getType() == DiffType.COPY) {
-				workingDirectory.getFiles().put(d.getPath(), workingDirectory.getId());
+				added.add(d.getPath());
 			} else if (d.getType() == DiffType.DELETE) {
+				removed.add(d.getPath());
+			} else if (d.getType() == DiffType.RENAME) {
+				renamed.add(new Document("old_file", d.getOldPath()).append("file", d.getPath()));
+			}
+		}
+
+		Document doc = new Document("_id", workingDirectory.getId());
+		doc.append("repository", new ObjectId(repositoryId));
+		doc.append("keyframe", keyframe).append("previous", previous).append("depth", depth);
+		doc.append("added", added).append("removed", removed).append("renamed", renamed);
+		return doc;
+	}
+
+	// The changes are applied in the same order a delta is, see
+	// WorkingDirectoryDocumentHandler#findFiles: removed, renamed and added
+	private void processDiff(List<Diff> diffs) {
+		for (Diff d : diffs) {
+			if (d.getType() == DiffType.DELETE) {
 				workingDirectory.getFiles().remove(d.getPath());
-			} else if(d.getType() == DiffType.RENAME) {
+			}
+		}
+		for (Diff d : diffs) {
+			if (d.getType() == DiffType.RENAME) {
 				workingDirectory.getFiles().remove(d.getOldPath());
 				workingDirectory.getFiles().put(d.getPath(), workingDirectory.getId());
 			}
 		}
+		for (Diff d : diffs) {
+			if (d.getType() == DiffType.ADD || d.getType() == DiffType.COPY) {
+				workingDirectory.getFiles().put(d.getPath(), workingDirectory.getId());
+			}
+		}
 	}
 
 }
\ No newline at end of file
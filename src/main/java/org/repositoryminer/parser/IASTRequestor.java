@@ -0,0 +1,19 @@
+package org.repositoryminer.parser;
+
+import org.repositoryminer.ast.AST;
+
+/**
+ * Receives the ASTs generated by a batch parsing, one at a time, so the caller
+ * does not need to keep all of them in memory.
+ */
+public interface IASTRequestor {
+
+	/**
+	 * @param filePath
+	 *            the file path, as it was given to the parser.
+	 * @param ast
+	 *            the AST representing the file.
+	 */
+	public void accept(String filePath, AST ast);
+
+}
@@ -1,7 +1,10 @@
 package org.repositoryminer.parser;
 
+import java.util.List;
+
 import org.repositoryminer.ast.AST;
 import org.repositoryminer.ast.Language;
+import org.repositoryminer.ast.SymbolTable;
 
 public interface IParser {
 
@@ -25,6 +28,22 @@ public interface IParser {
 	 */
 	public AST generate(String filePath, String source, String charset);
 
+	/**
+	 * Parses many files sharing a single environment, so the bindings are
+	 * resolved once for all of them instead of once per file. A file whose
+	 * AST fails to be processed is parsed again alone, after the others.
+	 * 
+	 * @param baseFolder
+	 *            the folder the file paths are relative to.
+	 * @param filePaths
+	 *            the files to be parsed.
+	 * @param charset
+	 *            the charset.
+	 * @param requestor
+	 *            receives the AST of each file.
+	 */
+	public void generate(String baseFolder, List<String> filePaths, String charset, IASTRequestor requestor);
+
 	/**
 	 * @return the extensions supported by the parser
 	 */
@@ -35,10 +54,36 @@ public interface IParser {
 	 */
 	public String[] getSourceFolders();
 
+	/**
+	 * @param sourceFolders
+	 *            source folders detected elsewhere, e.g. from the repository
+	 *            objects, used instead of processing the repository path.
+	 */
+	public void setSourceFolders(String[] sourceFolders);
+
+	/**
+	 * @return the symbol table shared by the ASTs generated, null if each call
+	 *         to generate uses a table of its own.
+	 */
+	public SymbolTable getSymbolTable();
+
+	/**
+	 * @param symbolTable
+	 *            the table where the names of the files of a snapshot are
+	 *            interned. It may be shared by many parser instances.
+	 */
+	public void setSymbolTable(SymbolTable symbolTable);
+
 	/**
 	 * @return a constant to identify the programming language supported by the
 	 *         parser
 	 */
 	public Language getLanguage();
 
+	/**
+	 * @return a new instance of the parser with no source folders processed,
+	 *         so snapshots can be parsed concurrently.
+	 */
+	public IParser newInstance();
+
 }
\ No newline at end of file
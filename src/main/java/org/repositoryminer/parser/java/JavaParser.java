@@ -2,13 +2,20 @@ package org.repositoryminer.parser.java;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.QualifiedType;
@@ -26,6 +33,8 @@ import org.repositoryminer.ast.Language;
 import org.repositoryminer.ast.MethodDeclaration;
 import org.repositoryminer.ast.ParameterDeclaration;
 import org.repositoryminer.ast.SuperClassDeclaration;
+import org.repositoryminer.ast.SymbolTable;
+import org.repositoryminer.parser.IASTRequestor;
 import org.repositoryminer.parser.IParser;
 
 /**
@@ -40,6 +49,7 @@ import org.repositoryminer.parser.IParser;
 public class JavaParser implements IParser {
 
 	private String[] sourceFolders;
+	private SymbolTable symbolTable;
 
 	@Override
 	public String[] getExtensions() {
@@ -53,49 +63,67 @@ public class JavaParser implements IParser {
 	}
 
 	@Override
-	public void processSourceFolders(String repositoryPath) {
-		List<String> folders = new ArrayList<String>();
-		scanRepository(repositoryPath, folders);
-		sourceFolders = folders.toArray(new String[folders.size()]);
+	public void setSourceFolders(String[] sourceFolders) {
+		this.sourceFolders = sourceFolders;
 	}
 
-	private void scanRepository(String path, List<String> folders) {
-		File directory = new File(path);
+	@Override
+	public void processSourceFolders(String repositoryPath) {
+		List<String> folders = new ArrayList<String>();
 
-		File[] fList = directory.listFiles(new FileFilter() {
+		File[] fList = new File(repositoryPath).listFiles(new FileFilter() {
 			public boolean accept(File file) {
 				return file.isDirectory() && !file.isHidden();
 			}
 		});
 
-		for (File file : fList) {
-			if (validateSourceFolder(file)) {
-				folders.add(file.getAbsolutePath());
-				scanRepository(file.getAbsolutePath(), folders);
+		if (fList != null) {
+			for (File file : fList) {
+				scanFolder(file, folders);
 			}
 		}
-	}
 
-	private boolean validateSourceFolder(File f) {
+		sourceFolders = folders.toArray(new String[folders.size()]);
+	}
 
-		File[] fList = f.listFiles(new FileFilter() {
+	// A folder is a source folder if there is some java file beneath it. Each
+	// folder is listed only once, the parents are added before their children.
+	private boolean scanFolder(File folder, List<String> folders) {
+		File[] fList = folder.listFiles(new FileFilter() {
 			public boolean accept(File file) {
 				return (file.isDirectory() && !file.isHidden()) || file.getName().endsWith(".java");
 			}
 		});
 
-		if (fList == null)
+		if (fList == null) {
 			return false;
+		}
+
+		int position = folders.size();
+		boolean hasSource = false;
 
-		for (File f2 : fList) {
-			if (f2.getName().endsWith(".java")) {
-				return true;
-			} else if (validateSourceFolder(f2)) {
-				return true;
+		for (File f : fList) {
+			if (f.isDirectory()) {
+				hasSource |= scanFolder(f, folders);
+			} else {
+				hasSource = true;
 			}
 		}
-		return false;
 
+		if (hasSource) {
+			folders.add(position, folder.getAbsolutePath());
+		}
+		return hasSource;
+	}
+
+	@Override
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
 	}
 
 	@Override
@@ -103,22 +131,21 @@ public class JavaParser implements IParser {
 		return Language.JAVA;
 	}
 
+	@Override
+	public IParser newInstance() {
+		return new JavaParser();
+	}
+
 	public AST generate(String filePath, String source, String charset) {
-		Document document = new Document();
-		document.setName(filePath);
+		return generate(filePath, source, charset,
+				new SymbolResolver(symbolTable != null ? symbolTable : new SymbolTable()));
+	}
 
-		ASTParser parser = ASTParser.newParser(org.eclipse.jdt.core.dom.AST.JLS8);
+	private AST generate(String filePath, String source, String charset, SymbolResolver symbols) {
+		ASTParser parser = createParser(charset);
 		parser.setSource(source.toCharArray());
-		parser.setResolveBindings(true);
-		parser.setKind(ASTParser.K_COMPILATION_UNIT);
-		parser.setBindingsRecovery(true);
 		parser.setUnitName(filePath.substring(filePath.lastIndexOf("/") + 1));
 
-		String[] classpath = { System.getProperty("java.home").replace("\\", "/") + "/lib/rt.jar" };
-		String[] encoding = new String[sourceFolders.length];
-		Arrays.fill(encoding, charset);
-
-		parser.setEnvironment(classpath, sourceFolders, encoding, true);
 		CompilationUnit root = null;
 
 		try {
@@ -132,6 +159,78 @@ public class JavaParser implements IParser {
 			root = (CompilationUnit) parser.createAST(null);
 		}
 
+		return processCompilationUnit(filePath, source, root, symbols);
+	}
+
+	@Override
+	public void generate(String baseFolder, List<String> filePaths, final String charset,
+			final IASTRequestor requestor) {
+		String[] sourceFiles = new String[filePaths.size()];
+		String[] encodings = new String[filePaths.size()];
+		final Map<String, String> pending = new HashMap<String, String>();
+		final Map<String, String> failed = new LinkedHashMap<String, String>();
+		final SymbolResolver symbols = new SymbolResolver(symbolTable != null ? symbolTable : new SymbolTable());
+
+		for (int i = 0; i < sourceFiles.length; i++) {
+			sourceFiles[i] = new File(baseFolder, filePaths.get(i)).getAbsolutePath();
+			encodings[i] = charset;
+			pending.put(sourceFiles[i], filePaths.get(i));
+		}
+
+		try {
+			createParser(charset).createASTs(sourceFiles, encodings, new String[0], new FileASTRequestor() {
+				@Override
+				public void acceptAST(String sourceFilePath, CompilationUnit root) {
+					String filePath = pending.remove(sourceFilePath);
+					// a file which cannot be processed must not stop the batch
+					try {
+						requestor.accept(filePath, processCompilationUnit(filePath,
+								readSource(sourceFilePath, charset), root, symbols));
+					} catch (RuntimeException e) {
+						failed.put(sourceFilePath, filePath);
+					}
+				}
+			}, null);
+		} catch (IllegalStateException e) {
+			// the files not parsed yet are parsed below
+			failed.putAll(pending);
+		}
+
+		// one by one, the same way a single file is parsed
+		for (Map.Entry<String, String> file : failed.entrySet()) {
+			requestor.accept(file.getValue(), generate(file.getValue(), readSource(file.getKey(), charset), charset,
+					symbols));
+		}
+	}
+
+	// All the files parsed by the same parser share its environment
+	private ASTParser createParser(String charset) {
+		ASTParser parser = ASTParser.newParser(org.eclipse.jdt.core.dom.AST.JLS8);
+		parser.setResolveBindings(true);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setBindingsRecovery(true);
+
+		String[] classpath = { System.getProperty("java.home").replace("\\", "/") + "/lib/rt.jar" };
+		String[] encoding = new String[sourceFolders.length];
+		Arrays.fill(encoding, charset);
+
+		parser.setEnvironment(classpath, sourceFolders, encoding, true);
+		return parser;
+	}
+
+	private String readSource(String sourceFilePath, String charset) {
+		try {
+			return new String(Files.readAllBytes(new File(sourceFilePath).toPath()), charset);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private AST processCompilationUnit(String filePath, String source, CompilationUnit root,
+			SymbolResolver symbols) {
+		Document document = new Document();
+		document.setName(filePath);
+
 		String packageName = null;
 		if (root.getPackage() != null) {
 			packageName = root.getPackage().getName().getFullyQualifiedName();
@@ -155,7 +254,7 @@ public class JavaParser implements IParser {
 			Object obj = root.types().get(i);
 			if (obj instanceof org.eclipse.jdt.core.dom.TypeDeclaration) {
 				org.eclipse.jdt.core.dom.TypeDeclaration typeAux = (org.eclipse.jdt.core.dom.TypeDeclaration) obj;
-				typesDecls.add(processType(packageName, typeAux));
+				typesDecls.add(processType(packageName, typeAux, source, symbols));
 			}
 		}
 		document.setTypes(typesDecls);
@@ -168,7 +267,7 @@ public class JavaParser implements IParser {
 	}
 
 	private static org.repositoryminer.ast.AbstractClassDeclaration processType(String packageName,
-			org.eclipse.jdt.core.dom.TypeDeclaration type) {
+			org.eclipse.jdt.core.dom.TypeDeclaration type, String source, SymbolResolver symbols) {
 
 		ClassDeclaration clsDecl = new ClassDeclaration();
 
@@ -188,7 +287,7 @@ public class JavaParser implements IParser {
 		}
 
 		clsDecl.setInterface(type.isInterface());
-		clsDecl.setName(type.resolveBinding().getQualifiedName());
+		clsDecl.setName(symbols.intern(type.resolveBinding().getQualifiedName()));
 		if(type.resolveBinding().isGenericType()){
 			clsDecl.setGeneric(true);
 			for(ITypeBinding t : type.resolveBinding().getTypeParameters())
@@ -202,13 +301,13 @@ public class JavaParser implements IParser {
 
 		List<FieldDeclaration> fields = new ArrayList<FieldDeclaration>();
 		for (org.eclipse.jdt.core.dom.FieldDeclaration field : type.getFields()) {
-			fields.add(processField(field));
+			fields.add(processField(field, symbols));
 		}
 		clsDecl.setFields(fields);
 
 		List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
 		for (org.eclipse.jdt.core.dom.MethodDeclaration methodDecl : type.getMethods()) {
-			methods.add(processMethod(methodDecl));
+			methods.add(processMethod(methodDecl, source, symbols));
 		}
 
 		clsDecl.setMethods(methods);
@@ -233,7 +332,8 @@ public class JavaParser implements IParser {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static MethodDeclaration processMethod(org.eclipse.jdt.core.dom.MethodDeclaration methodDecl) {
+	private static MethodDeclaration processMethod(org.eclipse.jdt.core.dom.MethodDeclaration methodDecl,
+			String source, SymbolResolver symbols) {
 		MethodDeclaration m = new MethodDeclaration();
 		m.setConstructor(methodDecl.isConstructor());
 		m.setVarargs(methodDecl.isVarargs());
@@ -266,7 +366,7 @@ public class JavaParser implements IParser {
 
 			
 			params.add(param);
-			builder.append(param.getType() + ",");
+			builder.append(SymbolResolver.getParameterName(varBind.getType()) + ",");
 		}
 
 		if (builder.substring(builder.length() - 1).equals(",")) {
@@ -275,7 +375,7 @@ public class JavaParser implements IParser {
 			builder.append(")");
 		}
 
-		m.setName(builder.toString());
+		m.setName(symbols.intern(builder.toString()));
 		m.setParameters(params);
 
 		List<String> throwsList = new ArrayList<String>();
@@ -288,15 +388,12 @@ public class JavaParser implements IParser {
 		}
 		m.setThrownsExceptions(throwsList);
 
-		List<String> modifiers = new ArrayList<String>();
-		for (Object modifier : methodDecl.modifiers()) {
-			modifiers.add(modifier.toString());
-		}
-		m.setModifiers(modifiers);
+		// the JDT flags have the same values of the Modifier flags
+		m.setModifiers(methodDecl.getModifiers());
 
-		MethodVisitor visitor = new MethodVisitor();
+		MethodVisitor visitor = new MethodVisitor(symbols, source);
 		methodDecl.accept(visitor);
-		m.setStatements(visitor.getStatements());
+		m.setBody(visitor.getBody());
 
 		if (methodDecl.getReturnType2() != null){
 			m.setReturnType(methodDecl.getReturnType2().toString());
@@ -318,12 +415,13 @@ public class JavaParser implements IParser {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static FieldDeclaration processField(org.eclipse.jdt.core.dom.FieldDeclaration field) {
+	private static FieldDeclaration processField(org.eclipse.jdt.core.dom.FieldDeclaration field,
+			SymbolResolver symbols) {
 		FieldDeclaration fieldDecl = new FieldDeclaration();
 
 		ITypeBinding bind = field.getType().resolveBinding();
 		if (bind != null) {
-			fieldDecl.setType(bind.getQualifiedName());
+			fieldDecl.setType(symbols.intern(bind.getQualifiedName()));
 		}
 
 		fieldDecl.setPrimitiveType(bind.isPrimitive());
@@ -342,14 +440,10 @@ public class JavaParser implements IParser {
 		fieldDecl.setGeneric(bind.isGenericType());
 		
 		for (VariableDeclarationFragment vdf : (List<VariableDeclarationFragment>) field.fragments()) {
-			fieldDecl.setName(vdf.getName().getIdentifier());
+			fieldDecl.setName(symbols.intern(vdf.getName().getIdentifier()));
 		}
 
-		List<String> modifiers = new ArrayList<String>();
-		for (Object modifier : field.modifiers()) {
-			modifiers.add(modifier.toString());
-		}
-		fieldDecl.setModifiers(modifiers);
+		fieldDecl.setModifiers(field.getModifiers());
 
 		return fieldDecl;
 	}
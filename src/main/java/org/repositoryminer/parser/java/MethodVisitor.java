@@ -1,8 +1,5 @@
 package org.repositoryminer.parser.java;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.BreakStatement;
@@ -10,13 +7,14 @@ import org.eclipse.jdt.core.dom.CatchClause;
 import org.eclipse.jdt.core.dom.ContinueStatement;
 import org.eclipse.jdt.core.dom.DoStatement;
 import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
-import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
@@ -24,53 +22,92 @@ import org.eclipse.jdt.core.dom.SwitchCase;
 import org.eclipse.jdt.core.dom.SwitchStatement;
 import org.eclipse.jdt.core.dom.ThrowStatement;
 import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.UnionType;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WhileStatement;
-import org.repositoryminer.ast.Statement;
+import org.repositoryminer.ast.MethodBody;
 import org.repositoryminer.ast.Statement.NodeType;
 
+/**
+ * Collects the statements of a method into a {@link MethodBody}. The facts the
+ * metrics need are taken from the nodes: the boolean operators of the
+ * decisions, the exceptions of the catch clauses and the symbols of the
+ * members. The expressions themselves are kept as positions in the source
+ * code, they are never flattened into strings here.
+ */
 public class MethodVisitor extends ASTVisitor {
 
-	private List<Statement> statements = new ArrayList<Statement>();
+	// Counts the boolean operators of an expression, "a && b || c" has two
+	private static class OperatorCounter extends ASTVisitor {
+
+		private int operators;
+
+		@Override
+		public boolean visit(InfixExpression node) {
+			if (node.getOperator() == InfixExpression.Operator.CONDITIONAL_AND
+					|| node.getOperator() == InfixExpression.Operator.CONDITIONAL_OR) {
+				operators += 1 + node.extendedOperands().size();
+			}
+			return true;
+		}
+
+	}
+
+	private SymbolResolver resolver;
+	private MethodBody body;
+	private OperatorCounter counter = new OperatorCounter();
 	private int nesting = 0;
 
+	/**
+	 * @param source
+	 *            the source code of the file, which the positions of the
+	 *            expressions refer to.
+	 */
+	MethodVisitor(SymbolResolver resolver, String source) {
+		this.resolver = resolver;
+		this.body = new MethodBody(resolver.getSymbolTable(), source);
+	}
+
 	@Override
 	public boolean visit(BreakStatement node) {
-		return addStatement(NodeType.BREAK, null, node.getNodeType());
+		return addStatement(NodeType.BREAK, node);
 	}
 
 	@Override
 	public boolean visit(CatchClause node) {
-		return addStatement(NodeType.CATCH, node.getException().getName().getFullyQualifiedName(), node.getNodeType());
+		Type type = node.getException().getType();
+		int exceptions = type.isUnionType() ? ((UnionType) type).types().size() : 1;
+		return addExpression(NodeType.CATCH, node, exceptions, node.getException().getName());
 	}
 
 	@Override
 	public boolean visit(ContinueStatement node) {
-		return addStatement(NodeType.CONTINUE, null, node.getNodeType());
+		return addStatement(NodeType.CONTINUE, node);
 	}
 
 	@Override
 	public boolean visit(DoStatement node) {
-		return addStatement(NodeType.DO_WHILE, node.getExpression().toString(), node.getNodeType());
+		return addDecision(NodeType.DO_WHILE, node, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(EnhancedForStatement node) {
-		return addStatement(NodeType.FOR, node.getExpression().toString(), node.getNodeType());
+		return addDecision(NodeType.FOR, node, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(ForStatement node) {
-		String expression = node.getExpression() != null ? node.getExpression().toString() : "";
-		return addStatement(NodeType.FOR, expression, node.getNodeType());
+		return addDecision(NodeType.FOR, node, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(IfStatement node) {
-		addStatement(NodeType.IF, node.getExpression().toString(), node.getNodeType());
+		addDecision(NodeType.IF, node, node.getExpression());
 		if (node.getElseStatement() != null) {
-			addStatement(NodeType.ELSE, null, -1);
+			body.addExpression(NodeType.ELSE, nesting - 1, 0, -1, 0);
 		}
 
 		return true;
@@ -78,46 +115,46 @@ public class MethodVisitor extends ASTVisitor {
 
 	@Override
 	public boolean visit(ReturnStatement node) {
-		return addStatement(NodeType.RETURN, null, node.getNodeType());
+		return addStatement(NodeType.RETURN, node);
 	}
 
 	@Override
 	public boolean visit(SwitchStatement node) {
-		return addStatement(NodeType.SWITCH, node.getExpression().toString(), node.getNodeType());
+		return addExpression(NodeType.SWITCH, node, 0, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(SwitchCase node) {
 		if (node.isDefault()) {
-			return addStatement(NodeType.SWITCH_DEFAULT, null, node.getNodeType());
+			return addStatement(NodeType.SWITCH_DEFAULT, node);
 		}
 		else {
-			return addStatement(NodeType.SWITCH_CASE, node.getExpression().toString(), node.getNodeType());
+			return addExpression(NodeType.SWITCH_CASE, node, 0, node.getExpression());
 		}
 	}
 
 	@Override
 	public boolean visit(ThrowStatement node) {
-		return addStatement(NodeType.THROW, node.getExpression().toString(), node.getNodeType());
+		return addExpression(NodeType.THROW, node, 0, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(TryStatement node) {
-		addStatement(NodeType.TRY, null, node.getNodeType());
+		addStatement(NodeType.TRY, node);
 		if (node.getFinally() != null)
-			addStatement(NodeType.FINALLY, null, -1);
+			body.addExpression(NodeType.FINALLY, nesting - 1, 0, -1, 0);
 		return true;
 	}
 
 	@Override
 	public boolean visit(WhileStatement node) {
-		return addStatement(NodeType.WHILE, node.getExpression().toString(), node.getNodeType());
+		return addDecision(NodeType.WHILE, node, node.getExpression());
 	}
 
 	@Override
 	public boolean visit(ExpressionStatement node) {
 		if (node.getNodeType() == ASTNode.CONDITIONAL_EXPRESSION)
-			return addStatement(NodeType.CONDITIONAL_EXPRESSION, node.getExpression().toString(), node.getNodeType());
+			return addDecision(NodeType.CONDITIONAL_EXPRESSION, node, node.getExpression());
 		return true;
 	}
 
@@ -125,27 +162,8 @@ public class MethodVisitor extends ASTVisitor {
 	public boolean visit(MethodInvocation node) {
 		IMethodBinding methodBind = node.resolveMethodBinding();
 		if (methodBind != null) {
-			ITypeBinding typeBind = methodBind.getDeclaringClass();
-
-			StringBuilder methodSignature = new StringBuilder(methodBind.getName());
-			methodSignature.append("(");
-
-			for (ITypeBinding tbind : methodBind.getParameterTypes()) {
-				if (tbind.getDeclaringClass() != null) {
-				methodSignature.append(tbind.getDeclaringClass().getQualifiedName()).append(",");
-				} else {
-					methodSignature.append(tbind.getQualifiedName()).append(",");
-				}
-			}
-
-			if (methodSignature.substring(methodSignature.length() - 1).equals(",")) {
-				methodSignature.replace(methodSignature.length() - 1, methodSignature.length(), ")");
-			} else {
-				methodSignature.append(")");
-			}
-
-			String expression = typeBind.getQualifiedName() + "." + methodSignature.toString();
-			return addStatement(NodeType.METHOD_INVOCATION, expression, node.getNodeType());
+			body.addMember(NodeType.METHOD_INVOCATION, nesting, resolver.getTypeId(methodBind.getDeclaringClass()),
+					resolver.getMethodId(methodBind));
 		}
 		return true;
 	}
@@ -154,7 +172,7 @@ public class MethodVisitor extends ASTVisitor {
 	public boolean visit(VariableDeclarationExpression node) {
 		String type = node.getType().toString();
 		for (Object f : node.fragments()) {
-			addStatement(NodeType.VARIABLE_DECLARATION, type + " " + f.toString(), node.getNodeType());
+			addVariable(type, (VariableDeclarationFragment) f);
 		}
 
 		return true;
@@ -164,7 +182,7 @@ public class MethodVisitor extends ASTVisitor {
 	public boolean visit(VariableDeclarationStatement node) {
 		String type = node.getType().toString();
 		for (Object f : node.fragments()) {
-			addStatement(NodeType.VARIABLE_DECLARATION, type + " " + f.toString(), node.getNodeType());
+			addVariable(type, (VariableDeclarationFragment) f);
 		}
 
 		return true;
@@ -177,15 +195,15 @@ public class MethodVisitor extends ASTVisitor {
 			if (bind.getKind() == IBinding.VARIABLE) {
 				IVariableBinding variableBind = (IVariableBinding) bind;
 				if (variableBind.isField()) {
-					String expression = null;
+					int owner;
 					
 					if (variableBind.getDeclaringClass() != null) {
-						expression = variableBind.getDeclaringClass().getQualifiedName() + "." + variableBind.getName();
+						owner = resolver.getTypeId(variableBind.getDeclaringClass());
 					} else {
-						expression = variableBind.getType().getQualifiedName() + "." + variableBind.getName();
+						owner = resolver.getTypeId(variableBind.getType());
 					}
 					
-					return addStatement(NodeType.FIELD_ACCESS, expression, node.getNodeType());
+					body.addMember(NodeType.FIELD_ACCESS, nesting, owner, resolver.getId(variableBind.getName()));
 				}
 			}
 		}
@@ -197,27 +215,45 @@ public class MethodVisitor extends ASTVisitor {
 		updateNestingLevel(node.getNodeType(), -1);
 	}
 
-	public List<Statement> getStatements() {
-		return statements;
+	public MethodBody getBody() {
+		body.trim();
+		return body;
+	}
+
+	// A declaration is told apart by its type, name and position, so neither
+	// its initializer nor the way it is written are kept
+	private void addVariable(String type, VariableDeclarationFragment fragment) {
+		body.addDeclaration(NodeType.VARIABLE_DECLARATION, nesting,
+				resolver.getId(type + " " + fragment.getName().getIdentifier()), fragment.getStartPosition());
+	}
+
+	private boolean addDecision(NodeType type, ASTNode node, Expression expression) {
+		int operators = 0;
+		if (expression != null) {
+			counter.operators = 0;
+			expression.accept(counter);
+			operators = counter.operators;
+		}
+		return addExpression(type, node, operators + 1, expression);
+	}
+
+	private boolean addStatement(NodeType type, ASTNode node) {
+		return addExpression(type, node, 0, null);
 	}
 
-	private boolean addStatement(NodeType type, String expression, int nodeType) {
-		Statement stmt = new Statement();
-		stmt.setNodeType(type);
-		stmt.setExpression(expression);
-		statements.add(stmt);
+	private boolean addExpression(NodeType type, ASTNode node, int conditions, ASTNode expression) {
+		int start = expression != null ? expression.getStartPosition() : -1;
+		int length = expression != null ? expression.getLength() : 0;
 
 		switch (type) {
-		case ELSE:
-		case FINALLY:
 		case CATCH:
 		case SWITCH_CASE:
 		case SWITCH_DEFAULT:
-			stmt.setNesting(nesting - 1);
+			body.addExpression(type, nesting - 1, conditions, start, length);
 			break;
 		default:
-			stmt.setNesting(nesting);
-			updateNestingLevel(nodeType, 1);
+			body.addExpression(type, nesting, conditions, start, length);
+			updateNestingLevel(node.getNodeType(), 1);
 			break;
 		}
 
@@ -0,0 +1,94 @@
+package org.repositoryminer.parser.java;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.repositoryminer.ast.SymbolTable;
+
+/**
+ * Turns the bindings found while a batch of files is parsed into symbols. The
+ * bindings of a batch are shared by all its files, so the qualified names and
+ * signatures are built once per binding instead of once per reference.
+ * <p>
+ * A resolver is used by a single thread, for a single batch.
+ */
+class SymbolResolver {
+
+	private SymbolTable symbolTable;
+	private Map<ITypeBinding, Integer> types = new HashMap<ITypeBinding, Integer>();
+	private Map<IMethodBinding, Integer> methods = new HashMap<IMethodBinding, Integer>();
+
+	public SymbolResolver(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	public int getId(String name) {
+		return symbolTable.getId(name);
+	}
+
+	public String intern(String name) {
+		return symbolTable.intern(name);
+	}
+
+	/**
+	 * @return the id of the qualified name of the type.
+	 */
+	public int getTypeId(ITypeBinding type) {
+		Integer id = types.get(type);
+		if (id == null) {
+			id = symbolTable.getId(type.getQualifiedName());
+			types.put(type, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return the id of the signature of the method as it is declared, its
+	 *         name followed by the parameter types, see
+	 *         {@link #getParameterName(ITypeBinding)}.
+	 */
+	public int getMethodId(IMethodBinding method) {
+		Integer id = methods.get(method);
+		if (id == null) {
+			StringBuilder signature = new StringBuilder(method.getName());
+			signature.append("(");
+
+			ITypeBinding[] parameterTypes = method.getMethodDeclaration().getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (i > 0) {
+					signature.append(",");
+				}
+				signature.append(getParameterName(parameterTypes[i]));
+			}
+
+			id = symbolTable.getId(signature.append(")").toString());
+			methods.put(method, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return the qualified name of the erasure of a parameter type, followed
+	 *         by the dimensions if it is an array. The declarations and the
+	 *         invocations build their signatures with it, so an invocation
+	 *         matches the method it calls whatever the type arguments are.
+	 */
+	public static String getParameterName(ITypeBinding type) {
+		if (!type.isArray()) {
+			return type.getErasure().getQualifiedName();
+		}
+
+		StringBuilder name = new StringBuilder(type.getElementType().getErasure().getQualifiedName());
+		for (int i = 0; i < type.getDimensions(); i++) {
+			name.append("[]");
+		}
+		return name.toString();
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.repositoryminer.persistence.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bson.Document;
+import org.repositoryminer.persistence.Connection;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+public class AnalysisCacheDocumentHandler extends DocumentHandler {
+
+	private static final String COLLECTION_NAME = "rm_analysis_cache";
+
+	public AnalysisCacheDocumentHandler() {
+		super.collection = Connection.getInstance().getCollection(COLLECTION_NAME);
+	}
+
+	public Document findByKey(String key) {
+		return findOne(new Document("_id", key));
+	}
+
+	// Another run may have saved the same analyses, so they are replaced
+	public void saveMany(Map<String, Document> analyses) {
+		List<WriteModel<Document>> requests = new ArrayList<WriteModel<Document>>(analyses.size());
+		for (Entry<String, Document> entry : analyses.entrySet()) {
+			Document doc = new Document(entry.getValue()).append("_id", entry.getKey());
+			requests.add(new ReplaceOneModel<Document>(new Document("_id", entry.getKey()), doc,
+					new UpdateOptions().upsert(true)));
+		}
+		collection.bulkWrite(requests, new BulkWriteOptions().ordered(false));
+	}
+
+}
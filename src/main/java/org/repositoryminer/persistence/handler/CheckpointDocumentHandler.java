@@ -0,0 +1,66 @@
+package org.repositoryminer.persistence.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.repositoryminer.persistence.Connection;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * The cursors of the mining stages, one small document per commit, so a
+ * cursor grows with no limit of document size and a commit leaves it with a
+ * single delete by id.
+ */
+public class CheckpointDocumentHandler extends DocumentHandler {
+
+	private static final String COLLECTION_NAME = "rm_checkpoints";
+
+	public CheckpointDocumentHandler() {
+		super.collection = Connection.getInstance().getCollection(COLLECTION_NAME);
+	}
+
+	/**
+	 * Creates the index used to find the cursor of a stage, if it does not
+	 * exist.
+	 */
+	public void createIndexes() {
+		collection.createIndex(new Document("repository", 1).append("stage", 1));
+	}
+
+	// A commit added twice keeps a single document
+	public void addMany(String repositoryId, String stage, List<String> commits) {
+		List<WriteModel<Document>> requests = new ArrayList<WriteModel<Document>>(commits.size());
+		for (String commit : commits) {
+			String id = createId(repositoryId, stage, commit);
+			Document doc = new Document("_id", id).append("repository", new ObjectId(repositoryId))
+					.append("stage", stage).append("commit", commit);
+			requests.add(new ReplaceOneModel<Document>(new Document("_id", id), doc, new UpdateOptions().upsert(true)));
+		}
+		collection.bulkWrite(requests, new BulkWriteOptions().ordered(false));
+	}
+
+	public void remove(String repositoryId, String stage, String commit) {
+		deleteOne(new Document("_id", createId(repositoryId, stage, commit)));
+	}
+
+	public List<String> findCommits(String repositoryId, String stage) {
+		Document where = new Document("repository", new ObjectId(repositoryId)).append("stage", stage);
+		List<String> commits = new ArrayList<String>();
+		for (Document doc : findMany(where, Projections.include("commit"))) {
+			commits.add(doc.getString("commit"));
+		}
+		return commits;
+	}
+
+	private String createId(String repositoryId, String stage, String commit) {
+		return repositoryId + ";" + stage + ";" + commit;
+	}
+
+}
@@ -1,7 +1,11 @@
 package org.repositoryminer.persistence.handler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.repositoryminer.persistence.Connection;
 
 import com.mongodb.BasicDBObject;
@@ -29,5 +33,12 @@ public class DirectCodeAnalysisDocumentHandler extends DocumentHandler {
 		Bson clause2 = new BasicDBObject("commit", commit);
 		return findOne(Filters.and(clause1, clause2), projection);
 	}
-	
+
+	public void deleteByCommits(String repositoryId, List<String> commits) {
+		List<BasicDBObject> where = new ArrayList<BasicDBObject>(2);
+		where.add(new BasicDBObject("repository", new ObjectId(repositoryId)));
+		where.add(new BasicDBObject("commit", new BasicDBObject("$in", commits)));
+		deleteMany(new BasicDBObject("$and", where));
+	}
+
 }
\ No newline at end of file
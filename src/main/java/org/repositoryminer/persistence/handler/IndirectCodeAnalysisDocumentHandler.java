@@ -44,5 +44,12 @@ public class IndirectCodeAnalysisDocumentHandler extends DocumentHandler {
 		Document newDoc = new Document("$set", new Document("reference_name", name).append("reference_type", type.toString()));
 		collection.updateOne(clause, newDoc);
 	}
-	
+
+	public void deleteByCommits(String repositoryId, List<String> commits) {
+		List<BasicDBObject> where = new ArrayList<BasicDBObject>(2);
+		where.add(new BasicDBObject("repository", new ObjectId(repositoryId)));
+		where.add(new BasicDBObject("commit", new BasicDBObject("$in", commits)));
+		deleteMany(new BasicDBObject("$and", where));
+	}
+
 }
\ No newline at end of file
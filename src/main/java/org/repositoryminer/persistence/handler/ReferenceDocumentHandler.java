@@ -44,5 +44,11 @@ public class ReferenceDocumentHandler extends DocumentHandler {
 		Document newDoc = new Document("$set", new Document("commits", commits));
 		collection.updateOne(clause, newDoc);
 	}
+
+	public void updateCompleteness(String id, Document completeness) {
+		Document clause = new Document("_id", new ObjectId(id));
+		Document newDoc = new Document("$set", new Document("completeness", completeness));
+		collection.updateOne(clause, newDoc);
+	}
 	
 }
\ No newline at end of file
@@ -41,5 +41,11 @@ public class RepositoryDocumentHandler extends DocumentHandler {
 		Document newDoc = new Document("$set", new Document("contributors", contributors));
 		collection.updateOne(clause, newDoc);
 	}
+
+	public void addContributors(String id, List<Document> contributors) {
+		Document clause = new Document("_id", new ObjectId(id));
+		Document newDoc = new Document("$push", new Document("contributors", new Document("$each", contributors)));
+		collection.updateOne(clause, newDoc);
+	}
 	
 }
\ No newline at end of file
@@ -1,7 +1,14 @@
 package org.repositoryminer.persistence.handler;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.repositoryminer.persistence.Connection;
 
 import com.mongodb.BasicDBObject;
@@ -21,5 +28,82 @@ public class WorkingDirectoryDocumentHandler extends DocumentHandler{
 		
 		return findOne(whereClause, projection);
 	}
+
+	public List<Document> findByRepository(String repositoryId, Bson projection) {
+		BasicDBObject whereClause = new BasicDBObject();
+		whereClause.put("repository", new ObjectId(repositoryId));
+		return findMany(whereClause, projection);
+	}
+
+	/**
+	 * Creates the index used to find the deltas of a keyframe, if it does not
+	 * exist.
+	 */
+	public void createIndexes() {
+		collection.createIndex(new Document("keyframe", 1));
+	}
+
+	/**
+	 * Rebuilds the working directory of a commit. A working directory is saved
+	 * either as a keyframe, with all its files, or as a delta with the files
+	 * added, removed and renamed since the previous one, which leads back to
+	 * a keyframe.
+	 * 
+	 * @return the files of the working directory, each one with the commit
+	 *         which last added it, or null if the commit has no working
+	 *         directory.
+	 */
+	public Map<String, String> findFiles(String commitId) {
+		Document doc = findById(commitId, null);
+		if (doc == null) {
+			return null;
+		} else if (doc.get("files") != null) {
+			return getFiles(doc);
+		}
+
+		// all the deltas of the keyframe are fetched at once, those of other
+		// commits are not in the way back
+		Map<String, Document> deltas = new HashMap<String, Document>();
+		for (Document delta : findMany(new BasicDBObject("keyframe", doc.getString("keyframe")))) {
+			deltas.put(delta.getString("_id"), delta);
+		}
+
+		Deque<Document> path = new ArrayDeque<Document>();
+		for (Document delta = doc; delta != null; delta = deltas.get(delta.getString("previous"))) {
+			path.push(delta);
+		}
+
+		Map<String, String> files = getFiles(findById(doc.getString("keyframe"), null));
+		while (!path.isEmpty()) {
+			applyDelta(path.pop(), files);
+		}
+		return files;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, String> getFiles(Document keyframe) {
+		Map<String, String> files = new HashMap<String, String>();
+		for (Document d : (List<Document>) keyframe.get("files")) {
+			files.put(d.getString("file"), d.getString("checkout"));
+		}
+		return files;
+	}
+
+	// The files added or renamed by a delta were last added by its commit
+	@SuppressWarnings("unchecked")
+	private void applyDelta(Document delta, Map<String, String> files) {
+		String commit = delta.getString("_id");
+
+		for (String file : (List<String>) delta.get("removed")) {
+			files.remove(file);
+		}
+		for (Document rename : (List<Document>) delta.get("renamed")) {
+			files.remove(rename.getString("old_file"));
+			files.put(rename.getString("file"), commit);
+		}
+		for (String file : (List<String>) delta.get("added")) {
+			files.put(file, commit);
+		}
+	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package org.repositoryminer.scm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.repositoryminer.model.Diff;
+import org.repositoryminer.utility.StringUtils;
+
+/**
+ * Extracts the changes made in a commit with a single tree scan. The lines
+ * added and removed are counted straight from the edit list of each changed
+ * file, no textual patch is rendered.
+ * <p>
+ * Files bigger than the size limit are not diffed line by line. Their lines are
+ * just counted, so all the lines of the new version are taken as added and all
+ * the lines of the old version as removed.
+ * <p>
+ * Instances are not thread safe, each one holds its own object reader.
+ */
+class GitDiffExtractor implements AutoCloseable {
+
+	// Same amount of bytes used by git to decide if a file is binary
+	private static final int BINARY_CHECK_LENGTH = 8000;
+
+	private ObjectReader reader;
+	private DiffFormatter diffFormatter;
+	private int sizeLimit;
+
+	public GitDiffExtractor(Repository repository, int sizeLimit) {
+		this.sizeLimit = sizeLimit;
+
+		reader = repository.newObjectReader();
+
+		diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+		diffFormatter.setRepository(repository);
+		diffFormatter.setContext(0);
+		diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+		diffFormatter.setDetectRenames(true);
+		diffFormatter.setBinaryFileThreshold(sizeLimit);
+	}
+
+	/**
+	 * @param parent
+	 *            the parent commit or null for a root commit.
+	 * @param commit
+	 *            the commit.
+	 * @return the changes made in the commit against the parent.
+	 * @throws IOException
+	 */
+	public List<Diff> extract(AnyObjectId parent, AnyObjectId commit) throws IOException {
+		List<DiffEntry> entries = diffFormatter.scan(parent, commit);
+		List<Diff> diffs = new ArrayList<Diff>(entries.size());
+
+		for (DiffEntry entry : entries) {
+			Diff diff = processDiff(entry);
+			if (diff == null) {
+				continue;
+			}
+
+			countLines(entry, diff);
+			diffs.add(diff);
+		}
+
+		return diffs;
+	}
+
+	@Override
+	public void close() {
+		diffFormatter.close();
+		reader.close();
+	}
+
+	private Diff processDiff(DiffEntry entry) {
+		switch (entry.getChangeType()) {
+		case ADD:
+			return new Diff(entry.getNewPath(), null, StringUtils.encodeToCRC32(entry.getNewPath()), DiffType.ADD);
+
+		case COPY:
+			return new Diff(entry.getNewPath(), entry.getOldPath(), StringUtils.encodeToCRC32(entry.getNewPath()),
+					DiffType.COPY);
+
+		case DELETE:
+			return new Diff(entry.getOldPath(), null, StringUtils.encodeToCRC32(entry.getOldPath()), DiffType.DELETE);
+
+		case MODIFY:
+			return new Diff(entry.getNewPath(), null, StringUtils.encodeToCRC32(entry.getNewPath()), DiffType.MODIFY);
+
+		case RENAME:
+			return new Diff(entry.getNewPath(), entry.getOldPath(), StringUtils.encodeToCRC32(entry.getNewPath()),
+					DiffType.RENAME);
+
+		default:
+			return null;
+		}
+	}
+
+	private void countLines(DiffEntry entry, Diff diff) throws IOException {
+		long oldSize = getBlobSize(entry.getOldMode(), entry.getOldId());
+		long newSize = getBlobSize(entry.getNewMode(), entry.getNewId());
+
+		if (oldSize > sizeLimit || newSize > sizeLimit) {
+			diff.setLinesRemoved(countBlobLines(entry.getOldMode(), entry.getOldId()));
+			diff.setLinesAdded(countBlobLines(entry.getNewMode(), entry.getNewId()));
+			return;
+		}
+
+		int added = 0, removed = 0;
+		for (Edit edit : diffFormatter.toFileHeader(entry).toEditList()) {
+			added += edit.getLengthB();
+			removed += edit.getLengthA();
+		}
+
+		diff.setLinesAdded(added);
+		diff.setLinesRemoved(removed);
+	}
+
+	private long getBlobSize(FileMode mode, AbbreviatedObjectId id) throws IOException {
+		if (mode.getObjectType() != Constants.OBJ_BLOB) {
+			return 0;
+		}
+		return reader.getObjectSize(id.toObjectId(), Constants.OBJ_BLOB);
+	}
+
+	// Counts the lines of a blob streaming its content. Binary blobs have no
+	// lines, the same way they have no edits.
+	private int countBlobLines(FileMode mode, AbbreviatedObjectId id) throws IOException {
+		if (mode.getObjectType() != Constants.OBJ_BLOB) {
+			return 0;
+		}
+
+		byte[] buffer = new byte[BINARY_CHECK_LENGTH];
+		int lines = 0;
+		long read = 0;
+		byte last = '\n';
+
+		try (InputStream in = reader.open(id.toObjectId(), Constants.OBJ_BLOB).openStream()) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				for (int i = 0; i < n; i++) {
+					if (buffer[i] == '\n') {
+						lines++;
+					} else if (buffer[i] == '\0' && read + i < BINARY_CHECK_LENGTH) {
+						return 0;
+					}
+				}
+
+				read += n;
+				last = buffer[n - 1];
+			}
+		}
+
+		// the last line may not end with a line break
+		return last != '\n' ? lines + 1 : lines;
+	}
+
+}
@@ -1,42 +1,48 @@
 package org.repositoryminer.scm;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.RawTextComparator;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.NoWorkTreeException;
-import org.eclipse.jgit.errors.RevisionSyntaxException;
-import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.repositoryminer.exceptions.ErrorMessage;
 import org.repositoryminer.exceptions.VisMinerAPIException;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Contributor;
 import org.repositoryminer.model.Diff;
 import org.repositoryminer.model.Reference;
-import org.repositoryminer.utility.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,19 +51,159 @@ import org.slf4j.LoggerFactory;
  */
 public class GitSCM implements ISCM {
 
-	private class LinesInfo {
-		public int added = 0, removed = 0;
+	private static class ResolvedReference {
+
+		String name, path;
+		ReferenceType type;
+		ObjectId commit;
+
+		public ResolvedReference(String path, ReferenceType type, ObjectId commit) {
+			this.name = path.substring(path.lastIndexOf("/") + 1);
+			this.path = path;
+			this.type = type;
+			this.commit = commit;
+		}
+
+	}
+
+	// A commit taken from the walk whose changes may still be in extraction
+	private class PendingCommit {
+
+		Commit commit;
+		Callable<List<Diff>> diffsTask;
+		Future<List<Diff>> diffs;
+
+		public PendingCommit(Commit commit, Callable<List<Diff>> diffsTask, Future<List<Diff>> diffs) {
+			this.commit = commit;
+			this.diffsTask = diffsTask;
+			this.diffs = diffs;
+		}
+
+		public Commit get() {
+			try {
+				commit.setDiffs(diffs != null ? diffs.get() : diffsTask.call());
+			} catch (ExecutionException e) {
+				errorHandler(ErrorMessage.GIT_RETRIEVE_CHANGES_ERROR.toString(), e.getCause());
+			} catch (Exception e) {
+				errorHandler(ErrorMessage.GIT_RETRIEVE_CHANGES_ERROR.toString(), e);
+			}
+			return commit;
+		}
+
+	}
+
+	// Walks the history of a reference a single time, or parses the given
+	// commits, building the commits on demand. The walk is released as soon as
+	// it is exhausted. In parallel mode the changes of the next commits are
+	// extracted ahead by the workers, but the commits are always returned in
+	// the walk order.
+	private class CommitIterator implements Iterator<Commit> {
+
+		private RevWalk walk;
+		private Collection<String> commitsToSkip;
+		private Iterator<String> commitIds;
+		private Deque<PendingCommit> pending = new ArrayDeque<PendingCommit>();
+
+		public CommitIterator(RevWalk walk, Collection<String> commitsToSkip) {
+			this.walk = walk;
+			this.commitsToSkip = commitsToSkip;
+		}
+
+		public CommitIterator(RevWalk walk, Iterator<String> commitIds) {
+			this.walk = walk;
+			this.commitIds = commitIds;
+		}
+
+		@Override
+		public boolean hasNext() {
+			fill();
+			return !pending.isEmpty();
+		}
+
+		@Override
+		public Commit next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return pending.poll().get();
+		}
+
+		private void fill() {
+			int window = workers != null ? extractionThreads * COMMITS_PER_WORKER : 1;
+
+			while (walk != null && pending.size() < window) {
+				RevCommit revCommit = advance();
+				if (revCommit == null) {
+					walk.close();
+					walk = null;
+					break;
+				}
+
+				final ObjectId commitId = revCommit.copy();
+				final ObjectId parentId = revCommit.getParentCount() > 0 ? revCommit.getParent(0).copy() : null;
+
+				Callable<List<Diff>> task = new Callable<List<Diff>>() {
+					@Override
+					public List<Diff> call() throws Exception {
+						return diffExtractors.get().extract(parentId, commitId);
+					}
+				};
+
+				Future<List<Diff>> diffs = workers != null ? workers.submit(task) : null;
+				pending.add(new PendingCommit(processCommit(revCommit), task, diffs));
+			}
+		}
+
+		private RevCommit advance() {
+			try {
+				if (commitIds != null) {
+					return commitIds.hasNext() ? walk.parseCommit(ObjectId.fromString(commitIds.next())) : null;
+				}
+
+				RevCommit revCommit;
+				while ((revCommit = walk.next()) != null) {
+					if (commitsToSkip == null || !commitsToSkip.contains(revCommit.getName())) {
+						return revCommit;
+					}
+				}
+			} catch (IOException e) {
+				walk.close();
+				walk = null;
+				errorHandler(ErrorMessage.GIT_LOG_COMMIT_ERROR.toString(), e);
+			}
+
+			return null;
+		}
+
 	}
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GitSCM.class);
 
+	public static final int DEFAULT_DIFF_SIZE_LIMIT = 1024 * 1024;
+
+	// How many commits each worker may have queued ahead of the consumer
+	private static final int COMMITS_PER_WORKER = 16;
+
 	private Repository repository;
 	private Git git;
-	private RevWalk revWalk;
-	private TreeWalk treeWalk;
-	private DiffFormatter diffFormatter;
 	private String repoPath;
 
+	// Each thread extracting changes has its own extractor, so every one
+	// reads the object database with its own reader
+	private ThreadLocal<GitDiffExtractor> diffExtractors;
+	private List<GitDiffExtractor> openedExtractors;
+
+	private int extractionThreads = 1;
+	private ExecutorService workers;
+
+	// The references resolved in this session, the path is used as key
+	private Map<String, ResolvedReference> resolvedReferences;
+
+	// Files bigger than this (in bytes) have their lines counted instead of
+	// being diffed line by line
+	private int diffSizeLimit = DEFAULT_DIFF_SIZE_LIMIT;
+
 	@Override
 	public void open(String repositoryPath) {
 		FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder();
@@ -74,85 +220,66 @@ public class GitSCM implements ISCM {
 		}
 
 		git = new Git(repository);
-		revWalk = new RevWalk(repository);
-		treeWalk = new TreeWalk(repository);
 		repoPath = repositoryPath;
 
-		diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-		diffFormatter.setRepository(repository);
-		diffFormatter.setContext(0);
-		diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
-		diffFormatter.setDetectRenames(true);
-		diffFormatter.setBinaryFileThreshold(2048);
-	}
-
-	@Override
-	public List<Reference> getReferences() {
-		List<Reference> refs = new ArrayList<Reference>();
+		openedExtractors = Collections.synchronizedList(new ArrayList<GitDiffExtractor>());
+		diffExtractors = new ThreadLocal<GitDiffExtractor>() {
+			@Override
+			protected GitDiffExtractor initialValue() {
+				GitDiffExtractor extractor = new GitDiffExtractor(repository, diffSizeLimit);
+				openedExtractors.add(extractor);
+				return extractor;
+			}
+		};
 
-		Iterable<Ref> branches = null;
-		try {
-			branches = git.branchList().call();
-		} catch (GitAPIException e) {
-			errorHandler(ErrorMessage.GIT_BRANCH_LIST_ERROR.toString(), e);
+		if (extractionThreads > 1) {
+			workers = Executors.newFixedThreadPool(extractionThreads);
 		}
+	}
 
-		for (Ref b : branches) {
-			if (b.getName().equals("HEAD"))
-				continue;
+	@Override
+	public void setExtractionThreads(int threads) {
+		this.extractionThreads = Math.max(threads, 1);
+	}
 
-			int i = b.getName().lastIndexOf("/") + 1;
-			Reference r = new Reference(null, null, b.getName().substring(i), b.getName(), ReferenceType.BRANCH, null);
-			refs.add(r);
-		}
+	/**
+	 * @param diffSizeLimit
+	 *            size in bytes above which a changed file is not diffed line by
+	 *            line, its lines are just counted. Must be set before
+	 *            {@link #open(String)}.
+	 */
+	public void setDiffSizeLimit(int diffSizeLimit) {
+		this.diffSizeLimit = diffSizeLimit;
+	}
 
-		Iterable<Ref> tags = null;
-		try {
-			tags = git.tagList().call();
-		} catch (GitAPIException e) {
-			errorHandler(ErrorMessage.GIT_TAG_LIST_ERROR.toString(), e);
-		}
+	@Override
+	public List<Reference> getReferences() {
+		loadReferences();
 
-		for (Ref t : tags) {
-			int i = t.getName().lastIndexOf("/") + 1;
-			Reference r = new Reference(null, null, t.getName().substring(i), t.getName(), ReferenceType.TAG, null);
-			refs.add(r);
+		List<Reference> refs = new ArrayList<Reference>(resolvedReferences.size());
+		for (ResolvedReference r : resolvedReferences.values()) {
+			refs.add(new Reference(null, null, r.name, r.path, r.type, null));
 		}
 
 		return refs;
 	}
 
 	@Override
-	public List<Commit> getCommits(int skip, int maxCount, Reference reference, Collection<String> commitsToSkip) {
-		Iterable<RevCommit> revCommits = null;
-
-		if (reference.getType() == ReferenceType.BRANCH) {
-			revCommits = getCommitsFromBranch(reference.getPath(), skip, maxCount);
-		} else {
-			revCommits = getCommitsFromTag(reference.getPath(), skip, maxCount);
-		}
-
-		if (revCommits == null) {
-			return new ArrayList<Commit>();
+	public Iterator<Commit> getCommits(Reference reference, Collection<String> commitsToSkip) {
+		RevWalk walk = startWalk(reference.getPath(), true);
+		if (walk == null) {
+			return Collections.<Commit> emptyIterator();
 		}
 
-		List<Commit> commits = new ArrayList<Commit>();
-
-		if (commitsToSkip == null || commitsToSkip.size() == 0) {
-			for (RevCommit revCommit : revCommits) {
-				commits.add(processCommit(revCommit));
-			}
-		} else {
-			for (RevCommit revCommit : revCommits) {
-				if (!commitsToSkip.contains(revCommit.getName())) {
-					commits.add(processCommit(revCommit));
-				}
-			}
-		}
+		return new CommitIterator(walk, commitsToSkip);
+	}
 
-		return commits;
+	@Override
+	public Iterator<Commit> getCommits(List<String> commits) {
+		return new CommitIterator(new RevWalk(repository), commits.iterator());
 	}
 
+	// Builds the commit without its changes, they are extracted apart
 	private Commit processCommit(RevCommit revCommit) {
 		PersonIdent author = revCommit.getAuthorIdent();
 		PersonIdent committer = revCommit.getCommitterIdent();
@@ -165,33 +292,25 @@ public class GitSCM implements ISCM {
 		for (RevCommit parent : revCommit.getParents())
 			parents.add(parent.getName());
 
-		List<Diff> diffs = null;
-		try {
-			diffs = getDiffsForCommitedFiles(revCommit.getName());
-		} catch (IOException e) {
-			errorHandler(ErrorMessage.GIT_RETRIEVE_CHANGES_ERROR.toString(), e);
-		}
-
 		return new Commit(revCommit.getName(), revCommit.getFullMessage(), author.getWhen(), committer.getWhen(), null,
-				parents, myAuthor, myCommitter, diffs);
+				parents, myAuthor, myCommitter, null);
 	}
 
 	@Override
 	public List<String> getReferenceCommits(String name, ReferenceType type) {
-		Iterable<RevCommit> revCommits;
-		if (type == ReferenceType.BRANCH) {
-			revCommits = getCommitsFromBranch(name, -1, -1);
-		} else {
-			revCommits = getCommitsFromTag(name, -1, -1);
-		}
+		List<String> names = new ArrayList<String>();
 
-		if (revCommits == null) {
-			return new ArrayList<String>();
+		RevWalk walk = startWalk(name, false);
+		if (walk == null) {
+			return names;
 		}
 
-		List<String> names = new ArrayList<String>();
-		for (RevCommit revCommit : revCommits) {
-			names.add(revCommit.getName());
+		try {
+			for (RevCommit revCommit : walk) {
+				names.add(revCommit.getName());
+			}
+		} finally {
+			walk.close();
 		}
 
 		return names;
@@ -206,11 +325,71 @@ public class GitSCM implements ISCM {
 		makeCheckout(hash);
 	}
 
+	@Override
+	public byte[] getData(String commit, String filePath) {
+		try (ObjectReader reader = repository.newObjectReader()) {
+			ObjectId blobId = findBlob(reader, commit, filePath);
+			if (blobId == null) {
+				return null;
+			}
+
+			return reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
+			return null;
+		}
+	}
+
+	@Override
+	public Map<String, String> getBlobIds(String commit, Collection<String> filePaths) {
+		Map<String, String> blobs = new HashMap<String, String>();
+		if (filePaths.isEmpty()) {
+			return blobs;
+		}
+
+		try (ObjectReader reader = repository.newObjectReader();
+				RevWalk walk = new RevWalk(reader);
+				TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.addTree(walk.parseCommit(ObjectId.fromString(commit)).getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathFilterGroup.createFromStrings(filePaths));
+
+			while (treeWalk.next()) {
+				if (isRegularFile(treeWalk.getFileMode(0))) {
+					blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0).getName());
+				}
+			}
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
+		}
+
+		return blobs;
+	}
+
+	@Override
+	public byte[] getData(String blobId) {
+		try (ObjectReader reader = repository.newObjectReader()) {
+			return reader.open(ObjectId.fromString(blobId), Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
+			return null;
+		}
+	}
+
 	@Override
 	public void close() {
-		diffFormatter.close();
-		treeWalk.close();
-		revWalk.close();
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+
+		synchronized (openedExtractors) {
+			for (GitDiffExtractor extractor : openedExtractors) {
+				extractor.close();
+			}
+			openedExtractors.clear();
+		}
+
 		git.close();
 		repository.close();
 	}
@@ -226,89 +405,123 @@ public class GitSCM implements ISCM {
 		}
 	}
 
-	private void errorHandler(String errorMessage, Throwable e) {
-		close();
-		LOGGER.error(errorMessage, e);
-		throw new VisMinerAPIException(errorMessage, e);
+	@Override
+	public String getTreeId(String commit) {
+		try (RevWalk walk = new RevWalk(repository)) {
+			return walk.parseCommit(ObjectId.fromString(commit)).getTree().getName();
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
+			return null;
+		}
 	}
 
-	private List<Diff> getDiffsForCommitedFiles(String commit) throws IOException {
-		RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(commit));
-		AnyObjectId currentCommit = repository.resolve(commit);
-		AnyObjectId oldCommit = revCommit.getParentCount() > 0 ? repository.resolve(revCommit.getParent(0).getName())
-				: null;
-
-		List<DiffEntry> diffs = diffFormatter.scan(oldCommit, currentCommit);
-		List<Diff> changes = new ArrayList<Diff>();
-
-		for (DiffEntry entry : diffs) {
-			RevCommit parentCommit = oldCommit == null ? null
-					: revWalk.parseCommit(ObjectId.fromString(oldCommit.getName()));
-
-			Diff diff = processDiff(entry);
-			LinesInfo linesInfo;
-
-			linesInfo = getLinesAddedAndDeleted(diff.getPath(), parentCommit, revCommit);
-
-			diff.setLinesAdded(linesInfo.added);
-			diff.setLinesRemoved(linesInfo.removed);
-
-			changes.add(diff);
+	@Override
+	public List<String> getFiles(String commit) {
+		List<String> files = new ArrayList<String>();
+
+		try (ObjectReader reader = repository.newObjectReader();
+				RevWalk walk = new RevWalk(reader);
+				TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.addTree(walk.parseCommit(ObjectId.fromString(commit)).getTree());
+			treeWalk.setRecursive(true);
+
+			while (treeWalk.next()) {
+				// submodules are not files of the repository
+				if (treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+					files.add(treeWalk.getPathString());
+				}
+			}
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
 		}
 
-		return changes;
+		return files;
 	}
 
-	private Diff processDiff(DiffEntry entry) {
-		switch (entry.getChangeType()) {
-		case ADD:
-			return new Diff(entry.getNewPath(), null, StringUtils.encodeToCRC32(entry.getNewPath()), DiffType.ADD);
-
-		case COPY:
-			return new Diff(entry.getNewPath(), entry.getOldPath(), StringUtils.encodeToCRC32(entry.getNewPath()),
-					DiffType.COPY);
-
-		case DELETE:
-			return new Diff(entry.getOldPath(), null, StringUtils.encodeToCRC32(entry.getOldPath()), DiffType.DELETE);
-
-		case MODIFY:
-			return new Diff(entry.getNewPath(), null, StringUtils.encodeToCRC32(entry.getNewPath()), DiffType.MODIFY);
+	@Override
+	public Map<String, String> getChangedBlobs(String fromCommit, String toCommit) {
+		Map<String, String> blobs = new LinkedHashMap<String, String>();
+
+		try (ObjectReader reader = repository.newObjectReader();
+				RevWalk walk = new RevWalk(reader);
+				TreeWalk treeWalk = new TreeWalk(reader)) {
+			if (fromCommit != null) {
+				treeWalk.addTree(walk.parseCommit(ObjectId.fromString(fromCommit)).getTree());
+			} else {
+				treeWalk.addTree(new EmptyTreeIterator());
+			}
+			treeWalk.addTree(walk.parseCommit(ObjectId.fromString(toCommit)).getTree());
+			treeWalk.setRecursive(true);
+			// the subtrees with the same id are skipped as a whole
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+			while (treeWalk.next()) {
+				if (isRegularFile(treeWalk.getFileMode(1))) {
+					blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(1).getName());
+				} else if (isRegularFile(treeWalk.getFileMode(0))) {
+					blobs.put(treeWalk.getPathString(), null);
+				}
+			}
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
+		}
 
-		case RENAME:
-			return new Diff(entry.getNewPath(), entry.getOldPath(), StringUtils.encodeToCRC32(entry.getNewPath()),
-					DiffType.RENAME);
+		return blobs;
+	}
 
-		default:
-			return null;
+	@Override
+	public List<String> getChangedFiles(String fromCommit, String toCommit) {
+		List<String> files = new ArrayList<String>();
+
+		try (ObjectReader reader = repository.newObjectReader();
+				RevWalk walk = new RevWalk(reader);
+				TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.addTree(walk.parseCommit(ObjectId.fromString(fromCommit)).getTree());
+			treeWalk.addTree(walk.parseCommit(ObjectId.fromString(toCommit)).getTree());
+			treeWalk.setRecursive(true);
+			// the subtrees with the same id are skipped as a whole
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+			while (treeWalk.next()) {
+				if (treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB
+						|| treeWalk.getFileMode(1).getObjectType() == Constants.OBJ_BLOB) {
+					files.add(treeWalk.getPathString());
+				}
+			}
+		} catch (IOException e) {
+			errorHandler(ErrorMessage.GIT_RETRIEVE_DATA_ERROR.toString(), e);
 		}
+
+		return files;
 	}
 
-	private LinesInfo getLinesAddedAndDeleted(String path, RevCommit oldCommit, RevCommit currentCommit)
-			throws IOException {
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		DiffFormatter formatter = new DiffFormatter(output);
-		formatter.setRepository(repository);
-		formatter.setContext(0);
+	// Finds the content of a regular file in a commit, links and submodules
+	// have no content to be analyzed.
+	private ObjectId findBlob(ObjectReader reader, String commit, String filePath) throws IOException {
+		try (RevWalk walk = new RevWalk(reader)) {
+			RevCommit revCommit = walk.parseCommit(ObjectId.fromString(commit));
 
-		formatter.setPathFilter(PathFilter.create(path));
-		formatter.format(oldCommit, currentCommit);
+			TreeWalk treeWalk = TreeWalk.forPath(reader, filePath, revCommit.getTree());
+			if (treeWalk == null) {
+				return null;
+			}
 
-		Scanner scanner = new Scanner(output.toString());
-		LinesInfo linesInfo = new LinesInfo();
+			if (!isRegularFile(treeWalk.getFileMode(0))) {
+				return null;
+			}
 
-		while (scanner.hasNextLine()) {
-			String line = scanner.nextLine();
-			if (line.startsWith("+") && !line.startsWith("+++"))
-				linesInfo.added++;
-			else if (line.startsWith("-") && !line.startsWith("---"))
-				linesInfo.removed++;
+			return treeWalk.getObjectId(0);
 		}
+	}
 
-		output.close();
-		formatter.close();
-		scanner.close();
+	private boolean isRegularFile(FileMode mode) {
+		return mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE;
+	}
 
-		return linesInfo;
+	private void errorHandler(String errorMessage, Throwable e) {
+		close();
+		LOGGER.error(errorMessage, e);
+		throw new VisMinerAPIException(errorMessage, e);
 	}
 
 	private void makeCheckout(String point) {
@@ -319,39 +532,65 @@ public class GitSCM implements ISCM {
 		}
 	}
 
-	private Iterable<RevCommit> getCommitsFromTag(String refName, int skip, int maxCount) {
+	// Resolves the references only once per session, peeling the tags to
+	// the commits they point to.
+	private void loadReferences() {
+		if (resolvedReferences != null) {
+			return;
+		}
+
+		resolvedReferences = new LinkedHashMap<String, ResolvedReference>();
+
+		List<Ref> branches = null;
 		try {
-			List<Ref> call = git.tagList().call();
+			branches = git.branchList().call();
+		} catch (GitAPIException e) {
+			errorHandler(ErrorMessage.GIT_BRANCH_LIST_ERROR.toString(), e);
+		}
 
-			for (Ref ref : call) {
-				if (ref.getName().equals(refName)) {
-					LogCommand log = git.log();
-					Ref peeledRef = repository.peel(ref);
+		for (Ref b : branches) {
+			if (b.getName().equals("HEAD"))
+				continue;
 
-					if (peeledRef.getPeeledObjectId() != null) {
-						log.add(peeledRef.getPeeledObjectId());
-					} else {
-						log.add(ref.getObjectId());
-					}
+			resolvedReferences.put(b.getName(), new ResolvedReference(b.getName(), ReferenceType.BRANCH, b.getObjectId()));
+		}
 
-					return log.setSkip(skip).setMaxCount(maxCount).call();
-				}
-			}
+		List<Ref> tags = null;
+		try {
+			tags = git.tagList().call();
+		} catch (GitAPIException e) {
+			errorHandler(ErrorMessage.GIT_TAG_LIST_ERROR.toString(), e);
+		}
 
-			return null;
-		} catch (GitAPIException | IncorrectObjectTypeException | MissingObjectException e) {
-			errorHandler(ErrorMessage.GIT_BRANCH_COMMITS_ERROR.toString(), e);
-			return null;
+		for (Ref t : tags) {
+			Ref peeledRef = repository.peel(t);
+			ObjectId commit = peeledRef.getPeeledObjectId() != null ? peeledRef.getPeeledObjectId() : t.getObjectId();
+			resolvedReferences.put(t.getName(), new ResolvedReference(t.getName(), ReferenceType.TAG, commit));
 		}
 	}
 
-	private Iterable<RevCommit> getCommitsFromBranch(String refName, int skip, int maxCount) {
-		try {
-			return git.log().add(repository.resolve(refName)).setSkip(skip).setMaxCount(maxCount).call();
-		} catch (RevisionSyntaxException | GitAPIException | IOException e) {
-			errorHandler(ErrorMessage.GIT_TAG_COMMITS_ERROR.toString(), e);
+	// Creates a walk starting at the commit pointed by the reference, or null if
+	// the reference does not exist.
+	private RevWalk startWalk(String refPath, boolean retainBody) {
+		loadReferences();
+
+		ResolvedReference ref = resolvedReferences.get(refPath);
+		if (ref == null) {
 			return null;
 		}
+
+		RevWalk walk = new RevWalk(repository);
+		walk.setRetainBody(retainBody);
+
+		try {
+			walk.markStart(walk.parseCommit(ref.commit));
+		} catch (IOException e) {
+			walk.close();
+			errorHandler(ref.type == ReferenceType.BRANCH ? ErrorMessage.GIT_BRANCH_COMMITS_ERROR.toString()
+					: ErrorMessage.GIT_TAG_COMMITS_ERROR.toString(), e);
+		}
+
+		return walk;
 	}
 
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package org.repositoryminer.scm;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Reference;
@@ -28,6 +30,14 @@ public interface ISCM {
 	 */
 	public void open(String repositoryPath);
 
+	/**
+	 * @param threads
+	 *            how many threads extract the commits changes in parallel. The
+	 *            commits are still returned in the history order. Must be set
+	 *            before {@link #open(String)}, the default is one thread.
+	 */
+	public void setExtractionThreads(int threads);
+
 	/**
 	 * @param repositoryId
 	 * @return List all references(e.g. tags and branches).
@@ -35,18 +45,28 @@ public interface ISCM {
 	public List<Reference> getReferences();
 
 	/**
-	 * @param skip
-	 *            defines how many commits should be skipped before the fetch
-	 * @param maxCount
-	 *            defines how many commits should be fetch
+	 * Walks the history of a reference only once, the commits are built while
+	 * they are consumed. The references are resolved only once per session.
+	 * 
 	 * @param reference
 	 *            the reference
 	 * @param commitsToSkip
-	 *            collection of commits to be skipped. The
-	 *            commits inside this collection will not be returned
-	 * @return A list with a set of commits in a reference
+	 *            collection of commits to be skipped. The commits inside this
+	 *            collection will not be returned. The collection is checked
+	 *            while the walk goes on, so it may grow during the iteration
+	 * @return An iterator over the commits in a reference
 	 */
-	public List<Commit> getCommits(int skip, int maxCount, Reference reference, Collection<String> commitsToSkip);
+	public Iterator<Commit> getCommits(Reference reference, Collection<String> commitsToSkip);
+
+	/**
+	 * Builds the commits in the given order, with their changes to the first
+	 * parent, while they are consumed.
+	 * 
+	 * @param commits
+	 *            the ids of the commits.
+	 * @return An iterator over the commits
+	 */
+	public Iterator<Commit> getCommits(List<String> commits);
 
 	/**
 	 * @param name
@@ -61,6 +81,79 @@ public interface ISCM {
 	 */
 	public void checkout(String hash);
 
+	/**
+	 * Reads the content of a file as it was in a commit straight from the
+	 * repository objects, so no checkout is needed.
+	 * 
+	 * @param commit
+	 *            the commit id.
+	 * @param filePath
+	 *            the file path, relative to the repository root.
+	 * @return the file content or null if the path is not a regular file in
+	 *         the commit.
+	 */
+	public byte[] getData(String commit, String filePath);
+
+	/**
+	 * Finds the contents of many files of a commit in a single walk of its
+	 * tree.
+	 * 
+	 * @param commit
+	 *            the commit id.
+	 * @param filePaths
+	 *            the file paths, relative to the repository root.
+	 * @return the ids of the contents of the paths which are regular files in
+	 *         the commit. Files with the same content have the same id.
+	 */
+	public Map<String, String> getBlobIds(String commit, Collection<String> filePaths);
+
+	/**
+	 * @param commit
+	 *            the commit id.
+	 * @return the id of the root tree of the commit. Commits with the same
+	 *         files and contents have the same tree id.
+	 */
+	public String getTreeId(String commit);
+
+	/**
+	 * @param commit
+	 *            the commit id.
+	 * @return the paths of all files in the commit, relative to the repository
+	 *         root, read from the repository objects.
+	 */
+	public List<String> getFiles(String commit);
+
+	/**
+	 * @param fromCommit
+	 *            the commit the files are compared to, or null to get all the
+	 *            files of the other commit.
+	 * @param toCommit
+	 *            the commit with the changes.
+	 * @return the regular files added or modified from one commit to the
+	 *         other, relative to the repository root, with the ids of their
+	 *         contents in the second commit, and the ones removed with null,
+	 *         read from the repository objects.
+	 */
+	public Map<String, String> getChangedBlobs(String fromCommit, String toCommit);
+
+	/**
+	 * @param fromCommit
+	 *            the commit the files are compared to.
+	 * @param toCommit
+	 *            the commit with the changes.
+	 * @return the paths of the files added, modified or removed from one commit
+	 *         to the other, relative to the repository root, read from the
+	 *         repository objects.
+	 */
+	public List<String> getChangedFiles(String fromCommit, String toCommit);
+
+	/**
+	 * @param blobId
+	 *            the id of the file content in the repository.
+	 * @return the file content.
+	 */
+	public byte[] getData(String blobId);
+
 	/**
 	 * Terminates the analysis and free resources.
 	 */
@@ -0,0 +1,163 @@
+package org.repositoryminer.scm.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.io.FilenameUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.exceptions.VisMinerAPIException;
+import org.repositoryminer.utility.FileUtils;
+
+/**
+ * Creates a git repository in the temporary folder with the same references of
+ * the original one. The objects are either shared through the alternates file,
+ * so nothing is copied, or hardlinked. Git objects are never rewritten, so both
+ * ways are safe as long as the workspace is not garbage collected.
+ * <p>
+ * Only the workspace folder is deleted on dispose, the original repository is
+ * only read.
+ */
+public class GitCloneWorkspace implements IWorkspace {
+
+	private boolean shared;
+	private File workspace;
+
+	/**
+	 * @param shared
+	 *            true to borrow the objects through the alternates file, false
+	 *            to hardlink them.
+	 */
+	public GitCloneWorkspace(boolean shared) {
+		this.shared = shared;
+	}
+
+	@Override
+	public String create(String repositoryPath, String name) throws IOException {
+		File source = new File(repositoryPath).getCanonicalFile();
+		File sourceGitDir = new File(source, Constants.DOT_GIT);
+
+		if (!sourceGitDir.isDirectory()) {
+			throw new VisMinerAPIException(ErrorMessage.REPOSITORY_NOT_FOUND.toString());
+		}
+
+		File dest = new File(System.getProperty("java.io.tmpdir"), name).getCanonicalFile();
+		if (source.toPath().startsWith(dest.toPath())) {
+			throw new VisMinerAPIException(ErrorMessage.WORKSPACE_CREATION_ERROR.toString());
+		}
+
+		if (dest.exists()) {
+			FileUtils.forceDelete(dest);
+		}
+		workspace = dest;
+
+		File gitDir = new File(dest, Constants.DOT_GIT);
+		try (Repository sourceRepo = new FileRepositoryBuilder().setGitDir(sourceGitDir).setMustExist(true).build();
+				Repository destRepo = new FileRepositoryBuilder().setGitDir(gitDir).setWorkTree(dest).build()) {
+			destRepo.create();
+
+			File sourceObjects = new File(sourceGitDir, "objects");
+			File destObjects = new File(gitDir, "objects");
+
+			if (shared) {
+				FileUtils.writeStringToFile(new File(destObjects, "info/alternates"),
+						FilenameUtils.normalize(sourceObjects.getAbsolutePath(), true) + "\n", "UTF-8");
+			} else {
+				linkObjects(sourceObjects.toPath(), destObjects.toPath());
+			}
+
+			copyReferences(sourceRepo, destRepo);
+
+			if (destRepo.resolve(Constants.HEAD) != null) {
+				try (Git git = new Git(destRepo)) {
+					git.reset().setMode(ResetType.HARD).call();
+				}
+			}
+		} catch (GitAPIException e) {
+			throw new VisMinerAPIException(ErrorMessage.WORKSPACE_CREATION_ERROR.toString(), e);
+		}
+
+		return FilenameUtils.normalize(dest.getAbsolutePath(), true);
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public void dispose() throws IOException {
+		if (workspace != null && workspace.exists()) {
+			FileUtils.deleteFolder(workspace.getAbsolutePath());
+		}
+		workspace = null;
+	}
+
+	private void copyReferences(Repository source, Repository dest) throws IOException {
+		for (Ref ref : source.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+			if (ref.isSymbolic() || ref.getObjectId() == null) {
+				continue;
+			}
+
+			RefUpdate update = dest.updateRef(ref.getName());
+			update.setNewObjectId(ref.getObjectId());
+			update.disableRefLog();
+			update.forceUpdate();
+		}
+
+		Ref head = source.exactRef(Constants.HEAD);
+		if (head == null) {
+			return;
+		}
+
+		if (head.isSymbolic()) {
+			dest.updateRef(Constants.HEAD).link(head.getTarget().getName());
+		} else if (head.getObjectId() != null) {
+			RefUpdate update = dest.updateRef(Constants.HEAD, true);
+			update.setNewObjectId(head.getObjectId());
+			update.disableRefLog();
+			update.forceUpdate();
+		}
+	}
+
+	// Hardlinks every object file, copying it when the link is not possible
+	// (e.g. the temporary folder is in another file system).
+	private void linkObjects(final Path source, final Path dest) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(dest.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Path target = dest.resolve(source.relativize(file));
+				Files.deleteIfExists(target);
+
+				try {
+					Files.createLink(target, file);
+				} catch (UnsupportedOperationException | FileSystemException e) {
+					Files.copy(file, target);
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
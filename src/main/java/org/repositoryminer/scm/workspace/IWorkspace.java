@@ -0,0 +1,34 @@
+package org.repositoryminer.scm.workspace;
+
+import java.io.IOException;
+
+/**
+ * Prepares the place where a repository is opened by the SCM. The original
+ * repository is never changed by the workspace, neither when it is created nor
+ * when it is disposed.
+ */
+public interface IWorkspace {
+
+	/**
+	 * @param repositoryPath
+	 *            the original repository path.
+	 * @param name
+	 *            a name used to identify the workspace.
+	 * @return the path where the SCM must open the repository.
+	 * @throws IOException
+	 */
+	public String create(String repositoryPath, String name) throws IOException;
+
+	/**
+	 * @return true if the workspace must not be checked out.
+	 */
+	public boolean isReadOnly();
+
+	/**
+	 * Removes everything created by the workspace.
+	 * 
+	 * @throws IOException
+	 */
+	public void dispose() throws IOException;
+
+}
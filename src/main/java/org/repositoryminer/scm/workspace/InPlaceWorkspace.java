@@ -0,0 +1,27 @@
+package org.repositoryminer.scm.workspace;
+
+import java.io.File;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Opens the original repository in place, so it is read-only.
+ */
+public class InPlaceWorkspace implements IWorkspace {
+
+	@Override
+	public String create(String repositoryPath, String name) {
+		return FilenameUtils.normalize(new File(repositoryPath).getAbsolutePath(), true);
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public void dispose() {
+		// nothing was created
+	}
+
+}
@@ -0,0 +1,21 @@
+package org.repositoryminer.scm.workspace;
+
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.scm.SCMType;
+
+public class WorkspaceFactory {
+
+	public static IWorkspace getWorkspace(SCMType scm, WorkspaceType type) {
+		if (type == WorkspaceType.IN_PLACE) {
+			return new InPlaceWorkspace();
+		}
+
+		switch (scm) {
+		case GIT:
+			return new GitCloneWorkspace(type == WorkspaceType.SHARED_CLONE);
+		default:
+			throw new NullPointerException(ErrorMessage.SCM_NOT_FOUND.toString());
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package org.repositoryminer.scm.workspace;
+
+public enum WorkspaceType {
+
+	/**
+	 * The original repository is opened in place. Nothing is copied, but the
+	 * repository can not be checked out, so it is read-only.
+	 */
+	IN_PLACE,
+
+	/**
+	 * A new working tree whose objects are borrowed from the original
+	 * repository, nothing but the references is copied.
+	 */
+	SHARED_CLONE,
+
+	/**
+	 * A local clone whose objects are hardlinked to the original ones when the
+	 * file system allows it, otherwise they are copied.
+	 */
+	LOCAL_CLONE;
+
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the strategies used to prepare the workspace where a repository is mined.
+ */
+package org.repositoryminer.scm.workspace;
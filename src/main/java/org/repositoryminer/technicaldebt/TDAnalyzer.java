@@ -2,6 +2,8 @@ package org.repositoryminer.technicaldebt;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.bson.Document;
 import org.bson.types.ObjectId;
@@ -49,17 +51,16 @@ public class TDAnalyzer {
 		analyze(commitId);
 	}
 
-	@SuppressWarnings("unchecked")
 	private void analyze(String commitId) {
 		Commit commit = Commit.parseDocument(commitPersist.findById(commitId, Projections.include("commit_date")));
-		Document wd = wdHandler.findById(commit.getId());
+		Map<String, String> files = wdHandler.findFiles(commit.getId());
 		
 		List<Document> documents = new ArrayList<Document>();
 		
-		for (Document file : (List<Document>) wd.get("files")) {
+		for (Entry<String, String> file : files.entrySet()) {
 			List<Document> debts = new ArrayList<Document>();
 			for (ITechnicalCodeDebt debtDetectors : getTechnicalCodeDebts()) {
-				Document td = debtDetectors.detect(file.getString("file"), file.getString("checkout"), commit.getId());
+				Document td = debtDetectors.detect(file.getKey(), file.getValue(), commit.getId());
 				if (td != null) {
 					debts.add(td);
 				}
@@ -73,9 +74,9 @@ public class TDAnalyzer {
 			doc.append("commit", commit.getId());
 			doc.append("commit_date", commit.getCommitDate());
 			doc.append("repository", new ObjectId(repositoryId));
-			doc.append("filename", file.getString("file"));
-			doc.append("filestate", file.getString("checkout"));
-			doc.append("filehash", StringUtils.encodeToCRC32(file.getString("file")));
+			doc.append("filename", file.getKey());
+			doc.append("filestate", file.getValue());
+			doc.append("filehash", StringUtils.encodeToCRC32(file.getKey()));
 			doc.append("technical_debts", debts);
 			
 			documents.add(doc);
@@ -0,0 +1,281 @@
+package org.repositoryminer.utility;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A set of commit ids which keeps the 20 bytes of each SHA-1 id, instead of
+ * its 40 characters, in a flat long array with open addressing. A slot takes
+ * 24 bytes and at most two thirds of the slots are used, so a commit takes
+ * from 36 to 72 bytes, against more than 150 of a string in a hash set, and no
+ * object is created per commit.
+ * <p>
+ * The ids are SHA-1 hashes, so their first bytes are already uniformly
+ * distributed and are used as the hash. An id which is not 40 hexadecimal
+ * characters, e.g. of another SCM, is kept apart as a string. The ids are
+ * iterated in lower case, in no particular order.
+ * <p>
+ * When a commit is removed, the commits after it in the same run of slots are
+ * shifted back, so there are no deleted slots to skip. It is not thread safe.
+ */
+public class CommitIdSet extends AbstractSet<String> {
+
+	// three longs per slot, the third has the last four bytes and the flag of
+	// a used slot
+	private static final int WORDS = 3;
+	private static final long USED = 1L << 32;
+
+	private long[] table;
+	private int mask;
+	private int size;
+	private Set<String> others = new HashSet<String>();
+
+	public CommitIdSet() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of commits the set holds before it grows.
+	 */
+	public CommitIdSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 3 / 2 - 1) * 2;
+		table = new long[capacity * WORDS];
+		mask = capacity - 1;
+	}
+
+	public CommitIdSet(Collection<String> commits) {
+		this(commits.size());
+		addAll(commits);
+	}
+
+	@Override
+	public boolean add(String commit) {
+		if (!isObjectId(commit)) {
+			return others.add(commit);
+		}
+
+		long word0 = parse(commit, 0, 16);
+		long word1 = parse(commit, 16, 16);
+		long word2 = parse(commit, 32, 8) | USED;
+
+		int slot = find(word0, word1, word2);
+		if (table[slot * WORDS + 2] != 0) {
+			return false;
+		}
+
+		table[slot * WORDS] = word0;
+		table[slot * WORDS + 1] = word1;
+		table[slot * WORDS + 2] = word2;
+		if (++size > (mask + 1) / 3 * 2) {
+			grow();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+
+		String commit = (String) o;
+		if (!isObjectId(commit)) {
+			return others.contains(commit);
+		}
+
+		int slot = find(parse(commit, 0, 16), parse(commit, 16, 16), parse(commit, 32, 8) | USED);
+		return table[slot * WORDS + 2] != 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+
+		String commit = (String) o;
+		if (!isObjectId(commit)) {
+			return others.remove(commit);
+		}
+
+		int slot = find(parse(commit, 0, 16), parse(commit, 16, 16), parse(commit, 32, 8) | USED);
+		if (table[slot * WORDS + 2] == 0) {
+			return false;
+		}
+
+		delete(slot);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size + others.size();
+	}
+
+	@Override
+	public void clear() {
+		table = new long[16 * WORDS];
+		mask = 15;
+		size = 0;
+		others.clear();
+	}
+
+	/**
+	 * The iterator walks a copy of the slots once it removes a commit, as the
+	 * commits shifted back could be seen twice or not at all.
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		final Iterator<String> othersIterator = others.iterator();
+
+		return new Iterator<String>() {
+
+			private long[] slots = table;
+			private int slot = next(0);
+			private String last;
+			private boolean lastIsOther;
+
+			@Override
+			public boolean hasNext() {
+				return slot <= mask || othersIterator.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if (slot > mask) {
+					last = othersIterator.next();
+					lastIsOther = true;
+					return last;
+				}
+
+				char[] chars = new char[40];
+				format(slots[slot * WORDS], chars, 0, 16);
+				format(slots[slot * WORDS + 1], chars, 16, 16);
+				format(slots[slot * WORDS + 2], chars, 32, 8);
+
+				slot = next(slot + 1);
+				last = new String(chars);
+				lastIsOther = false;
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+
+				if (lastIsOther) {
+					othersIterator.remove();
+				} else {
+					if (slots == table) {
+						slots = table.clone();
+					}
+					CommitIdSet.this.remove(last);
+				}
+				last = null;
+			}
+
+			private int next(int from) {
+				while (from <= mask && slots[from * WORDS + 2] == 0) {
+					from++;
+				}
+				return from;
+			}
+		};
+	}
+
+	// The slot of the commit or the empty slot where it goes
+	private int find(long word0, long word1, long word2) {
+		int slot = home(word0);
+		while (table[slot * WORDS + 2] != 0 && (table[slot * WORDS] != word0 || table[slot * WORDS + 1] != word1
+				|| table[slot * WORDS + 2] != word2)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int home(long word0) {
+		return (int) (word0 ^ (word0 >>> 32)) & mask;
+	}
+
+	// Empties the slot and moves back each following commit of the run whose
+	// home slot is not between the hole and the commit, so every commit can
+	// still be reached from its home slot
+	private void delete(int slot) {
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (table[next * WORDS + 2] != 0) {
+			int home = home(table[next * WORDS]);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				System.arraycopy(table, next * WORDS, table, hole * WORDS, WORDS);
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		table[hole * WORDS] = 0;
+		table[hole * WORDS + 1] = 0;
+		table[hole * WORDS + 2] = 0;
+		size--;
+	}
+
+	private void grow() {
+		long[] oldTable = table;
+		table = new long[oldTable.length * 2];
+		mask = mask * 2 + 1;
+
+		for (int i = 0; i < oldTable.length; i += WORDS) {
+			if (oldTable[i + 2] != 0) {
+				int slot = find(oldTable[i], oldTable[i + 1], oldTable[i + 2]);
+				System.arraycopy(oldTable, i, table, slot * WORDS, WORDS);
+			}
+		}
+	}
+
+	private static boolean isObjectId(String commit) {
+		if (commit == null || commit.length() != 40) {
+			return false;
+		}
+
+		for (int i = 0; i < 40; i++) {
+			if (digit(commit.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Only ASCII hexadecimal digits, Character.digit accepts the digits of
+	// other scripts too
+	private static int digit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		} else if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
+	private static long parse(String commit, int begin, int length) {
+		long value = 0;
+		for (int i = begin; i < begin + length; i++) {
+			value = (value << 4) | digit(commit.charAt(i));
+		}
+		return value;
+	}
+
+	private static void format(long value, char[] chars, int begin, int length) {
+		for (int i = begin + length - 1; i >= begin; i--) {
+			chars[i] = Character.forDigit((int) (value & 0xf), 16);
+			value >>>= 4;
+		}
+	}
+
+}
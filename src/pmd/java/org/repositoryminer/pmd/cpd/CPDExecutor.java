@@ -5,12 +5,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
-import org.repositoryminer.codemetric.direct.LOC;
+import org.repositoryminer.ast.SourceLines;
 import org.repositoryminer.pmd.cpd.model.FileInfo;
 import org.repositoryminer.pmd.cpd.model.Occurrence;
 import org.repositoryminer.utility.StringUtils;
@@ -38,8 +40,10 @@ public class CPDExecutor{
 	private String charset;
 	private String repositoryFolder;
 	private Set<org.repositoryminer.ast.Language> languages;
-	
-	private LOC locMetric = new LOC();
+
+	// the lines of each file with duplications, a file is read once per run
+	// however many marks it has
+	private Map<String, Integer> lineCounts;
 
 	public CPDExecutor(String repositoryFolder) {
 		this.repositoryFolder = repositoryFolder;
@@ -59,6 +63,7 @@ public class CPDExecutor{
 
 	public List<Occurrence> execute() throws IOException {
 		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		lineCounts = new HashMap<String, Integer>();
 
 		for (org.repositoryminer.ast.Language lang : languages) {
 			CPDConfiguration config = new CPDConfiguration();
@@ -118,12 +123,21 @@ public class CPDExecutor{
 	}
 
 	private float getDuplicatedPercentage(String filename, int lineCount) {
-		try {
-			String source = new String(Files.readAllBytes(Paths.get(filename)));
-			return (lineCount * 1.0f) / locMetric.calculate(source);
-		} catch (IOException e) {
+		Integer fileLines = lineCounts.get(filename);
+		if (fileLines == null) {
+			try {
+				String source = new String(Files.readAllBytes(Paths.get(filename)));
+				fileLines = new SourceLines(source).getLineCount();
+			} catch (IOException e) {
+				fileLines = 0;
+			}
+			lineCounts.put(filename, fileLines);
+		}
+
+		if (fileLines == 0) {
 			return 0.0f;
 		}
+		return (lineCount * 1.0f) / fileLines;
 	}
 
 }
\ No newline at end of file
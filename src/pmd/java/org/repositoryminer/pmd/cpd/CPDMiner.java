@@ -9,6 +9,8 @@ import java.util.Set;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.repositoryminer.ast.Language;
+import org.repositoryminer.exceptions.ErrorMessage;
+import org.repositoryminer.exceptions.VisMinerAPIException;
 import org.repositoryminer.model.Commit;
 import org.repositoryminer.model.Reference;
 import org.repositoryminer.model.Repository;
@@ -20,7 +22,9 @@ import org.repositoryminer.pmd.cpd.persistence.CPDDocumentHandler;
 import org.repositoryminer.scm.ISCM;
 import org.repositoryminer.scm.ReferenceType;
 import org.repositoryminer.scm.SCMFactory;
-import org.repositoryminer.utility.FileUtils;
+import org.repositoryminer.scm.workspace.IWorkspace;
+import org.repositoryminer.scm.workspace.WorkspaceFactory;
+import org.repositoryminer.scm.workspace.WorkspaceType;
 
 import com.mongodb.client.model.Projections;
 
@@ -29,6 +33,7 @@ public class CPDMiner {
 	private Repository repository;
 	private ISCM scm;
 	private String tmpRepository;
+	private IWorkspace workspace;
 	private CPDExecutor cpdExecutor;
 
 	private CPDDocumentHandler cpdPersist;
@@ -38,6 +43,7 @@ public class CPDMiner {
 	private int minTokens = 100;
 	private String charset = "UTF-8";
 	private Set<Language> languages;
+	private WorkspaceType workspaceType = WorkspaceType.SHARED_CLONE;
 
 	private CPDMiner() {
 		languages = new HashSet<Language>(1);
@@ -92,7 +98,13 @@ public class CPDMiner {
 	}
 
 	public void configure() throws IOException {
-		tmpRepository = FileUtils.copyFolderToTmp(repository.getPath(), repository.getId());
+		// the analysis needs checkouts, so the workspace can not be read-only
+		workspace = WorkspaceFactory.getWorkspace(repository.getScm(), workspaceType);
+		if (workspace.isReadOnly()) {
+			throw new VisMinerAPIException(ErrorMessage.READ_ONLY_WORKSPACE.toString());
+		}
+
+		tmpRepository = workspace.create(repository.getPath(), repository.getId());
 		cpdExecutor = new CPDExecutor(tmpRepository);
 
 		cpdPersist = new CPDDocumentHandler();
@@ -103,9 +115,13 @@ public class CPDMiner {
 		scm.open(tmpRepository);
 	}
 
+	public void setWorkspaceType(WorkspaceType workspaceType) {
+		this.workspaceType = workspaceType;
+	}
+
 	public void dispose() throws IOException {
 		scm.close();
-		FileUtils.deleteFolder(tmpRepository);
+		workspace.dispose();
 	}
 
 	private void persistAnalysis(String commitId, Reference ref) throws IOException {
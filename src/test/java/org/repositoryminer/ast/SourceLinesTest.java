@@ -0,0 +1,94 @@
+package org.repositoryminer.ast;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SourceLinesTest {
+
+	@Test
+	public void emptySourceHasNoLines() {
+		SourceLines lines = new SourceLines("");
+
+		assertEquals(0, lines.getLineCount());
+		assertEquals(0, lines.getCodeLines());
+	}
+
+	@Test
+	public void countsBlankCommentAndCodeLines() {
+		SourceLines lines = new SourceLines("int a;\n\n// comment\n/*\n * block\n */\nint b; // trailing\n   \t\nint c; /* x */");
+
+		assertEquals(9, lines.getLineCount());
+		assertEquals(2, lines.getBlankLines());
+		assertEquals(4, lines.getCommentLines());
+		assertEquals(3, lines.getCodeLines());
+	}
+
+	@Test
+	public void commentsInsideStringLiteralsAreCode() {
+		SourceLines lines = new SourceLines("String s = \"/* not a comment\";\nint a;\nString t = \"// nor this\";");
+
+		assertEquals(3, lines.getLineCount());
+		assertEquals(0, lines.getCommentLines());
+		assertEquals(3, lines.getCodeLines());
+	}
+
+	@Test
+	public void escapedQuotesDoNotCloseTheLiteral() {
+		SourceLines lines = new SourceLines("String s = \"\\\" /*\";\nint a;\nchar c = '\"'; // a quote\n// comment");
+
+		assertEquals(4, lines.getLineCount());
+		assertEquals(1, lines.getCommentLines());
+		assertEquals(3, lines.getCodeLines());
+	}
+
+	@Test
+	public void literalsDoNotSpanLines() {
+		SourceLines lines = new SourceLines("String s = \"unclosed\n// comment");
+
+		assertEquals(1, lines.getCommentLines());
+		assertEquals(1, lines.getCodeLines());
+	}
+
+	@Test
+	public void carriageReturnAndLineFeedIsOneBreak() {
+		SourceLines crlf = new SourceLines("int a;\r\n\r\n// comment\r\nint b;");
+		SourceLines cr = new SourceLines("int a;\r\r// comment\rint b;");
+		SourceLines lf = new SourceLines("int a;\n\n// comment\nint b;");
+
+		for (SourceLines lines : new SourceLines[] { crlf, cr, lf }) {
+			assertEquals(4, lines.getLineCount());
+			assertEquals(1, lines.getBlankLines());
+			assertEquals(1, lines.getCommentLines());
+			assertEquals(2, lines.getCodeLines());
+		}
+
+		assertEquals(8, crlf.getLineStart(1));
+		assertEquals(7, cr.getLineStart(1));
+		assertEquals(1, crlf.getLine(8));
+		assertEquals(0, crlf.getLine(7));
+	}
+
+	@Test
+	public void mixedBreaksAreCountedOnce() {
+		SourceLines lines = new SourceLines("a\r\n\rb\n\r\nc");
+
+		assertEquals(5, lines.getLineCount());
+		assertEquals(2, lines.getBlankLines());
+	}
+
+	@Test
+	public void countsThePartBetweenOffsets() {
+		String source = "class A {\r\n\t// comment\r\n\r\n\tint a;\r\n}";
+		SourceLines lines = new SourceLines(source);
+
+		int start = source.indexOf("\t//");
+		int end = source.indexOf("int a;") + "int a;".length();
+
+		assertEquals(3, lines.getLineCount(start, end));
+		assertEquals(1, lines.getCommentLines(start, end));
+		assertEquals(1, lines.getBlankLines(start, end));
+		assertEquals(1, lines.getCodeLines(start, end));
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.repositoryminer.codemetric.direct;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.repositoryminer.ast.AST;
+import org.repositoryminer.parser.java.JavaParser;
+
+public class CohesionTest {
+
+	private static Cohesion calculate(String source) {
+		JavaParser parser = new JavaParser();
+		parser.setSourceFolders(new String[0]);
+		AST ast = parser.generate("A.java", source, "UTF-8");
+		return Cohesion.getValue(new MetricContext(ast.getDocument().getTypes().get(0), ast));
+	}
+
+	// a, b and c are connected by x and y, d by z only, e only calls d. The
+	// constructor and the abstract method are left out.
+	@Test
+	public void connectsMethodsByFieldsAndCalls() {
+		Cohesion cohesion = calculate("abstract class A {\n"
+				+ "	int x, y, z;\n"
+				+ "	A() { x = 0; z = 0; }\n"
+				+ "	void a() { x++; }\n"
+				+ "	void b() { x = y; }\n"
+				+ "	void c() { y++; }\n"
+				+ "	void d() { z++; }\n"
+				+ "	void e() { d(); }\n"
+				+ "	abstract void f();\n"
+				+ "}");
+
+		assertEquals(2 / 10f, cohesion.getTCC(), 0.0001);
+		assertEquals(3 / 10f, cohesion.getLCC(), 0.0001);
+		assertEquals(8, cohesion.getLCOM1());
+		assertEquals(6, cohesion.getLCOM2());
+		assertEquals(3, cohesion.getLCOM3());
+		assertEquals(2, cohesion.getLCOM4());
+	}
+
+	// The fields past the first 64 are in other words of the bit sets
+	@Test
+	public void intersectsFieldsInAnyWord() {
+		StringBuilder source = new StringBuilder("class A {\n");
+		for (int i = 0; i < 130; i++) {
+			source.append("	int f").append(i).append(";\n");
+		}
+		source.append("	void a() { f0++; f129++; }\n");
+		source.append("	void b() { f129++; }\n");
+		source.append("	void c() { f0++; f64++; }\n");
+		source.append("	void d() { f64++; f65++; }\n");
+		source.append("	void e() { f128++; }\n");
+		source.append("}");
+
+		Cohesion cohesion = calculate(source.toString());
+
+		// a-b, a-c and c-d, while e accesses a field no other method does
+		assertEquals(3 / 10f, cohesion.getTCC(), 0.0001);
+		assertEquals(6 / 10f, cohesion.getLCC(), 0.0001);
+		assertEquals(7, cohesion.getLCOM1());
+		assertEquals(4, cohesion.getLCOM2());
+		assertEquals(2, cohesion.getLCOM3());
+		assertEquals(2, cohesion.getLCOM4());
+	}
+
+	@Test
+	public void singleMethodHasNoPairs() {
+		Cohesion cohesion = calculate("class A {\n	int x;\n	void a() { x++; }\n}");
+
+		assertEquals(0f, cohesion.getTCC(), 0);
+		assertEquals(0f, cohesion.getLCC(), 0);
+		assertEquals(0, cohesion.getLCOM1());
+		assertEquals(0, cohesion.getLCOM2());
+		assertEquals(1, cohesion.getLCOM3());
+		assertEquals(1, cohesion.getLCOM4());
+	}
+
+	@Test
+	public void typeWithoutMethodsHasNoGroups() {
+		Cohesion cohesion = calculate("class A {\n	int x;\n}");
+
+		assertEquals(0f, cohesion.getTCC(), 0);
+		assertEquals(0, cohesion.getLCOM1());
+		assertEquals(0, cohesion.getLCOM3());
+		assertEquals(0, cohesion.getLCOM4());
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.repositoryminer.mining.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.repositoryminer.mining.local.Pipeline.Link;
+import org.repositoryminer.mining.local.Pipeline.Output;
+import org.repositoryminer.mining.local.Pipeline.Source;
+import org.repositoryminer.mining.local.Pipeline.Stage;
+
+public class PipelineTest {
+
+	private static Source<Integer> numbers(final int count) {
+		return new Source<Integer>() {
+			@Override
+			public void produce(Output<Integer> output) throws Exception {
+				for (int i = 0; i < count; i++) {
+					output.put(i);
+				}
+			}
+		};
+	}
+
+	// Collects the items and how many of them there were when it finished
+	private static class Collector implements Stage<Integer, Integer> {
+
+		List<Integer> items = Collections.synchronizedList(new ArrayList<Integer>());
+		AtomicInteger finished = new AtomicInteger();
+		int itemsWhenFinished = -1;
+
+		@Override
+		public void process(Integer item, Output<Integer> output) throws Exception {
+			items.add(item);
+			output.put(item);
+		}
+
+		@Override
+		public void finish(Output<Integer> output) throws Exception {
+			finished.incrementAndGet();
+			itemsWhenFinished = items.size();
+		}
+
+	}
+
+	@Test(timeout = 10000)
+	public void singleThreadStagesKeepTheOrder() throws IOException {
+		Pipeline pipeline = new Pipeline(2);
+		Link<Integer> numbers = pipeline.source("numbers", numbers(100));
+		Link<Integer> doubled = pipeline.stage("doubled", 1, numbers, new Stage<Integer, Integer>() {
+			@Override
+			public void process(Integer item, Output<Integer> output) throws Exception {
+				output.put(item * 2);
+			}
+		});
+
+		Collector collector = new Collector();
+		pipeline.stage("collected", 1, doubled, collector);
+		pipeline.run();
+
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++) {
+			expected.add(i * 2);
+		}
+		assertEquals(expected, collector.items);
+		assertEquals(1, collector.finished.get());
+		assertEquals(100, collector.itemsWhenFinished);
+	}
+
+	// The end reaches every thread of a stage, and the stage finishes once,
+	// after all its threads processed their items
+	@Test(timeout = 10000)
+	public void endIsPassedOnOnceAllThreadsAreDone() throws IOException {
+		Pipeline pipeline = new Pipeline(4);
+		Link<Integer> numbers = pipeline.source("numbers", numbers(1000));
+
+		Collector parallel = new Collector();
+		Link<Integer> processed = pipeline.stage("parallel", 4, numbers, parallel);
+
+		Collector last = new Collector();
+		pipeline.stage("last", 1, processed, last);
+		pipeline.run();
+
+		assertEquals(1, parallel.finished.get());
+		assertEquals(1000, parallel.itemsWhenFinished);
+		assertEquals(1, last.finished.get());
+		assertEquals(1000, last.itemsWhenFinished);
+
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			expected.add(i);
+		}
+		assertEquals(expected, new HashSet<Integer>(last.items));
+	}
+
+	@Test(timeout = 10000)
+	public void itemsNobodyTakesAreDiscarded() throws IOException {
+		Pipeline pipeline = new Pipeline(1);
+		Collector collector = new Collector();
+		pipeline.stage("collected", 1, pipeline.source("numbers", numbers(50)), collector);
+		pipeline.run();
+
+		assertEquals(50, collector.items.size());
+	}
+
+	// The source blocks on a full link, it must be interrupted when the stage
+	// after it fails
+	@Test(timeout = 10000)
+	public void failureStopsThePipelineAndIsThrown() {
+		final IOException failure = new IOException("stage failed");
+		Pipeline pipeline = new Pipeline(1);
+		Link<Integer> numbers = pipeline.source("numbers", numbers(Integer.MAX_VALUE));
+		Link<Integer> checked = pipeline.stage("checked", 2, numbers, new Stage<Integer, Integer>() {
+			@Override
+			public void process(Integer item, Output<Integer> output) throws Exception {
+				if (item == 10) {
+					throw failure;
+				}
+				output.put(item);
+			}
+		});
+
+		Collector collector = new Collector();
+		pipeline.stage("collected", 1, checked, collector);
+
+		try {
+			pipeline.run();
+			fail();
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+		assertEquals(0, collector.finished.get());
+	}
+
+	@Test(timeout = 10000)
+	public void failureOfTheSourceIsThrown() throws IOException {
+		Pipeline pipeline = new Pipeline(1);
+		Link<Integer> numbers = pipeline.source("numbers", new Source<Integer>() {
+			@Override
+			public void produce(Output<Integer> output) throws Exception {
+				output.put(1);
+				throw new IllegalStateException("source failed");
+			}
+		});
+		pipeline.stage("collected", 1, numbers, new Collector());
+
+		try {
+			pipeline.run();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("source failed", e.getMessage());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void checkedFailuresAreWrapped() {
+		final Exception failure = new Exception("checked");
+		Pipeline pipeline = new Pipeline(1);
+		pipeline.stage("failing", 1, pipeline.source("numbers", numbers(5)), new Stage<Integer, Integer>() {
+			@Override
+			public void process(Integer item, Output<Integer> output) throws Exception {
+				throw failure;
+			}
+		});
+
+		try {
+			pipeline.run();
+			fail();
+		} catch (IOException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void linkIsTakenByOneStage() {
+		Pipeline pipeline = new Pipeline(1);
+		Link<Integer> numbers = pipeline.source("numbers", numbers(1));
+		pipeline.stage("first", 1, numbers, new Collector());
+
+		try {
+			pipeline.stage("second", 1, numbers, new Collector());
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("numbers"));
+		}
+	}
+
+}
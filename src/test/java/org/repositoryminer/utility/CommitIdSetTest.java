@@ -0,0 +1,151 @@
+package org.repositoryminer.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CommitIdSetTest {
+
+	private static final String COMMIT = "0f3dea7c6e2b4d1a9f8e7d6c5b4a39281706f5e4";
+
+	@Test
+	public void addContainsAndRemove() {
+		CommitIdSet commits = new CommitIdSet();
+
+		assertTrue(commits.add(COMMIT));
+		assertFalse(commits.add(COMMIT));
+		assertTrue(commits.contains(COMMIT));
+		assertEquals(1, commits.size());
+
+		assertTrue(commits.remove(COMMIT));
+		assertFalse(commits.remove(COMMIT));
+		assertFalse(commits.contains(COMMIT));
+		assertEquals(0, commits.size());
+	}
+
+	@Test
+	public void idsAreIteratedInLowerCase() {
+		CommitIdSet commits = new CommitIdSet();
+		commits.add(COMMIT.toUpperCase());
+
+		assertTrue(commits.contains(COMMIT));
+		assertEquals(COMMIT, commits.iterator().next());
+	}
+
+	@Test
+	public void growsAndRemovesLikeAHashSet() {
+		Random random = new Random(42);
+		CommitIdSet commits = new CommitIdSet();
+		Set<String> expected = new HashSet<String>();
+
+		for (int i = 0; i < 5000; i++) {
+			String commit = randomId(random);
+			assertEquals(expected.add(commit), commits.add(commit));
+		}
+
+		List<String> ids = new ArrayList<String>(expected);
+		for (int i = 0; i < ids.size(); i += 3) {
+			assertTrue(commits.remove(ids.get(i)));
+			expected.remove(ids.get(i));
+		}
+
+		assertEquals(expected.size(), commits.size());
+		assertEquals(expected, new HashSet<String>(commits));
+		for (String commit : ids) {
+			assertEquals(expected.contains(commit), commits.contains(commit));
+		}
+	}
+
+	// Ids with the same first 16 digits start from the same slot, so removing
+	// one of them must keep the others after it reachable
+	@Test
+	public void removalKeepsTheRunOfCollidingIdsReachable() {
+		String prefix = COMMIT.substring(0, 16);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			ids.add(prefix + String.format("%024x", i));
+		}
+
+		CommitIdSet commits = new CommitIdSet(ids);
+		for (int i = 0; i < ids.size(); i += 2) {
+			assertTrue(commits.remove(ids.get(i)));
+		}
+
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i % 2 == 1, commits.contains(ids.get(i)));
+		}
+		assertEquals(5, commits.size());
+	}
+
+	@Test
+	public void iteratorRemovesEachCommitOnce() {
+		Random random = new Random(7);
+		CommitIdSet commits = new CommitIdSet();
+		for (int i = 0; i < 1000; i++) {
+			commits.add(randomId(random));
+		}
+		commits.add("HEAD");
+
+		Set<String> seen = new HashSet<String>();
+		Set<String> kept = new HashSet<String>();
+		for (Iterator<String> it = commits.iterator(); it.hasNext();) {
+			String commit = it.next();
+			assertTrue(seen.add(commit));
+			if (seen.size() % 2 == 0) {
+				it.remove();
+			} else {
+				kept.add(commit);
+			}
+		}
+
+		assertEquals(1001, seen.size());
+		assertEquals(kept, new HashSet<String>(commits));
+	}
+
+	@Test
+	public void otherIdsAreKeptApart() {
+		CommitIdSet commits = new CommitIdSet();
+		String shortId = COMMIT.substring(0, 39);
+		String notHex = COMMIT.substring(0, 39) + "g";
+		// digits of other scripts are not hexadecimal digits
+		String fullwidth = COMMIT.substring(0, 39) + "１";
+
+		assertTrue(commits.add(shortId));
+		assertTrue(commits.add(notHex));
+		assertTrue(commits.add(fullwidth));
+		assertTrue(commits.add(COMMIT));
+
+		assertFalse(commits.contains(COMMIT.substring(0, 39) + "1"));
+		assertTrue(commits.contains(fullwidth));
+		assertEquals(4, commits.size());
+
+		Set<String> expected = new HashSet<String>();
+		expected.add(shortId);
+		expected.add(notHex);
+		expected.add(fullwidth);
+		expected.add(COMMIT);
+		assertEquals(expected, new HashSet<String>(commits));
+
+		assertTrue(commits.remove(fullwidth));
+		assertFalse(commits.contains(fullwidth));
+		assertEquals(3, commits.size());
+	}
+
+	private static String randomId(Random random) {
+		StringBuilder id = new StringBuilder(40);
+		for (int i = 0; i < 40; i++) {
+			id.append(Character.forDigit(random.nextInt(16), 16));
+		}
+		return id.toString();
+	}
+
+}